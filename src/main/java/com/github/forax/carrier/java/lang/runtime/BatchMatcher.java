@@ -0,0 +1,124 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static java.lang.invoke.MethodType.methodType;
+
+// Runs an operation (o) -> carrier, like the one returned by Matcher.of(), over a batch of values
+// on a fork/join pool and partitions the carriers by case index (see Matcher.switchResult()),
+// the values that do not match are partitioned under the case index -1.
+//
+// Each leaf task classifies its split of the values in its own map, the maps are only merged
+// when joining the tasks, so the threads do not share any mutable state while matching.
+// The operation must return a new carrier for each match, not a scratch carrier reused between calls.
+public final class BatchMatcher {
+  // under this size, a split of unknown size is not split further
+  private static final int DEFAULT_LEAF_SIZE = 1 << 10;
+
+  private final MethodHandle op;
+  private final MethodHandle switchResult;
+  private final ForkJoinPool pool;
+
+  private BatchMatcher(MethodHandle op, MethodHandle switchResult, ForkJoinPool pool) {
+    this.op = op;
+    this.switchResult = switchResult;
+    this.pool = pool;
+  }
+
+  public static BatchMatcher of(CarrierMetadata carrierMetadata, MethodHandle op) {
+    return of(carrierMetadata, op, ForkJoinPool.commonPool());
+  }
+
+  public static BatchMatcher of(CarrierMetadata carrierMetadata, MethodHandle op, ForkJoinPool pool) {
+    Objects.requireNonNull(carrierMetadata, "carrierMetadata is null");
+    Objects.requireNonNull(op, "op is null");
+    Objects.requireNonNull(pool, "pool is null");
+    var type = op.type();
+    if (type.parameterCount() != 1 || type.returnType() != Object.class) {
+      throw new IllegalArgumentException("invalid op " + op);
+    }
+    var switchResult = Matcher.switchResult(carrierMetadata).asType(methodType(int.class, Object.class));
+    return new BatchMatcher(op.asType(methodType(Object.class, Object.class)), switchResult, pool);
+  }
+
+  public Map<Integer, List<Object>> match(Object[] values) {
+    Objects.requireNonNull(values, "values is null");
+    return match(Arrays.spliterator(values));
+  }
+
+  public Map<Integer, List<Object>> match(List<?> values) {
+    Objects.requireNonNull(values, "values is null");
+    return match(values.spliterator());
+  }
+
+  public Map<Integer, List<Object>> match(Spliterator<?> spliterator) {
+    Objects.requireNonNull(spliterator, "spliterator is null");
+    var size = spliterator.estimateSize();
+    var leafSize = size == Long.MAX_VALUE?
+        DEFAULT_LEAF_SIZE:
+        Math.max(1, size / (pool.getParallelism() << 2));
+    return pool.invoke(new MatchTask(this, spliterator, leafSize));
+  }
+
+  // ForkJoinTask is Serializable but a task is never serialized, so the fields that are not serializable are transient
+  private static final class MatchTask extends RecursiveTask<Map<Integer, List<Object>>> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient BatchMatcher batchMatcher;
+    private final transient Spliterator<?> spliterator;
+    private final long leafSize;
+
+    private MatchTask(BatchMatcher batchMatcher, Spliterator<?> spliterator, long leafSize) {
+      this.batchMatcher = batchMatcher;
+      this.spliterator = spliterator;
+      this.leafSize = leafSize;
+    }
+
+    @Override
+    protected Map<Integer, List<Object>> compute() {
+      if (spliterator.estimateSize() > leafSize) {
+        var prefix = spliterator.trySplit();
+        if (prefix != null) {
+          var left = new MatchTask(batchMatcher, prefix, leafSize);
+          left.fork();
+          var right = new MatchTask(batchMatcher, spliterator, leafSize).compute();
+          return merge(left.join(), right);
+        }
+      }
+      var partitions = new HashMap<Integer, List<Object>>();
+      spliterator.forEachRemaining(value -> batchMatcher.classify(value, partitions));
+      return partitions;
+    }
+  }
+
+  private void classify(Object value, Map<Integer, List<Object>> partitions) {
+    Object carrier;
+    int index;
+    try {
+      carrier = (Object) op.invokeExact(value);
+      index = (int) switchResult.invokeExact(carrier);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+    partitions.computeIfAbsent(index, k -> new ArrayList<>()).add(index == -1? value: carrier);
+  }
+
+  // the values of right are appended to the values of left to keep the encounter order
+  private static Map<Integer, List<Object>> merge(Map<Integer, List<Object>> left, Map<Integer, List<Object>> right) {
+    right.forEach((index, values) -> left.merge(index, values, (l, r) -> { l.addAll(r); return l; }));
+    return left;
+  }
+}
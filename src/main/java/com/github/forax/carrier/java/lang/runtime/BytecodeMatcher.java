@@ -0,0 +1,411 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.BindingAllocator;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ConstantPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.NullPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RangePattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodHandles.Lookup.ClassOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.forax.carrier.java.lang.runtime.Matcher.THROW_NPE;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
+import static org.objectweb.asm.Opcodes.*;
+
+// Compiles a pattern to the bytecode of a static method of a hidden class,
+//   static Object match(ReceiverType o, Object carrier)
+// with instanceof, checkcast, direct calls to the record accessors and branches
+// instead of a tree of method handle combinators.
+//
+// The bindings are stored in local variables initialized from the carrier, the carrier constructor
+// is only called once the whole pattern has succeeded; if the first alternative of an OrPattern fails,
+// the bindings it may have stored are reset before trying the second alternative.
+// The method handles of the carrier and the constants of the ConstantPatterns are stored in the class data
+// of the hidden class and loaded with a constant dynamic.
+//
+// The COMBINATOR lowering is used if the lookup has not full privilege access or if the pattern
+// needs something that can not be expressed in bytecode (an inaccessible or a hidden class, a boxing).
+final class BytecodeMatcher {
+  private static final Handle CLASS_DATA_AT = new Handle(H_INVOKESTATIC, "java/lang/invoke/MethodHandles", "classDataAt",
+      "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;I)Ljava/lang/Object;", false);
+  private static final String METHOD_HANDLE = "java/lang/invoke/MethodHandle";
+
+  // thrown if a pattern can not be compiled to bytecode
+  private static final class UnsupportedPatternException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private UnsupportedPatternException() {
+      super(null, null, false, false);
+    }
+  }
+
+  private final Lookup lookup;
+  private final CarrierMetadata carrierMetadata;
+  private final Pattern rootPattern;
+  private final List<Class<?>> bindingTypes;
+  private final ArrayList<Object> classData = new ArrayList<>();
+  private final int[] bindingSlots;
+  private MethodVisitor mv;
+  private int carrierSlot;
+  private int nextSlot;
+  private int binding;
+
+  private BytecodeMatcher(Lookup lookup, CarrierMetadata carrierMetadata, Pattern rootPattern, int firstBinding) {
+    this.lookup = lookup;
+    this.carrierMetadata = carrierMetadata;
+    this.rootPattern = rootPattern;
+    this.bindingTypes = carrierMetadata.constructor().type().parameterList();
+    this.bindingSlots = new int[bindingTypes.size()];
+    this.binding = firstBinding;
+  }
+
+  static MethodHandle toMatcher(Pattern pattern, Lookup lookup, Class<?> receiverType, CarrierMetadata carrierMetadata, int firstBinding, Pattern rootPattern) {
+    if (lookup.hasFullPrivilegeAccess()) {
+      try {
+        return new BytecodeMatcher(lookup, carrierMetadata, rootPattern, firstBinding).generate(pattern, receiverType);
+      } catch (UnsupportedPatternException e) {
+        // fallback
+      }
+    }
+    return pattern.toMatcher(lookup, receiverType, new BindingAllocator(carrierMetadata, firstBinding), rootPattern);
+  }
+
+  private MethodHandle generate(Pattern pattern, Class<?> receiverType) {
+    var packageName = lookup.lookupClass().getPackageName();
+    var className = (packageName.isEmpty()? "": packageName.replace('.', '/') + "/") + "PatternMatcher";
+    var parameterType = erase(receiverType);
+    var descriptor = "(" + Type.getDescriptor(parameterType) + "Ljava/lang/Object;)Ljava/lang/Object;";
+    var cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+      @Override
+      protected String getCommonSuperClass(String type1, String type2) {
+        // the locals are only merged when they are not used anymore or used as Object
+        return "java/lang/Object";
+      }
+    };
+    cw.visit(V17, ACC_FINAL | ACC_SUPER, className, null, "java/lang/Object", null);
+
+    // one method per case, so each method stays small enough to be inlined
+    var cases = new ArrayList<Pattern>();
+    ConstantDispatch.flatten(pattern, cases);
+    for(var i = 0; i < cases.size(); i++) {
+      generateCase(cw, "case" + i, descriptor, cases.get(i), receiverType);
+    }
+    cw.visitEnd();
+
+    // the cases are combined like the COMBINATOR lowering, so the method of a case is inlined
+    // in the method handle tree of the matcher where the incoming carrier is often a constant
+    try {
+      var hiddenLookup = lookup.defineHiddenClassWithClassData(cw.toByteArray(), List.copyOf(classData), true, ClassOption.NESTMATE);
+      var matchers = new MethodHandle[cases.size()];
+      for(var i = 0; i < matchers.length; i++) {
+        var matcher = hiddenLookup.findStatic(hiddenLookup.lookupClass(), "case" + i, methodType(Object.class, parameterType, Object.class));
+        matchers[i] = matcher.asType(methodType(Object.class, receiverType, Object.class));
+      }
+      return ConstantDispatch.combine(receiverType, carrierMetadata, cases.toArray(Pattern[]::new), matchers);
+    } catch (IllegalAccessException | NoSuchMethodException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // return pattern matches o? a new carrier with the bindings of the case and the values of carrier for the others: null
+  private void generateCase(ClassWriter cw, String name, String descriptor, Pattern pattern, Class<?> receiverType) {
+    var firstBinding = binding;
+    mv = cw.visitMethod(ACC_PRIVATE | ACC_STATIC, name, descriptor, null, null);
+    mv.visitCode();
+    carrierSlot = Type.getType(erase(receiverType)).getSize();
+    nextSlot = carrierSlot + 1;
+    for(var i = 0; i < bindingSlots.length; i++) {
+      bindingSlots[i] = newSlot(bindingTypes.get(i));
+    }
+    var hasResult = hasResult(pattern);
+    var bindingCount = pattern.bindingCount();
+    if (hasOr(pattern)) {
+      // the bindings of an alternative are reset from the carrier if the alternative fails,
+      // so they are initialized to be always assigned
+      for(var i = firstBinding; i < firstBinding + bindingCount; i++) {
+        loadBinding(i);
+      }
+      if (hasResult) {
+        loadBinding(0);
+      }
+    }
+
+    var fail = new Label();
+    compile(pattern, 0, receiverType, fail);
+
+    // success, the carrier is created
+    var constructor = carrierMetadata.constructor();
+    var erasedConstructor = constructor.asType(constructor.type().erase().changeReturnType(Object.class));
+    loadConstant(erasedConstructor);
+    for(var i = 0; i < bindingSlots.length; i++) {
+      if ((i >= firstBinding && i < firstBinding + bindingCount) || (i == 0 && hasResult)) {
+        mv.visitVarInsn(Type.getType(erase(bindingTypes.get(i))).getOpcode(ILOAD), bindingSlots[i]);
+      } else {
+        invokeAccessor(i);
+      }
+    }
+    mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", erasedConstructor.type().toMethodDescriptorString(), false);
+    mv.visitInsn(ARETURN);
+
+    mv.visitLabel(fail);
+    mv.visitInsn(ACONST_NULL);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+  }
+
+  // generates the code that jumps to fail if the value stored in slot does not match the pattern
+  private void compile(Pattern pattern, int slot, Class<?> type, Label fail) {
+    switch (pattern) {
+      case NullPattern nullPattern -> {
+        if (type.isPrimitive()) {
+          mv.visitJumpInsn(GOTO, fail);
+          return;
+        }
+        mv.visitVarInsn(ALOAD, slot);
+        mv.visitJumpInsn(IFNONNULL, fail);
+      }
+      case ConstantPattern constantPattern -> {
+        var constant = constantPattern.constant();
+        if (!type.isPrimitive()) {
+          loadConstant(constant);
+          mv.visitVarInsn(ALOAD, slot);
+          mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "equals", "(Ljava/lang/Object;)Z", false);
+          mv.visitJumpInsn(IFEQ, fail);
+          return;
+        }
+        if (methodType(type).wrap().returnType() != constant.getClass()) {
+          throw new UnsupportedPatternException();
+        }
+        mv.visitVarInsn(Type.getType(type).getOpcode(ILOAD), slot);
+        switch (constant) {
+          case Boolean b -> mv.visitLdcInsn(b? 1: 0);
+          case Character c -> mv.visitLdcInsn((int) c);
+          case Byte b -> mv.visitLdcInsn((int) b);
+          case Short s -> mv.visitLdcInsn((int) s);
+          default -> mv.visitLdcInsn(constant);  // Integer, Long, Float and Double
+        }
+        if (type == long.class) {
+          mv.visitInsn(LCMP);
+          mv.visitJumpInsn(IFNE, fail);
+        } else if (type == float.class) {
+          mv.visitInsn(FCMPL);
+          mv.visitJumpInsn(IFNE, fail);
+        } else if (type == double.class) {
+          mv.visitInsn(DCMPL);
+          mv.visitJumpInsn(IFNE, fail);
+        } else {
+          mv.visitJumpInsn(IF_ICMPNE, fail);
+        }
+      }
+      case RangePattern rangePattern -> {
+        Matcher.isInRange(type, rangePattern.lo(), rangePattern.hi());  // reject non integral types
+        loadAsLong(slot, type);
+        mv.visitLdcInsn(rangePattern.lo());
+        mv.visitInsn(LCMP);
+        mv.visitJumpInsn(IFLT, fail);
+        loadAsLong(slot, type);
+        mv.visitLdcInsn(rangePattern.hi());
+        mv.visitInsn(LCMP);
+        mv.visitJumpInsn(IFGT, fail);
+      }
+      case TypePattern typePattern -> {
+        if (typePattern.type() != type) {
+          if (typePattern.type().isPrimitive()) {  // a reference is never an instance of a primitive type
+            mv.visitJumpInsn(GOTO, fail);
+            binding++;
+            return;
+          }
+          if (type.isPrimitive()) {
+            throw new UnsupportedPatternException();
+          }
+          mv.visitVarInsn(ALOAD, slot);
+          mv.visitTypeInsn(INSTANCEOF, internalName(typePattern.type()));
+          mv.visitJumpInsn(IFEQ, fail);
+        }
+        bind(slot, type);
+      }
+      case RecordPattern recordPattern -> {
+        if (type.isPrimitive()) {
+          throw new UnsupportedPatternException();
+        }
+        var recordClass = recordPattern.recordClass();
+        var recordName = internalName(recordClass);
+        var nonNull = new Label();
+        mv.visitVarInsn(ALOAD, slot);
+        mv.visitJumpInsn(IFNONNULL, nonNull);
+        if (rootPattern != null) {
+          loadConstant(insertArguments(THROW_NPE, 0, rootPattern, pattern));
+          mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", "()V", false);
+        }
+        mv.visitJumpInsn(GOTO, fail);
+        mv.visitLabel(nonNull);
+        if (type != recordClass) {
+          mv.visitVarInsn(ALOAD, slot);
+          mv.visitTypeInsn(INSTANCEOF, recordName);
+          mv.visitJumpInsn(IFEQ, fail);
+        }
+        mv.visitVarInsn(ALOAD, slot);
+        mv.visitTypeInsn(CHECKCAST, recordName);
+        var recordSlot = newSlot(recordClass);
+        mv.visitVarInsn(ASTORE, recordSlot);
+
+        // the components are projected one by one, like the COMBINATOR lowering
+        var recordComponents = recordClass.getRecordComponents();
+        var patterns = recordPattern.patterns();
+        for(var i = 0; i < patterns.length; i++) {
+          var accessor = recordComponents[i].getAccessor();
+          var componentType = accessor.getReturnType();
+          var componentDescriptor = Type.getType(erase(componentType));
+          checkAccessible(componentType);
+          mv.visitVarInsn(ALOAD, recordSlot);
+          mv.visitMethodInsn(INVOKEVIRTUAL, recordName, accessor.getName(), Type.getMethodDescriptor(accessor), false);
+          var componentSlot = newSlot(componentType);
+          mv.visitVarInsn(componentDescriptor.getOpcode(ISTORE), componentSlot);
+          compile(patterns[i], componentSlot, componentType, fail);
+        }
+      }
+      case OrPattern orPattern -> {
+        var firstBinding = binding;
+        var fail1 = new Label();
+        var end = new Label();
+        compile(orPattern.pattern1(), slot, type, fail1);
+        mv.visitJumpInsn(GOTO, end);
+        mv.visitLabel(fail1);
+        // reset the bindings of the first alternative
+        for(var i = firstBinding; i < binding; i++) {
+          loadBinding(i);
+        }
+        if (hasResult(orPattern.pattern1())) {
+          loadBinding(0);
+        }
+        compile(orPattern.pattern2(), slot, type, fail);
+        mv.visitLabel(end);
+      }
+      case ResultPattern resultPattern -> {
+        if (bindingTypes.get(0) != int.class) {
+          throw new UnsupportedPatternException();
+        }
+        compile(resultPattern.pattern(), slot, type, fail);
+        mv.visitLdcInsn(resultPattern.index());
+        mv.visitVarInsn(ISTORE, bindingSlots[0]);
+      }
+    }
+  }
+
+  // true if the pattern contains an OrPattern
+  private static boolean hasOr(Pattern pattern) {
+    return switch (pattern) {
+      case RecordPattern recordPattern -> List.of(recordPattern.patterns()).stream().anyMatch(BytecodeMatcher::hasOr);
+      case OrPattern orPattern -> true;
+      case ResultPattern resultPattern -> hasOr(resultPattern.pattern());
+      default -> false;
+    };
+  }
+
+  // true if the pattern contains a ResultPattern
+  private static boolean hasResult(Pattern pattern) {
+    return switch (pattern) {
+      case RecordPattern recordPattern -> List.of(recordPattern.patterns()).stream().anyMatch(BytecodeMatcher::hasResult);
+      case OrPattern orPattern -> hasResult(orPattern.pattern1()) || hasResult(orPattern.pattern2());
+      case ResultPattern resultPattern -> true;
+      default -> false;
+    };
+  }
+
+  // stores the value of the slot in the next binding
+  private void bind(int slot, Class<?> type) {
+    var bindingSlot = bindingSlots[binding];
+    var bindingType = bindingTypes.get(binding++);
+    if (type.isPrimitive() || bindingType.isPrimitive()) {
+      if (type != bindingType) {
+        throw new UnsupportedPatternException();
+      }
+      var descriptor = Type.getType(type);
+      mv.visitVarInsn(descriptor.getOpcode(ILOAD), slot);
+      mv.visitVarInsn(descriptor.getOpcode(ISTORE), bindingSlot);
+      return;
+    }
+    mv.visitVarInsn(ALOAD, slot);
+    mv.visitVarInsn(ASTORE, bindingSlot);
+  }
+
+  // binding = accessor(carrier)
+  private void loadBinding(int binding) {
+    invokeAccessor(binding);
+    mv.visitVarInsn(Type.getType(erase(bindingTypes.get(binding))).getOpcode(ISTORE), bindingSlots[binding]);
+  }
+
+  // push accessor(carrier)
+  private void invokeAccessor(int binding) {
+    var accessor = carrierMetadata.accessor(binding);
+    var erasedAccessor = accessor.asType(methodType(erase(accessor.type().returnType()), Object.class));
+    loadConstant(erasedAccessor);
+    mv.visitVarInsn(ALOAD, carrierSlot);
+    mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", erasedAccessor.type().toMethodDescriptorString(), false);
+  }
+
+  private void loadAsLong(int slot, Class<?> type) {
+    mv.visitVarInsn(Type.getType(type).getOpcode(ILOAD), slot);
+    if (type != long.class) {
+      mv.visitInsn(I2L);
+    }
+  }
+
+  // ldc a constant of the class data
+  private void loadConstant(Object constant) {
+    var descriptor = constant instanceof MethodHandle? "Ljava/lang/invoke/MethodHandle;": "Ljava/lang/Object;";
+    mv.visitLdcInsn(new ConstantDynamic("_", descriptor, CLASS_DATA_AT, classData.size()));
+    classData.add(constant);
+  }
+
+  private int newSlot(Class<?> type) {
+    var slot = nextSlot;
+    nextSlot += Type.getType(erase(type)).getSize();
+    return slot;
+  }
+
+  private String internalName(Class<?> type) {
+    checkAccessible(type);
+    return Type.getInternalName(type);
+  }
+
+  // the class must be nameable from the hidden class
+  private void checkAccessible(Class<?> type) {
+    var elementType = type;
+    while(elementType.isArray()) {
+      elementType = elementType.getComponentType();
+    }
+    if (elementType.isPrimitive()) {
+      return;
+    }
+    if (elementType.isHidden()) {
+      throw new UnsupportedPatternException();
+    }
+    try {
+      lookup.accessClass(elementType);
+    } catch (IllegalAccessException e) {
+      throw new UnsupportedPatternException();
+    }
+  }
+
+  private static Class<?> erase(Class<?> type) {
+    return type.isPrimitive()? type: Object.class;
+  }
+}
@@ -25,16 +25,23 @@
 
 package com.github.forax.carrier.java.lang.runtime;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodHandles.Lookup.ClassOption;
 import java.lang.invoke.MethodType;
+import java.lang.runtime.ObjectMethods;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 
@@ -93,6 +100,9 @@ public final class Carrier {
                     MethodType.methodType(int.class, char.class));
             INT_TO_CHAR = lookup.findStatic(Carrier.class, "intToChar",
                     MethodType.methodType(char.class, int.class));
+
+            FORMAT = lookup.findStatic(Carrier.class, "format",
+                    MethodType.methodType(String.class, Object[].class));
         } catch (NoSuchMethodException | IllegalAccessException e) {
             throw new AssertionError(e);
         }
@@ -115,6 +125,29 @@ public final class Carrier {
     private static final MethodHandle CHAR_TO_INT;
     private static final MethodHandle INT_TO_CHAR;
 
+    /**
+     * {@link MethodHandle} formatting the components of a carrier.
+     */
+    private static final MethodHandle FORMAT;
+
+    /**
+     * Format the components of a carrier, {@code Carrier[a, b, c]}.
+     *
+     * @param components  components in order
+     *
+     * @return the string representation of the carrier
+     */
+    static String format(Object... components) {
+        StringBuilder builder = new StringBuilder("Carrier[");
+        for (int i = 0; i < components.length; i++) {
+            if (i != 0) {
+                builder.append(", ");
+            }
+            builder.append(components[i]);
+        }
+        return builder.append(']').toString();
+    }
+
     private static int booleanToInt(boolean b) {
         return b ? 1 : 0;
     }
@@ -165,6 +198,55 @@ public final class Carrier {
     private static final String LONG_DESCRIPTOR =
             Type.getDescriptor(long.class);
 
+    /**
+     * Bootstrap method of the generated {@code equals}, {@code hashCode} and
+     * {@code toString} methods.
+     */
+    private static final Handle OBJECT_METHODS_BSM =
+            new Handle(H_INVOKESTATIC, Type.getInternalName(Carrier.class), "objectMethod",
+                    MethodType.methodType(CallSite.class, Lookup.class, String.class,
+                            MethodType.class, String.class,
+                            MethodHandle[].class).toMethodDescriptorString(),
+                    false);
+
+    /**
+     * Bootstrap method of the {@code equals}, {@code hashCode} and
+     * {@code toString} methods of the carrier classes. The name of a hidden
+     * class can not appear in a method descriptor, so the carrier is typed
+     * as Object at the call site and the call is delegated to
+     * {@link ObjectMethods#bootstrap} with the lookup class as carrier class.
+     * {@code toString} is not delegated, it formats the values returned by
+     * the getters without the names of the fields, see {@link #format}.
+     *
+     * @param lookup      lookup of the carrier class
+     * @param methodName  {@code equals}, {@code hashCode} or {@code toString}
+     * @param type        type of the call site, the carrier typed as Object
+     * @param names       names of the fields separated by ';'
+     * @param getters     getters of the fields or, for {@code toString}, of
+     *                    the components
+     *
+     * @return a call site implementing the method
+     *
+     * @throws Throwable if the bootstrap fails
+     */
+    static CallSite objectMethod(Lookup lookup, String methodName, MethodType type,
+                                 String names, MethodHandle... getters) throws Throwable {
+        if (methodName.equals("toString")) {
+            MethodHandle[] filters = new MethodHandle[getters.length];
+            for (int i = 0; i < getters.length; i++) {
+                filters[i] = getters[i].asType(MethodType.methodType(Object.class, Object.class));
+            }
+            MethodHandle format = MethodHandles.filterArguments(
+                    FORMAT.asCollector(Object[].class, getters.length), 0, filters);
+            return new ConstantCallSite(MethodHandles.permuteArguments(format, type,
+                    new int[getters.length]));
+        }
+        Class<?> carrierClass = lookup.lookupClass();
+        CallSite callSite = (CallSite) ObjectMethods.bootstrap(lookup, methodName,
+                type.changeParameterType(0, carrierClass), carrierClass, names, getters);
+        return new ConstantCallSite(callSite.getTarget().asType(type));
+    }
+
     /**
      * Shape of carrier based on counts of each of the three fundamental data
      * types.
@@ -229,60 +311,252 @@ public final class Carrier {
     }
 
     /**
-     * Factory for array based carrier. Array wrapped in object to provide
-     * immutability.
+     * Policy used to map the shape of a carrier to the shape of the carrier
+     * class storing it. Rounding the shapes up to shared buckets caps the
+     * number of carrier classes, the unused fields being left at their
+     * default values.
      */
-    static class CarrierArrayFactory {
+    enum ShapePolicy {
+        /**
+         * One carrier class per shape.
+         */
+        EXACT {
+            @Override
+            int bucket(int count) {
+                return count;
+            }
+        },
+
+        /**
+         * The count of each fundamental data type is rounded up to the
+         * next power of two.
+         */
+        POWER_OF_TWO {
+            @Override
+            int bucket(int count) {
+                return count <= 1 ? count : Integer.highestOneBit(count - 1) << 1;
+            }
+        };
+
+        /**
+         * Returns the number of fields of a fundamental data type used to
+         * store a number of components of that type.
+         *
+         * @param count  number of components
+         *
+         * @return number of fields
+         */
+        abstract int bucket(int count);
+
+        /**
+         * Returns the shape of the carrier class storing a carrier shape.
+         * Shapes stored in arrays and shapes whose bucket would be stored in
+         * arrays are not rounded.
+         *
+         * @param carrierShape  shape of carrier
+         *
+         * @return shape of the carrier class
+         */
+        private CarrierShape classShape(CarrierShape carrierShape) {
+            if (carrierShape.slotCount() > MAX_OBJECT_COMPONENTS) {
+                return carrierShape;
+            }
+            CarrierShape classShape = new CarrierShape(
+                    bucket(carrierShape.objectCount),
+                    bucket(carrierShape.intCount),
+                    bucket(carrierShape.longCount));
+            return classShape.slotCount() > MAX_OBJECT_COMPONENTS ?
+                    carrierShape : classShape;
+        }
+
+        /**
+         * Returns the policy configured by the system property
+         * {@code com.github.forax.carrier.shapePolicy}, {@link #EXACT} by
+         * default.
+         *
+         * @return the configured policy
+         */
+        private static ShapePolicy configured() {
+            String name = System.getProperty("com.github.forax.carrier.shapePolicy");
+            return name == null ? EXACT : valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Policy used by all the carrier caches.
+     */
+    private static final ShapePolicy SHAPE_POLICY = ShapePolicy.configured();
+
+    /**
+     * True if the immutable carriers use a carrier class dedicated to their
+     * carrier method type, configured by the system property
+     * {@code com.github.forax.carrier.typedCarriers}.
+     */
+    private static final boolean TYPED_CARRIERS =
+            Boolean.getBoolean("com.github.forax.carrier.typedCarriers");
+
+    /**
+     * Carrier storing its components in one array per fundamental data type,
+     * used when the number of slots is too large for a {@link CarrierClass}.
+     * Primitive components are never boxed.
+     */
+    static class ArrayCarrier {
+        /**
+         * Object components.
+         */
+        final Object[] objects;
+
+        /**
+         * int components.
+         */
+        final int[] ints;
+
+        /**
+         * long components.
+         */
+        final long[] longs;
+
         /**
          * Constructor
          *
-         * @param ptypes types of carrier constructor arguments
+         * @param objects  object components
+         * @param ints     int components
+         * @param longs    long components
+         */
+        ArrayCarrier(Object[] objects, int[] ints, long[] longs) {
+            this.objects = objects;
+            this.ints = ints;
+            this.longs = longs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ArrayCarrier carrier &&
+                    Arrays.equals(objects, carrier.objects) &&
+                    Arrays.equals(ints, carrier.ints) &&
+                    Arrays.equals(longs, carrier.longs);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Arrays.hashCode(objects) * 31 + Arrays.hashCode(ints)) * 31 +
+                    Arrays.hashCode(longs);
+        }
+
+        @Override
+        public String toString() {
+            Object[] components = Arrays.copyOf(objects,
+                    objects.length + ints.length + longs.length);
+            for (int i = 0; i < ints.length; i++) {
+                components[objects.length + i] = ints[i];
+            }
+            for (int i = 0; i < longs.length; i++) {
+                components[objects.length + ints.length + i] = longs[i];
+            }
+            return format(components);
+        }
+    }
+
+    /**
+     * Mutable {@link ArrayCarrier}, the components can be changed after
+     * the creation so the carrier keeps the identity based {@code equals}
+     * and {@code hashCode}.
+     */
+    static final class MutableArrayCarrier extends ArrayCarrier {
+        /**
+         * Constructor
          *
-         * @return {@link MethodHandle} to generic carrier constructor.
+         * @param objects  object components
+         * @param ints     int components
+         * @param longs    long components
          */
-        static MethodHandle constructor(Class<?>[] ptypes) {
-            MethodType methodType = MethodType.methodType(Object.class, ptypes);
-            MethodHandle collector = MethodHandles.identity(Object[].class)
-                    .withVarargs(true);
+        MutableArrayCarrier(Object[] objects, int[] ints, long[] longs) {
+            super(objects, ints, longs);
+        }
 
-            return collector.asType(methodType);
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
         }
 
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    /**
+     * Factory for array based carrier.
+     */
+    static class CarrierArrayFactory {
         /**
-         * Return an array of carrier component getters, aligning with types in
-         * {@code ptypes}.
+         * Construct the constructor, component getters and setters of an
+         * array based carrier based on shape. The arrays are mutable so
+         * the same fields are used for the mutable and the immutable case,
+         * only the mutable carrier has an identity based {@code equals} and
+         * {@code hashCode}.
          *
-         * @param ptypes  types of carrier constructor arguments
+         * @param carrierShape  shape of carrier
+         * @param mutable       true if the components can be changed
          *
-         * @return array of carrier getters
+         * @return a {@link CarrierClass} object containing constructor,
+         *         component getters and component setters.
          */
-        static MethodHandle[] components(Class<?>[] ptypes) {
-            int length = ptypes.length;
-            MethodHandle[] getters = new MethodHandle[length];
+        static CarrierClass newCarrierClass(CarrierShape carrierShape, boolean mutable) {
+            MethodHandle constructor;
+            MethodHandle[] components = new MethodHandle[carrierShape.objectCount +
+                    carrierShape.intCount + carrierShape.longCount];
+            MethodHandle[] setters = new MethodHandle[components.length];
+            try {
+                constructor = LOOKUP.findConstructor(mutable ? MutableArrayCarrier.class : ArrayCarrier.class,
+                        MethodType.methodType(void.class, Object[].class, int[].class, long[].class))
+                        .asType(MethodType.methodType(ArrayCarrier.class, Object[].class, int[].class, long[].class));
+                constructor = constructor
+                        .asCollector(2, long[].class, carrierShape.longCount)
+                        .asCollector(1, int[].class, carrierShape.intCount)
+                        .asCollector(0, Object[].class, carrierShape.objectCount);
 
-            for (int i = 0; i < length; i++) {
-                getters[i] = component(ptypes, i);
+                int arg = 0;
+                arg = accessors(components, setters, arg, carrierShape.objectCount,
+                        LOOKUP.findGetter(ArrayCarrier.class, "objects", Object[].class));
+                arg = accessors(components, setters, arg, carrierShape.intCount,
+                        LOOKUP.findGetter(ArrayCarrier.class, "ints", int[].class));
+                accessors(components, setters, arg, carrierShape.longCount,
+                        LOOKUP.findGetter(ArrayCarrier.class, "longs", long[].class));
+            } catch (NoSuchMethodException | NoSuchFieldException | IllegalAccessException e) {
+                throw new AssertionError(e);
             }
 
-            return getters;
+            return new CarrierClass(constructor, components, setters);
         }
 
         /**
-         * Return a carrier getter for component {@code i}.
+         * Fill the component getters and setters of the elements of one of the
+         * arrays of an {@link ArrayCarrier}.
          *
-         * @param ptypes  types of carrier constructor arguments
-         * @param i       index of parameter to get
+         * @param components  array of component getters to fill
+         * @param setters     array of component setters to fill
+         * @param arg         index of the first component to fill
+         * @param count       number of elements of the array
+         * @param arrayGetter getter of the array field
          *
-         * @return carrier component {@code i} getter {@link MethodHandle}
+         * @return index of the next component to fill
          */
-        static MethodHandle component(Class<?>[] ptypes, int i) {
-            MethodType methodType =
-                    MethodType.methodType(ptypes[i], Object.class);
-            MethodHandle getter =
-                    MethodHandles.arrayElementGetter(Object[].class);
+        private static int accessors(MethodHandle[] components, MethodHandle[] setters,
+                                     int arg, int count, MethodHandle arrayGetter) {
+            Class<?> arrayType = arrayGetter.type().returnType();
+            MethodHandle getter = MethodHandles.arrayElementGetter(arrayType);
+            MethodHandle setter = MethodHandles.arrayElementSetter(arrayType);
+
+            for (int i = 0; i < count; i++) {
+                components[arg] = MethodHandles.filterArguments(
+                        MethodHandles.insertArguments(getter, 1, i), 0, arrayGetter);
+                setters[arg] = MethodHandles.filterArguments(
+                        MethodHandles.insertArguments(setter, 1, i), 0, arrayGetter);
+                arg++;
+            }
 
-            return MethodHandles.insertArguments(
-                    getter, 1, i).asType(methodType);
+            return arg;
         }
     }
 
@@ -293,13 +567,17 @@ public final class Carrier {
         /**
          * Define the hidden class Lookup object
          *
-         * @param bytes  class content
+         * @param bytes   class content
+         * @param strong  true if the class can not be unloaded before the
+         *                class loader of {@link Carrier}
          *
          * @return the Lookup object of the hidden class
          */
-        static Lookup defineHiddenClass(byte[] bytes) {
+        static Lookup defineHiddenClass(byte[] bytes, boolean strong) {
             try {
-                return LOOKUP.defineHiddenClass(bytes, false, ClassOption.STRONG);
+                return strong ?
+                        LOOKUP.defineHiddenClass(bytes, false, ClassOption.STRONG) :
+                        LOOKUP.defineHiddenClass(bytes, false);
             } catch (IllegalAccessException e) {
                 throw new AssertionError(e);
             }
@@ -342,12 +620,13 @@ public final class Carrier {
          * Generate the full name of a carrier class based on shape.
          *
          * @param carrierShape  shape of carrier
+         * @param mutable       true if the fields of the carrier are not final
          *
          * @return name of a carrier class
          */
-        static String carrierClassName(CarrierShape carrierShape) {
+        static String carrierClassName(CarrierShape carrierShape, boolean mutable) {
             String packageName = Carrier.class.getPackageName().replace('.', '/');
-            String className = "Carrier$" +
+            String className = (mutable ? "MutableCarrier$" : "Carrier$") +
                     objectFieldName(carrierShape.objectCount) +
                     intFieldName(carrierShape.intCount) +
                     longFieldName(carrierShape.longCount);
@@ -357,22 +636,22 @@ public final class Carrier {
         }
 
         /**
-         * Construct a new object carrier class based on shape.
+         * Generate the content of an object carrier class based on shape.
          *
          * @param carrierShape  shape of carrier
+         * @param mutable       true if the fields of the carrier are not final
          *
-         * @return a {@link CarrierClass} object containing constructor and
-         *         component getters.
+         * @return the content of the class file
          */
-        static CarrierClass newCarrierClass(CarrierShape carrierShape) {
-            String carrierClassName = carrierClassName(carrierShape);
+        static byte[] carrierClassBytes(CarrierShape carrierShape, boolean mutable) {
+            String carrierClassName = carrierClassName(carrierShape, mutable);
 
             StringBuilder initDescriptor = new StringBuilder("(");
 
             ClassWriter cw = new ClassWriter(0);
             cw.visit(V17, ACC_PUBLIC | ACC_FINAL, carrierClassName,
                     null, "java/lang/Object", null);
-            int fieldFlags = ACC_PUBLIC | ACC_FINAL;
+            int fieldFlags = mutable ? ACC_PUBLIC : ACC_PUBLIC | ACC_FINAL;
 
             for (int i = 0; i < carrierShape.objectCount; i++) {
                 cw.visitField(fieldFlags, objectFieldName(i), OBJECT_DESCRIPTOR,
@@ -431,14 +710,140 @@ public final class Carrier {
                 init.visitEnd();
             }
 
+            int fieldCount = carrierShape.objectCount + carrierShape.intCount + carrierShape.longCount;
+            String[] fieldNames = new String[fieldCount];
+            String[] fieldDescriptors = new String[fieldCount];
+            int field = 0;
+            for (int i = 0; i < carrierShape.objectCount; i++, field++) {
+                fieldNames[field] = objectFieldName(i);
+                fieldDescriptors[field] = OBJECT_DESCRIPTOR;
+            }
+            for (int i = 0; i < carrierShape.intCount; i++, field++) {
+                fieldNames[field] = intFieldName(i);
+                fieldDescriptors[field] = INT_DESCRIPTOR;
+            }
+            for (int i = 0; i < carrierShape.longCount; i++, field++) {
+                fieldNames[field] = longFieldName(i);
+                fieldDescriptors[field] = LONG_DESCRIPTOR;
+            }
+            visitObjectMethods(cw, carrierClassName, fieldNames, fieldDescriptors, null, mutable);
+
             cw.visitEnd();
-            byte[] bytes = cw.toByteArray();
+            return cw.toByteArray();
+        }
 
-            Lookup hiddenClassLookup = defineHiddenClass(bytes);
-            Class<?> hiddenClass = hiddenClassLookup.lookupClass();
+        /**
+         * Generate value based {@code equals}, {@code hashCode} and
+         * {@code toString} methods delegating to
+         * {@link #objectMethod}, ints and longs are compared raw
+         * and hashed without boxing. A mutable carrier only gets
+         * {@code toString}, its hash code would change with its fields
+         * so it keeps the identity based methods of Object.
+         *
+         * @param cw                class writer of the carrier class
+         * @param carrierClassName  internal name of the carrier class
+         * @param fieldNames        names of the fields
+         * @param fieldDescriptors  descriptors of the fields
+         * @param components        getters of the components printed by
+         *                          {@code toString} or null to print the
+         *                          fields
+         * @param mutable           true if the fields of the carrier are not final
+         */
+        static void visitObjectMethods(ClassWriter cw, String carrierClassName,
+                                       String[] fieldNames, String[] fieldDescriptors,
+                                       Handle[] components, boolean mutable) {
+            Object[] bsmArgs = new Object[1 + fieldNames.length];
+            bsmArgs[0] = String.join(";", fieldNames);
+            for (int i = 0; i < fieldNames.length; i++) {
+                bsmArgs[1 + i] = new Handle(H_GETFIELD, carrierClassName,
+                        fieldNames[i], fieldDescriptors[i], false);
+            }
+            Object[] toStringBsmArgs = bsmArgs;
+            if (components != null) {
+                toStringBsmArgs = new Object[1 + components.length];
+                toStringBsmArgs[0] = "";
+                System.arraycopy(components, 0, toStringBsmArgs, 1, components.length);
+            }
+
+            if (!mutable) {
+                MethodVisitor equals = cw.visitMethod(ACC_PUBLIC | ACC_FINAL,
+                        "equals", "(Ljava/lang/Object;)Z", null, null);
+                equals.visitCode();
+                equals.visitVarInsn(ALOAD, 0);
+                equals.visitVarInsn(ALOAD, 1);
+                equals.visitInvokeDynamicInsn("equals",
+                        "(" + OBJECT_DESCRIPTOR + "Ljava/lang/Object;)Z", OBJECT_METHODS_BSM, bsmArgs);
+                equals.visitInsn(IRETURN);
+                equals.visitMaxs(2, 2);
+                equals.visitEnd();
+            }
+
+            if (!mutable) {
+                MethodVisitor hashCode = cw.visitMethod(ACC_PUBLIC | ACC_FINAL,
+                        "hashCode", "()I", null, null);
+                hashCode.visitCode();
+                hashCode.visitVarInsn(ALOAD, 0);
+                hashCode.visitInvokeDynamicInsn("hashCode",
+                        "(" + OBJECT_DESCRIPTOR + ")I", OBJECT_METHODS_BSM, bsmArgs);
+                hashCode.visitInsn(IRETURN);
+                hashCode.visitMaxs(1, 1);
+                hashCode.visitEnd();
+            }
+
+            {
+                MethodVisitor toString = cw.visitMethod(ACC_PUBLIC | ACC_FINAL,
+                        "toString", "()Ljava/lang/String;", null, null);
+                toString.visitCode();
+                toString.visitVarInsn(ALOAD, 0);
+                toString.visitInvokeDynamicInsn("toString",
+                        "(" + OBJECT_DESCRIPTOR + ")Ljava/lang/String;", OBJECT_METHODS_BSM, toStringBsmArgs);
+                toString.visitInsn(ARETURN);
+                toString.visitMaxs(1, 1);
+                toString.visitEnd();
+            }
+        }
+
+        /**
+         * Find a carrier class generated at build time by
+         * {@link CarrierGenerator}.
+         *
+         * @param carrierShape  shape of carrier
+         * @param mutable       true if the fields of the carrier are not final
+         *
+         * @return the carrier class or null if there is no such class
+         */
+        private static Class<?> findPregeneratedClass(CarrierShape carrierShape, boolean mutable) {
+            String binaryName = carrierClassName(carrierShape, mutable).replace('/', '.');
+            try {
+                return Class.forName(binaryName, true, Carrier.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Construct a new object carrier class based on shape.
+         * Unless the carrier must be unloadable, a carrier class generated
+         * at build time is used in preference to defining a hidden class.
+         *
+         * @param carrierShape  shape of carrier
+         * @param mutable       true if the fields of the carrier are not final
+         * @param strong        true if the class can not be unloaded before
+         *                      the class loader of {@link Carrier}
+         *
+         * @return a {@link CarrierClass} object containing constructor,
+         *         component getters and, if mutable, component setters.
+         */
+        static CarrierClass newCarrierClass(CarrierShape carrierShape, boolean mutable, boolean strong) {
+            Class<?> pregeneratedClass = strong ? findPregeneratedClass(carrierShape, mutable) : null;
+            Lookup hiddenClassLookup = pregeneratedClass != null ? LOOKUP :
+                    defineHiddenClass(carrierClassBytes(carrierShape, mutable), strong);
+            Class<?> hiddenClass = pregeneratedClass != null ? pregeneratedClass :
+                    hiddenClassLookup.lookupClass();
             MethodType constructorMethodType = carrierShape.constructorMethodType();
             MethodHandle constructor;
             MethodHandle[] components;
+            MethodHandle[] setters = null;
             try {
                 constructor = hiddenClassLookup.findConstructor(hiddenClass, constructorMethodType);
 
@@ -456,17 +861,250 @@ public final class Carrier {
                     components[arg++] = hiddenClassLookup.findGetter(hiddenClass,
                         CarrierObjectFactory.longFieldName(i), long.class);
                 }
+
+                if (mutable) {
+                    setters = new MethodHandle[components.length];
+                    arg = 0;
+                    for(int i = 0; i < carrierShape.objectCount; i++) {
+                        setters[arg++] = hiddenClassLookup.findSetter(hiddenClass,
+                            CarrierObjectFactory.objectFieldName(i), Object.class);
+                    }
+                    for(int i = 0; i < carrierShape.intCount; i++) {
+                        setters[arg++] = hiddenClassLookup.findSetter(hiddenClass,
+                            CarrierObjectFactory.intFieldName(i), int.class);
+                    }
+                    for(int i = 0; i < carrierShape.longCount; i++) {
+                        setters[arg++] = hiddenClassLookup.findSetter(hiddenClass,
+                            CarrierObjectFactory.longFieldName(i), long.class);
+                    }
+                }
             } catch (NoSuchMethodException | NoSuchFieldException | IllegalAccessException e) {
                 throw new AssertionError(e);
             }
 
-            return new CarrierClass(constructor, components);
+            return new CarrierClass(constructor, components, setters);
+        }
+    }
+
+    /**
+     * Factory for carrier classes dedicated to a carrier method type.
+     * The class stores the components in Object, int and long fields in the
+     * order of the parameter types and declares a static factory and static
+     * getters doing the primitive conversions in bytecode, so the handles
+     * are direct method handles instead of adapted ones.
+     */
+    static class CarrierTypedFactory {
+        /**
+         * Returns the type of the field storing a component.
+         *
+         * @param ptype  type of the component
+         *
+         * @return Object, int or long
+         */
+        private static Class<?> fieldType(Class<?> ptype) {
+            if (!ptype.isPrimitive()) {
+                return Object.class;
+            }
+            return ptype == long.class || ptype == double.class ? long.class : int.class;
+        }
+
+        /**
+         * Returns the type of a component in the generated code, a reference
+         * type not visible from the class loader of {@link Carrier} is
+         * replaced by Object.
+         *
+         * @param ptype  type of the component
+         *
+         * @return the type of the component in the generated code
+         */
+        private static Class<?> visibleType(Class<?> ptype) {
+            if (ptype.isPrimitive()) {
+                return ptype;
+            }
+            try {
+                return Class.forName(ptype.getName(), false, Carrier.class.getClassLoader()) == ptype ?
+                        ptype : Object.class;
+            } catch (ClassNotFoundException e) {
+                return Object.class;
+            }
+        }
+
+        /**
+         * Generate the name of the field storing a component.
+         *
+         * @param index  component index
+         *
+         * @return name of the field
+         */
+        private static String fieldName(int index) {
+            return "c" + index;
+        }
+
+        /**
+         * Generate the content of a carrier class dedicated to a carrier
+         * method type.
+         *
+         * @param ptypes  visible types of the components
+         *
+         * @return the content of the class file
+         */
+        private static byte[] carrierClassBytes(Class<?>[] ptypes) {
+            String packageName = Carrier.class.getPackageName().replace('.', '/');
+            String carrierClassName = packageName.isEmpty() ? "TypedCarrier" :
+                    packageName + "/TypedCarrier";
+
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            cw.visit(V17, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, carrierClassName,
+                    null, "java/lang/Object", null);
+
+            StringBuilder initDescriptor = new StringBuilder("(");
+            for (int i = 0; i < ptypes.length; i++) {
+                String fieldDescriptor = Type.getDescriptor(fieldType(ptypes[i]));
+                cw.visitField(ACC_PRIVATE | ACC_FINAL, fieldName(i), fieldDescriptor,
+                        null, null);
+                initDescriptor.append(fieldDescriptor);
+            }
+            initDescriptor.append(")V");
+
+            {
+                MethodVisitor init = cw.visitMethod(ACC_PRIVATE,
+                        "<init>", initDescriptor.toString(), null, null);
+                init.visitCode();
+                init.visitVarInsn(ALOAD, 0);
+                init.visitMethodInsn(INVOKESPECIAL,
+                        "java/lang/Object", "<init>", "()V", false);
+                int slot = 1;
+                for (int i = 0; i < ptypes.length; i++) {
+                    Type fieldType = Type.getType(fieldType(ptypes[i]));
+                    init.visitVarInsn(ALOAD, 0);
+                    init.visitVarInsn(fieldType.getOpcode(ILOAD), slot);
+                    slot += fieldType.getSize();
+                    init.visitFieldInsn(PUTFIELD, carrierClassName,
+                            fieldName(i), fieldType.getDescriptor());
+                }
+                init.visitInsn(RETURN);
+                init.visitMaxs(0, 0);
+                init.visitEnd();
+            }
+
+            {
+                MethodVisitor make = cw.visitMethod(ACC_PUBLIC | ACC_STATIC,
+                        "make", MethodType.methodType(Object.class, ptypes).toMethodDescriptorString(),
+                        null, null);
+                make.visitCode();
+                make.visitTypeInsn(NEW, carrierClassName);
+                make.visitInsn(DUP);
+                int slot = 0;
+                for (Class<?> ptype : ptypes) {
+                    Type type = Type.getType(ptype);
+                    make.visitVarInsn(type.getOpcode(ILOAD), slot);
+                    slot += type.getSize();
+                    if (ptype == float.class) {
+                        make.visitMethodInsn(INVOKESTATIC, "java/lang/Float",
+                                "floatToRawIntBits", "(F)I", false);
+                    } else if (ptype == double.class) {
+                        make.visitMethodInsn(INVOKESTATIC, "java/lang/Double",
+                                "doubleToRawLongBits", "(D)J", false);
+                    }
+                }
+                make.visitMethodInsn(INVOKESPECIAL, carrierClassName,
+                        "<init>", initDescriptor.toString(), false);
+                make.visitInsn(ARETURN);
+                make.visitMaxs(0, 0);
+                make.visitEnd();
+            }
+
+            for (int i = 0; i < ptypes.length; i++) {
+                Class<?> ptype = ptypes[i];
+                Type type = Type.getType(ptype);
+                MethodVisitor getter = cw.visitMethod(ACC_PUBLIC | ACC_STATIC,
+                        fieldName(i), MethodType.methodType(ptype, Object.class).toMethodDescriptorString(),
+                        null, null);
+                getter.visitCode();
+                getter.visitVarInsn(ALOAD, 0);
+                getter.visitTypeInsn(CHECKCAST, carrierClassName);
+                getter.visitFieldInsn(GETFIELD, carrierClassName,
+                        fieldName(i), Type.getDescriptor(fieldType(ptype)));
+                if (ptype == float.class) {
+                    getter.visitMethodInsn(INVOKESTATIC, "java/lang/Float",
+                            "intBitsToFloat", "(I)F", false);
+                } else if (ptype == double.class) {
+                    getter.visitMethodInsn(INVOKESTATIC, "java/lang/Double",
+                            "longBitsToDouble", "(J)D", false);
+                } else if (ptype == byte.class) {
+                    getter.visitInsn(I2B);
+                } else if (ptype == short.class) {
+                    getter.visitInsn(I2S);
+                } else if (ptype == char.class) {
+                    getter.visitInsn(I2C);
+                } else if (!ptype.isPrimitive() && ptype != Object.class) {
+                    getter.visitTypeInsn(CHECKCAST, type.getInternalName());
+                }
+                getter.visitInsn(type.getOpcode(IRETURN));
+                getter.visitMaxs(0, 0);
+                getter.visitEnd();
+            }
+
+            String[] fieldNames = new String[ptypes.length];
+            String[] fieldDescriptors = new String[ptypes.length];
+            Handle[] components = new Handle[ptypes.length];
+            for (int i = 0; i < ptypes.length; i++) {
+                fieldNames[i] = fieldName(i);
+                fieldDescriptors[i] = Type.getDescriptor(fieldType(ptypes[i]));
+                components[i] = new Handle(H_INVOKESTATIC, carrierClassName, fieldName(i),
+                        MethodType.methodType(ptypes[i], Object.class).toMethodDescriptorString(), false);
+            }
+            CarrierObjectFactory.visitObjectMethods(cw, carrierClassName, fieldNames, fieldDescriptors,
+                    components, false);
+
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+
+        /**
+         * Construct a new carrier class dedicated to a carrier method type.
+         *
+         * @param methodType  {@link MethodType} providing types for the
+         *                    carrier's components
+         * @param strong      true if the class can not be unloaded before
+         *                    the class loader of {@link Carrier}
+         *
+         * @return the constructor and the component getters of the carrier,
+         *         all direct method handles unless a component type is not
+         *         visible from the class loader of {@link Carrier}
+         */
+        static CarrierHandles newCarrierHandles(MethodType methodType, boolean strong) {
+            Class<?>[] ptypes = methodType.parameterArray();
+            Class<?>[] visibleTypes = new Class<?>[ptypes.length];
+            for (int i = 0; i < ptypes.length; i++) {
+                visibleTypes[i] = visibleType(ptypes[i]);
+            }
+
+            Lookup hiddenClassLookup = CarrierObjectFactory.defineHiddenClass(
+                    carrierClassBytes(visibleTypes), strong);
+            Class<?> hiddenClass = hiddenClassLookup.lookupClass();
+            MethodHandle constructor;
+            MethodHandle[] components = new MethodHandle[ptypes.length];
+            try {
+                constructor = hiddenClassLookup.findStatic(hiddenClass, "make",
+                        MethodType.methodType(Object.class, visibleTypes))
+                        .asType(methodType.changeReturnType(Object.class));
+                for (int i = 0; i < ptypes.length; i++) {
+                    components[i] = hiddenClassLookup.findStatic(hiddenClass, fieldName(i),
+                            MethodType.methodType(visibleTypes[i], Object.class))
+                            .asType(MethodType.methodType(ptypes[i], Object.class));
+                }
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+
+            return new CarrierHandles(constructor, components, null);
         }
     }
 
     /**
      * Provides constructor and component MethodHandles for a constructed
-     * carrier class.
+     * carrier class or for an {@link ArrayCarrier}.
      */
     record CarrierClass(
         /**
@@ -481,7 +1119,14 @@ public final class Carrier {
          * component getters. These getters will only return Object, int and
          * long types.
          */
-        MethodHandle[] components) {
+        MethodHandle[] components,
+
+        /**
+         * All the raw {@link MethodHandle MethodHandles} for a carrier
+         * component setters or null if the carrier class is not mutable.
+         * These setters will only take Object, int and long types.
+         */
+        MethodHandle[] setters) {
 
         /**
          * Create a single raw {@link MethodHandle} for a carrier component
@@ -497,31 +1142,313 @@ public final class Carrier {
     }
 
     /**
-     * Cache for all constructed carrier object classes, keyed on class
-     * name (i.e., carrier shape.)
+     * Constructor, component getters and, if mutable, component setters of
+     * a carrier adapted to the types of a {@link MethodType}.
      */
-    private static final ConcurrentHashMap<String, CarrierClass> carrierCache =
-            new ConcurrentHashMap<>();
+    record CarrierHandles(
+        /**
+         * Constructor matching the parameter types.
+         */
+        MethodHandle constructor,
+
+        /**
+         * Component getters matching the parameter types.
+         */
+        MethodHandle[] components,
+
+        /**
+         * Component setters matching the parameter types or null if the
+         * carrier is not mutable.
+         */
+        MethodHandle[] setters) {
+    }
 
     /**
-     * Constructor
+     * Class loaders whose classes can be referenced from the caches shared
+     * by all the carriers, the class loader of {@link Carrier} and its
+     * parents.
      */
-    private Carrier() {
+    private static final ClassLoader[] SHAREABLE_LOADERS = shareableLoaders();
+
+    /**
+     * Returns the class loader of {@link Carrier} and its parents.
+     *
+     * @return the class loaders
+     */
+    private static ClassLoader[] shareableLoaders() {
+        ArrayList<ClassLoader> loaders = new ArrayList<>();
+        for (ClassLoader loader = Carrier.class.getClassLoader(); loader != null; loader = loader.getParent()) {
+            loaders.add(loader);
+        }
+        return loaders.toArray(ClassLoader[]::new);
+    }
+
+    /**
+     * Returns true if a type can be referenced from a cache shared by all
+     * the carriers without preventing its class loader from being unloaded,
+     * a primitive type or a class of the class loader of {@link Carrier} or
+     * of one of its parents.
+     *
+     * @param type  the type
+     *
+     * @return true if the type can be referenced from a shared cache
+     */
+    static boolean isShareable(Class<?> type) {
+        ClassLoader loader = type.getClassLoader();
+        if (loader == null) {
+            return true;
+        }
+        for (ClassLoader shareableLoader : SHAREABLE_LOADERS) {
+            if (loader == shareableLoader) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the carrier method type with an Object return type in which
+     * the parameter types that are not {@link #isShareable(Class) shareable}
+     * are replaced by Object.
+     *
+     * @param methodType  carrier method type
+     *
+     * @return the shareable carrier method type
+     */
+    static MethodType shareableType(MethodType methodType) {
+        MethodType shareableType = methodType.changeReturnType(Object.class);
+        for (int i = 0; i < shareableType.parameterCount(); i++) {
+            if (!isShareable(shareableType.parameterType(i))) {
+                shareableType = shareableType.changeParameterType(i, Object.class);
+            }
+        }
+        return shareableType;
     }
 
     /**
-     * Find or create carrier class for a carrioer shape.
+     * Adapt a handle found in a shared cache to a type. The conversion done by
+     * {@link MethodHandle#asType(MethodType)} is memoized in the converted
+     * handle, so the shared handle is first bound to an invoker to not
+     * retain the type and its classes.
      *
-     * @param carrierShape  shape of carrier
+     * @param handle  handle of a shared cache
+     * @param type    type of the returned handle
      *
-     * @return {@link Class<>} of carrier class matching carrier shape
+     * @return a handle of the given type
      */
-    private static CarrierClass findCarrierClass(CarrierShape carrierShape) {
-        String carrierClassName =
-                CarrierObjectFactory.carrierClassName(carrierShape);
+    private static MethodHandle adapt(MethodHandle handle, MethodType type) {
+        if (handle.type() == type) {
+            return handle;
+        }
+        return MethodHandles.exactInvoker(handle.type()).bindTo(handle).asType(type);
+    }
 
-        return carrierCache.computeIfAbsent(carrierClassName,
-                cn -> CarrierObjectFactory.newCarrierClass(carrierShape));
+    /**
+     * Adapt component getters or setters found in a shared cache to the
+     * parameter types of a carrier method type.
+     *
+     * @param handles     getters or setters of a shared cache
+     * @param methodType  carrier method type
+     * @param setters     true for setters, false for getters
+     *
+     * @return the adapted handles, a new array
+     */
+    private static MethodHandle[] adapt(MethodHandle[] handles, MethodType methodType, boolean setters) {
+        MethodHandle[] adapted = new MethodHandle[handles.length];
+        for (int i = 0; i < handles.length; i++) {
+            Class<?> ptype = methodType.parameterType(i);
+            adapted[i] = adapt(handles[i], setters ?
+                    MethodType.methodType(void.class, Object.class, ptype) :
+                    MethodType.methodType(ptype, Object.class));
+        }
+        return adapted;
+    }
+
+    /**
+     * Cache of the carrier classes and of the carrier handles adapted to a
+     * carrier method type.
+     */
+    static final class CarrierCache {
+        /**
+         * True if the carrier classes are strongly bound to the class loader
+         * of {@link Carrier}, false if they can be unloaded once the cache
+         * is not reachable anymore.
+         */
+        private final boolean strong;
+
+        /**
+         * Policy mapping the carrier shapes to the carrier class shapes.
+         */
+        private final ShapePolicy shapePolicy;
+
+        /**
+         * True if the immutable carriers use a carrier class dedicated to
+         * their carrier method type.
+         */
+        private final boolean typed;
+
+        /**
+         * Cache for all constructed carrier object classes, keyed on carrier
+         * shape.
+         */
+        private final ConcurrentHashMap<CarrierShape, CarrierClass> carrierCache =
+                new ConcurrentHashMap<>();
+
+        /**
+         * Cache for all constructed mutable carrier object classes, keyed on
+         * carrier shape.
+         */
+        private final ConcurrentHashMap<CarrierShape, CarrierClass> mutableCarrierCache =
+                new ConcurrentHashMap<>();
+
+        /**
+         * Cache of the carrier handles adapted to a carrier method type, keyed
+         * on the method type with an Object return type.
+         */
+        private final ConcurrentHashMap<MethodType, CarrierHandles> handlesCache =
+                new ConcurrentHashMap<>();
+
+        /**
+         * Cache of the mutable carrier handles adapted to a carrier method
+         * type, keyed on the method type with an Object return type.
+         */
+        private final ConcurrentHashMap<MethodType, CarrierHandles> mutableHandlesCache =
+                new ConcurrentHashMap<>();
+
+        /**
+         * Constructor
+         *
+         * @param strong       true if the carrier classes can not be unloaded
+         * @param shapePolicy  policy mapping the carrier shapes to the
+         *                     carrier class shapes
+         * @param typed        true if the immutable carriers use a carrier
+         *                     class dedicated to their carrier method type
+         */
+        CarrierCache(boolean strong, ShapePolicy shapePolicy, boolean typed) {
+            this.strong = strong;
+            this.shapePolicy = shapePolicy;
+            this.typed = typed;
+        }
+
+        /**
+         * Returns the number of carrier classes created by this cache.
+         *
+         * @return number of carrier classes
+         */
+        int carrierClassCount() {
+            return carrierCache.size() + mutableCarrierCache.size();
+        }
+
+        /**
+         * Find or create carrier class for a carrioer shape. If the number of
+         * slots exceeds {@link Carrier#MAX_OBJECT_COMPONENTS}, an
+         * {@link ArrayCarrier} is used instead.
+         *
+         * @param carrierShape  shape of carrier
+         * @param mutable       true if the fields of the carrier are not final
+         *
+         * @return {@link Class<>} of carrier class matching carrier shape
+         */
+        CarrierClass findCarrierClass(CarrierShape carrierShape, boolean mutable) {
+            ConcurrentHashMap<CarrierShape, CarrierClass> cache =
+                    mutable ? mutableCarrierCache : carrierCache;
+
+            return cache.computeIfAbsent(carrierShape,
+                    shape -> shape.slotCount() > MAX_OBJECT_COMPONENTS ?
+                            CarrierArrayFactory.newCarrierClass(shape, mutable) :
+                            CarrierObjectFactory.newCarrierClass(shape, mutable, strong));
+        }
+
+        /**
+         * Find or create the carrier handles adapted to a carrier method type.
+         * The handles of a strong cache are shared by all the carriers, so
+         * they are adapted to the {@link #shareableType(MethodType) shareable
+         * type} of the carrier method type, see {@link #adapt}.
+         *
+         * @param methodType {@link MethodType} providing types for the carrier's
+         *                   components.
+         * @param mutable    true if the fields of the carrier are not final
+         *
+         * @return the carrier handles matching the parameter types or the
+         *         shareable parameter types
+         *
+         * @throws IllegalArgumentException if number of component slots exceeds maximum
+         */
+        CarrierHandles findCarrierHandles(MethodType methodType, boolean mutable) {
+            ConcurrentHashMap<MethodType, CarrierHandles> cache =
+                    mutable ? mutableHandlesCache : handlesCache;
+            MethodType key = strong ? shareableType(methodType) :
+                    methodType.changeReturnType(Object.class);
+            CarrierHandles carrierHandles = cache.get(key);
+
+            if (carrierHandles != null) {
+                return carrierHandles;
+            }
+
+            return cache.computeIfAbsent(key, mt -> newCarrierHandles(mt, mutable));
+        }
+
+        /**
+         * Create the carrier handles adapted to a carrier method type.
+         *
+         * @param methodType {@link MethodType} providing types for the carrier's
+         *                   components.
+         * @param mutable    true if the fields of the carrier are not final
+         *
+         * @return the carrier handles matching the parameter types
+         *
+         * @throws IllegalArgumentException if number of component slots exceeds maximum
+         */
+        private CarrierHandles newCarrierHandles(MethodType methodType, boolean mutable) {
+            Class<?>[] ptypes = methodType.parameterArray();
+            CarrierShape carrierShape = getCarrierShape(ptypes);
+            if (typed && !mutable) {
+                return CarrierTypedFactory.newCarrierHandles(methodType, strong);
+            }
+            CarrierShape classShape = shapePolicy.classShape(carrierShape);
+            CarrierClass carrierClass = findCarrierClass(classShape, mutable);
+
+            return new CarrierHandles(
+                    constructor(ptypes, carrierShape,
+                            padConstructor(carrierShape, classShape, carrierClass.constructor())),
+                    components(ptypes, carrierShape,
+                            unusedRemoved(carrierShape, classShape, carrierClass.components())),
+                    mutable ? setters(ptypes, carrierShape,
+                            unusedRemoved(carrierShape, classShape, carrierClass.setters())) : null);
+        }
+    }
+
+    /**
+     * Cache shared by all the carriers, the carrier classes are never
+     * unloaded.
+     */
+    private static final CarrierCache GLOBAL_CACHE = new CarrierCache(true, SHAPE_POLICY, TYPED_CARRIERS);
+
+    /**
+     * Caches scoped to a lookup class, the carrier classes and the handles
+     * derived from them can be unloaded once the lookup class is unloaded.
+     */
+    private static final ClassValue<CarrierCache> SCOPED_CACHES = new ClassValue<>() {
+        @Override
+        protected CarrierCache computeValue(Class<?> type) {
+            return new CarrierCache(false, SHAPE_POLICY, TYPED_CARRIERS);
+        }
+    };
+
+    /**
+     * Constructor
+     */
+    private Carrier() {
+    }
+
+    /**
+     * Returns the number of carrier classes created by the cache shared by
+     * all the carriers.
+     *
+     * @return number of carrier classes
+     */
+    static int carrierClassCount() {
+        return GLOBAL_CACHE.carrierClassCount();
     }
 
     /**
@@ -557,6 +1484,102 @@ public final class Carrier {
         return carrierShape;
     }
 
+    /**
+     * Generate the class file of the carrier class that would be used for
+     * the given method type, used by {@link CarrierGenerator} to define the
+     * carrier classes at build time.
+     *
+     * @param methodType  {@link MethodType} whose parameter types supply the
+     *                    shape of the carrier's components
+     * @param mutable     true if the fields of the carrier are not final
+     *
+     * @return the binary name of the carrier class and the content of its
+     *         class file or null if the carrier is stored in arrays
+     *
+     * @throws IllegalArgumentException if number of component slots exceeds maximum
+     */
+    static Map.Entry<String, byte[]> carrierClassFile(MethodType methodType, boolean mutable) {
+        Objects.requireNonNull(methodType);
+        CarrierShape carrierShape = SHAPE_POLICY.classShape(
+                getCarrierShape(methodType.parameterArray()));
+        if (carrierShape.slotCount() > MAX_OBJECT_COMPONENTS) {
+            return null;
+        }
+        return Map.entry(
+                CarrierObjectFactory.carrierClassName(carrierShape, mutable),
+                CarrierObjectFactory.carrierClassBytes(carrierShape, mutable));
+    }
+
+    /**
+     * Insert the default values of the unused fields of a carrier class
+     * in its raw constructor.
+     *
+     * @param carrierShape  carrier object shape
+     * @param classShape    carrier class shape
+     * @param constructor   {@link MethodHandle} to raw carrier class constructor
+     *
+     * @return {@link MethodHandle} to raw constructor of the carrier shape
+     */
+    private static MethodHandle padConstructor(CarrierShape carrierShape,
+                                               CarrierShape classShape,
+                                               MethodHandle constructor) {
+        if (carrierShape.equals(classShape)) {
+            return constructor;
+        }
+        // from right to left so the positions of the classShape are still valid
+        constructor = MethodHandles.insertArguments(constructor,
+                classShape.longOffset() + carrierShape.longCount,
+                defaults(classShape.longCount - carrierShape.longCount, 0L));
+        constructor = MethodHandles.insertArguments(constructor,
+                classShape.intOffset() + carrierShape.intCount,
+                defaults(classShape.intCount - carrierShape.intCount, 0));
+        return MethodHandles.insertArguments(constructor,
+                classShape.objectOffset() + carrierShape.objectCount,
+                defaults(classShape.objectCount - carrierShape.objectCount, null));
+    }
+
+    /**
+     * Returns an array containing count times the same value.
+     *
+     * @param count  size of the array
+     * @param value  default value
+     *
+     * @return an array of default values
+     */
+    private static Object[] defaults(int count, Object value) {
+        Object[] values = new Object[count];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    /**
+     * Remove the raw getters or setters of the unused fields of a carrier
+     * class.
+     *
+     * @param carrierShape  carrier object shape
+     * @param classShape    carrier class shape
+     * @param handles       raw {@link MethodHandle MethodHandles} of the
+     *                      carrier class
+     *
+     * @return raw {@link MethodHandle MethodHandles} of the carrier shape
+     */
+    private static MethodHandle[] unusedRemoved(CarrierShape carrierShape,
+                                                CarrierShape classShape,
+                                                MethodHandle[] handles) {
+        if (carrierShape.equals(classShape)) {
+            return handles;
+        }
+        MethodHandle[] used = new MethodHandle[
+                carrierShape.objectCount + carrierShape.intCount + carrierShape.longCount];
+        System.arraycopy(handles, classShape.objectOffset(),
+                used, carrierShape.objectOffset(), carrierShape.objectCount);
+        System.arraycopy(handles, classShape.intOffset(),
+                used, carrierShape.intOffset(), carrierShape.intCount);
+        System.arraycopy(handles, classShape.longOffset(),
+                used, carrierShape.longOffset(), carrierShape.longCount);
+        return used;
+    }
+
     /**
      * Permute a raw constructor {@link MethodHandle} to match the order and
      * types of the parameter types.
@@ -676,53 +1699,57 @@ public final class Carrier {
     }
 
     /**
-     * Returns a carrier component getter {@link MethodHandle} for the
-     * component {@code i}.
+     * Permute raw component setters to match order and types of the parameter
+     * types.
      *
      * @param ptypes        given parameter types
-     * @param carrierShape  shape of the carrier object
-     * @param carrierClass  carrier object class
-     * @param i             index to the component
-     *
-     * @return carrier component getter {@link MethodHandle}
+     * @param carrierShape  carrier object shape
+     * @param setters       raw {@link MethodHandle MethodHandles} to raw
+     *                      carrier component setters
      *
-     * @throws IllegalArgumentException if number of component slots exceeds maximum
+     * @return array of setters matching parameter types
      */
-    private static MethodHandle component(Class<?>[] ptypes,
+    private static MethodHandle[] setters(Class<?>[] ptypes,
                                           CarrierShape carrierShape,
-                                          CarrierClass carrierClass,
-                                          int i) {
-        CarrierShape componentShape = getCarrierShape(Arrays.copyOf(ptypes, i));
-        Class<?> ptype = ptypes[i];
-        int index;
-        MethodHandle filter = null;
+                                          MethodHandle[] setters) {
+        MethodHandle[] reorder = new MethodHandle[ptypes.length];
+        int objectIndex = 0;
+        int intIndex = carrierShape.objectCount;
+        int longIndex = carrierShape.objectCount + carrierShape.intCount;
+        int index = 0;
 
-        if (!ptype.isPrimitive()) {
-            index = carrierShape.objectOffset() + componentShape.objectCount();
-        } else if (ptype == long.class || ptype == double.class) {
-            index = carrierShape.longOffset() + componentShape.longCount();
-            filter = ptype == double.class ? LONG_TO_DOUBLE : null;
-        } else {
-            index = carrierShape.intOffset() + componentShape.intCount();
+        for (Class<?> ptype : ptypes) {
+            MethodHandle setter;
+            MethodHandle filter = null;
+
+            if (!ptype.isPrimitive()) {
+                setter = setters[objectIndex++];
+            } else if (ptype == long.class || ptype == double.class) {
+                setter = setters[longIndex++];
+                filter = ptype == double.class ? DOUBLE_TO_LONG : null;
+            } else {
+                setter = setters[intIndex++];
 
-            if (ptype == float.class) {
-                filter = INT_TO_FLOAT;
-            } else if (ptype == boolean.class) {
-                filter = INT_TO_BOOLEAN;
-            } else if (ptype == byte.class) {
-                filter = INT_TO_BYTE;
-            } else if (ptype == short.class) {
-                filter = INT_TO_SHORT;
-            } else if (ptype == char.class) {
-                filter = INT_TO_CHAR;
+                if (ptype == float.class) {
+                    filter = FLOAT_TO_INT;
+                } else if (ptype == boolean.class) {
+                    filter = BOOLEAN_TO_INT;
+                } else if (ptype == byte.class) {
+                    filter = BYTE_TO_INT;
+                } else if (ptype == short.class) {
+                    filter = SHORT_TO_INT;
+                } else if (ptype == char.class) {
+                    filter = CHAR_TO_INT;
+                }
             }
-        }
 
-        MethodHandle component = carrierClass.component(index);
-        component = filter == null ? component :
-                MethodHandles.filterReturnValue(component, filter);
+            setter = filter == null ? setter :
+                    MethodHandles.filterArguments(setter, 1, filter);
+            MethodType methodType = MethodType.methodType(void.class, Object.class, ptype);
+            reorder[index++] = setter.asType(methodType);
+        }
 
-        return component.asType(MethodType.methodType(ptype, Object.class));
+        return reorder;
     }
 
     /**
@@ -740,17 +1767,8 @@ public final class Carrier {
      */
     public static MethodHandle constructor(MethodType methodType) {
         Objects.requireNonNull(methodType);
-
-        Class<?>[] ptypes = methodType.parameterArray();
-        CarrierShape carrierShape = getCarrierShape(ptypes);
-
-        if (carrierShape.slotCount() <= MAX_OBJECT_COMPONENTS) {
-            CarrierClass carrierClass = findCarrierClass(carrierShape);
-
-            return constructor(ptypes, carrierShape, carrierClass.constructor());
-        } else {
-            return CarrierArrayFactory.constructor(ptypes);
-        }
+        return adapt(GLOBAL_CACHE.findCarrierHandles(methodType, false).constructor(),
+                methodType.changeReturnType(Object.class));
     }
 
     /**
@@ -768,19 +1786,7 @@ public final class Carrier {
      */
     public static MethodHandle[] components(MethodType methodType) {
         Objects.requireNonNull(methodType);
-        Class<?>[] ptypes = methodType.parameterArray();
-        CarrierShape carrierShape = getCarrierShape(ptypes);
-        int slotCount = carrierShape.slotCount();
-        MethodHandle[] components;
-
-        if (slotCount <= MAX_OBJECT_COMPONENTS) {
-            Carrier.CarrierClass carrierClass = findCarrierClass(carrierShape);
-            components = components(ptypes, carrierShape, carrierClass.components());
-        } else {
-            components = Carrier.CarrierArrayFactory.components(ptypes);
-        }
-
-        return components;
+        return adapt(GLOBAL_CACHE.findCarrierHandles(methodType, false).components(), methodType, false);
     }
 
     /**
@@ -804,14 +1810,106 @@ public final class Carrier {
             throw new IllegalArgumentException("i is out of bounds for ptypes");
         }
 
-        CarrierShape carrierShape = getCarrierShape(ptypes);
+        return adapt(GLOBAL_CACHE.findCarrierHandles(methodType, false).components()[i],
+                MethodType.methodType(ptypes[i], Object.class));
+    }
 
-        if (carrierShape.slotCount() <= MAX_OBJECT_COMPONENTS) {
-            CarrierClass carrierClass = findCarrierClass(carrierShape);
+    /**
+     * Return a constructor {@link MethodHandle} for a mutable carrier with
+     * components aligning with the parameter types of the supplied
+     * {@link MethodType methodType}.
+     *
+     * A mutable carrier can be overwritten in place using the
+     * {@link #mutableSetters(MethodType) setters}, so a single instance can be
+     * reused, by example per thread, to avoid allocating a carrier per match.
+     *
+     * @param methodType {@link MethodType} providing types for the carrier's
+     *                   components.
+     *
+     * @return mutable carrier constructor {@link MethodHandle}
+     *
+     * @throws NullPointerException is methodType is null
+     * @throws IllegalArgumentException if number of component slots exceeds maximum
+     */
+    public static MethodHandle mutableConstructor(MethodType methodType) {
+        Objects.requireNonNull(methodType);
+        return adapt(GLOBAL_CACHE.findCarrierHandles(methodType, true).constructor(),
+                methodType.changeReturnType(Object.class));
+    }
 
-            return component(ptypes, carrierShape, carrierClass, i);
-        } else {
-            return CarrierArrayFactory.component(ptypes, i);
-        }
+    /**
+     * Return component getter {@link MethodHandle MethodHandles} for all the
+     * mutable carrier's components.
+     *
+     * @param methodType {@link MethodType} providing types for the carrier's
+     *                   components.
+     *
+     * @return  array of get component {@link MethodHandle MethodHandles}
+     *
+     * @throws NullPointerException is methodType is null
+     * @throws IllegalArgumentException if number of component slots exceeds maximum
+     */
+    public static MethodHandle[] mutableComponents(MethodType methodType) {
+        Objects.requireNonNull(methodType);
+        return adapt(GLOBAL_CACHE.findCarrierHandles(methodType, true).components(), methodType, false);
+    }
+
+    /**
+     * Return component setter {@link MethodHandle MethodHandles} for all the
+     * mutable carrier's components. Each setter takes the carrier and the
+     * new value of the component and returns void.
+     *
+     * @param methodType {@link MethodType} providing types for the carrier's
+     *                   components.
+     *
+     * @return  array of set component {@link MethodHandle MethodHandles}
+     *
+     * @throws NullPointerException is methodType is null
+     * @throws IllegalArgumentException if number of component slots exceeds maximum
+     */
+    public static MethodHandle[] mutableSetters(MethodType methodType) {
+        Objects.requireNonNull(methodType);
+        return adapt(GLOBAL_CACHE.findCarrierHandles(methodType, true).setters(), methodType, true);
+    }
+
+    /**
+     * Return a constructor {@link MethodHandle} for a carrier scoped to the
+     * lookup class of {@code lookup}. The carrier classes and the handles
+     * are cached with the lookup class and can be unloaded with it.
+     *
+     * @param lookup     the lookup whose lookup class is the scope
+     * @param methodType {@link MethodType} providing types for the carrier's
+     *                   components.
+     *
+     * @return carrier constructor {@link MethodHandle}
+     *
+     * @throws NullPointerException is lookup or methodType is null
+     * @throws IllegalArgumentException if number of component slots exceeds maximum
+     */
+    public static MethodHandle constructor(Lookup lookup, MethodType methodType) {
+        Objects.requireNonNull(lookup);
+        Objects.requireNonNull(methodType);
+        return SCOPED_CACHES.get(lookup.lookupClass())
+                .findCarrierHandles(methodType, false).constructor();
+    }
+
+    /**
+     * Return component getter {@link MethodHandle MethodHandles} for all the
+     * components of a carrier scoped to the lookup class of {@code lookup}.
+     *
+     * @param lookup     the lookup whose lookup class is the scope
+     * @param methodType {@link MethodType} providing types for the carrier's
+     *                   components.
+     *
+     * @return  array of get component {@link MethodHandle MethodHandles}
+     *
+     * @throws NullPointerException is lookup or methodType is null
+     * @throws IllegalArgumentException if number of component slots exceeds maximum
+     */
+    public static MethodHandle[] components(Lookup lookup, MethodType methodType) {
+        Objects.requireNonNull(lookup);
+        Objects.requireNonNull(methodType);
+        return SCOPED_CACHES.get(lookup.lookupClass())
+                .findCarrierHandles(methodType, false).components().clone();
     }
 }
@@ -0,0 +1,445 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Columnar storage of the results of a matcher, each component of the
+ * carriers is stored in its own column, an {@code int[]}, a {@code long[]}
+ * or an {@code Object[]} following the same erasure as {@link Carrier},
+ * so a result costs a few array slots instead of a carrier object.
+ *
+ * A batch also stores the case index of each result, -1 if the matcher
+ * did not match (the carrier is null), the value of the component 0 if it
+ * is an int (the index of the matching case by convention), 0 otherwise.
+ *
+ * The columns returned by the typed column accessors are the backing
+ * arrays, only their first {@link #size()} elements are valid.
+ */
+public final class CarrierBatch {
+    /**
+     * Initial capacity of the columns.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Method handle of {@link #append(Object)}.
+     */
+    private static final MethodHandle APPEND;
+
+    static {
+        try {
+            APPEND = MethodHandles.lookup().findVirtual(CarrierBatch.class, "append",
+                    MethodType.methodType(void.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Metadata of the carriers stored in this batch.
+     */
+    private final CarrierMetadata carrierMetadata;
+
+    /**
+     * Types of the components.
+     */
+    private final Class<?>[] componentTypes;
+
+    /**
+     * Per component, a method handle storing the component of a carrier
+     * in a column, of type (column, row, carrier) -> void with column
+     * being an {@code int[]}, a {@code long[]} or an {@code Object[]}.
+     */
+    private final MethodHandle[] stores;
+
+    /**
+     * Per component, the column, an {@code int[]}, a {@code long[]} or an
+     * {@code Object[]}.
+     */
+    private final Object[] columns;
+
+    /**
+     * True if the component 0 is an int storing the case index.
+     */
+    private final boolean caseIndexed;
+
+    /**
+     * Case index of each result.
+     */
+    private int[] caseIndexes;
+
+    /**
+     * Number of results.
+     */
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param carrierMetadata  metadata of the carriers stored in this batch
+     */
+    private CarrierBatch(CarrierMetadata carrierMetadata) {
+        this.carrierMetadata = carrierMetadata;
+        MethodType carrierType = carrierMetadata.constructor().type();
+        int count = carrierType.parameterCount();
+        componentTypes = carrierType.parameterArray();
+        stores = new MethodHandle[count];
+        columns = new Object[count];
+        for (int i = 0; i < count; i++) {
+            Class<?> componentType = componentTypes[i];
+            Class<?> columnType = columnType(componentType);
+            MethodHandle accessor = carrierMetadata.accessor(i)
+                    .asType(MethodType.methodType(componentType, Object.class));
+            MethodHandle store = MethodHandles.arrayElementSetter(columnType);
+            stores[i] = MethodHandles.filterArguments(store, 2, toColumnValue(accessor, componentType));
+            columns[i] = Array.newInstance(columnType.getComponentType(), INITIAL_CAPACITY);
+        }
+        caseIndexed = count != 0 && componentTypes[0] == int.class;
+        caseIndexes = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Creates an empty batch storing carriers described by a metadata.
+     *
+     * @param carrierMetadata  metadata of the carriers
+     *
+     * @return an empty batch
+     */
+    public static CarrierBatch of(CarrierMetadata carrierMetadata) {
+        Objects.requireNonNull(carrierMetadata, "carrierMetadata is null");
+        return new CarrierBatch(carrierMetadata);
+    }
+
+    /**
+     * Creates an empty batch storing the carriers of a carrier type created
+     * by {@link Carrier#constructor(MethodType)}.
+     *
+     * @param carrierType  type of the carriers
+     *
+     * @return an empty batch
+     *
+     * @see CarrierMetadata#fromCarrier(MethodType)
+     */
+    public static CarrierBatch of(MethodType carrierType) {
+        Objects.requireNonNull(carrierType, "carrierType is null");
+        return new CarrierBatch(CarrierMetadata.fromCarrier(carrierType));
+    }
+
+    /**
+     * Creates an empty batch storing the carriers of a carrier type scoped
+     * to the lookup class, like the carriers returned by a matcher created
+     * with the metadata {@link CarrierMetadata#fromCarrier(MethodHandles.Lookup, MethodType)}.
+     *
+     * @param lookup       the lookup whose lookup class is the scope
+     * @param carrierType  type of the carriers
+     *
+     * @return an empty batch
+     *
+     * @see CarrierMetadata#fromCarrier(MethodHandles.Lookup, MethodType)
+     */
+    public static CarrierBatch of(MethodHandles.Lookup lookup, MethodType carrierType) {
+        Objects.requireNonNull(lookup, "lookup is null");
+        Objects.requireNonNull(carrierType, "carrierType is null");
+        return new CarrierBatch(CarrierMetadata.fromCarrier(lookup, carrierType));
+    }
+
+    /**
+     * Returns the type of the column storing a component.
+     *
+     * @param componentType  type of the component
+     *
+     * @return {@code int[]}, {@code long[]} or {@code Object[]}
+     */
+    private static Class<?> columnType(Class<?> componentType) {
+        if (!componentType.isPrimitive()) {
+            return Object[].class;
+        }
+        return componentType == long.class || componentType == double.class ?
+                long[].class : int[].class;
+    }
+
+    /**
+     * Adapts an accessor to return the value stored in the column, the raw
+     * bits of a float or a double, a boolean as 0 or 1.
+     *
+     * @param accessor       accessor of a component
+     * @param componentType  type of the component
+     *
+     * @return the adapted accessor
+     */
+    private static MethodHandle toColumnValue(MethodHandle accessor, Class<?> componentType) {
+        if (!componentType.isPrimitive()) {
+            return accessor.asType(MethodType.methodType(Object.class, Object.class));
+        }
+        try {
+            if (componentType == float.class) {
+                return MethodHandles.filterReturnValue(accessor, MethodHandles.lookup()
+                        .findStatic(Float.class, "floatToRawIntBits", MethodType.methodType(int.class, float.class)));
+            }
+            if (componentType == double.class) {
+                return MethodHandles.filterReturnValue(accessor, MethodHandles.lookup()
+                        .findStatic(Double.class, "doubleToRawLongBits", MethodType.methodType(long.class, double.class)));
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+        Class<?> valueType = componentType == long.class ? long.class : int.class;
+        return MethodHandles.explicitCastArguments(accessor, MethodType.methodType(valueType, Object.class));
+    }
+
+    /**
+     * Returns the metadata of the carriers stored in this batch.
+     *
+     * @return the metadata of the carriers
+     */
+    public CarrierMetadata carrierMetadata() {
+        return carrierMetadata;
+    }
+
+    /**
+     * Returns the number of results.
+     *
+     * @return the number of results
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Grows the columns if there is no room for one more result.
+     */
+    private void ensureCapacity() {
+        if (size < caseIndexes.length) {
+            return;
+        }
+        int capacity = caseIndexes.length << 1;
+        caseIndexes = Arrays.copyOf(caseIndexes, capacity);
+        for (int i = 0; i < columns.length; i++) {
+            Object column = columns[i];
+            if (column instanceof int[] ints) {
+                columns[i] = Arrays.copyOf(ints, capacity);
+            } else if (column instanceof long[] longs) {
+                columns[i] = Arrays.copyOf(longs, capacity);
+            } else {
+                columns[i] = Arrays.copyOf((Object[]) column, capacity);
+            }
+        }
+    }
+
+    /**
+     * Appends a result, the components of the carrier are copied in the
+     * columns. If the matcher did not match, the object columns of the row
+     * are set to null so they do not retain any object.
+     *
+     * @param carrier  a carrier or null if the matcher did not match
+     */
+    public void append(Object carrier) {
+        ensureCapacity();
+        int row = size;
+        if (carrier == null) {
+            for (Object column : columns) {
+                if (column instanceof Object[] objects) {
+                    objects[row] = null;
+                }
+            }
+            caseIndexes[row] = -1;
+            size = row + 1;
+            return;
+        }
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                Object column = columns[i];
+                if (column instanceof int[] ints) {
+                    stores[i].invokeExact(ints, row, carrier);
+                } else if (column instanceof long[] longs) {
+                    stores[i].invokeExact(longs, row, carrier);
+                } else {
+                    stores[i].invokeExact((Object[]) column, row, carrier);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new AssertionError(e);
+        }
+        caseIndexes[row] = caseIndexed ? ((int[]) columns[0])[row] : 0;
+        size = row + 1;
+    }
+
+    /**
+     * Returns a method handle that calls an operation returning a carrier,
+     * like the one returned by {@link Matcher#of(Object, MethodHandle)},
+     * and appends the carrier to this batch.
+     *
+     * @param op  a method handle of type (o) -> carrier
+     *
+     * @return a method handle of type (o) -> void
+     */
+    public MethodHandle appender(MethodHandle op) {
+        Objects.requireNonNull(op, "op is null");
+        if (op.type().parameterCount() != 1 || op.type().returnType() != Object.class) {
+            throw new IllegalArgumentException("op should be of type (o) -> Object " + op.type());
+        }
+        return MethodHandles.filterReturnValue(op, APPEND.bindTo(this));
+    }
+
+    /**
+     * Returns the column of the case indexes.
+     *
+     * @return the backing array of the case indexes
+     */
+    public int[] caseIndexColumn() {
+        return caseIndexes;
+    }
+
+    /**
+     * Checks that a component is stored in a column of a type.
+     *
+     * @param component   index of the component
+     * @param columnType  type of the column
+     *
+     * @return the column
+     */
+    private Object column(int component, Class<?> columnType) {
+        Objects.checkIndex(component, columns.length);
+        Object column = columns[component];
+        if (column.getClass() != columnType) {
+            throw new IllegalArgumentException("component " + component + " of type " +
+                    componentTypes[component].getName() + " is not stored in a " + columnType.getSimpleName());
+        }
+        return column;
+    }
+
+    /**
+     * Returns the column of a component stored as int, a boolean, a byte,
+     * a short, a char, an int or the raw bits of a float.
+     *
+     * @param component  index of the component
+     *
+     * @return the backing array of the column
+     *
+     * @throws IllegalArgumentException if the component is not stored as int
+     */
+    public int[] intColumn(int component) {
+        return (int[]) column(component, int[].class);
+    }
+
+    /**
+     * Returns the column of a component stored as long, a long or the raw
+     * bits of a double.
+     *
+     * @param component  index of the component
+     *
+     * @return the backing array of the column
+     *
+     * @throws IllegalArgumentException if the component is not stored as long
+     */
+    public long[] longColumn(int component) {
+        return (long[]) column(component, long[].class);
+    }
+
+    /**
+     * Returns the column of a component stored as Object.
+     *
+     * @param component  index of the component
+     *
+     * @return the backing array of the column
+     *
+     * @throws IllegalArgumentException if the component is not stored as Object
+     */
+    public Object[] objectColumn(int component) {
+        return (Object[]) column(component, Object[].class);
+    }
+
+    /**
+     * Returns the case index of a result.
+     *
+     * @param row  index of the result
+     *
+     * @return the case index, -1 if the matcher did not match
+     */
+    public int caseIndex(int row) {
+        Objects.checkIndex(row, size);
+        return caseIndexes[row];
+    }
+
+    /**
+     * Returns an int component of a result.
+     *
+     * @param row        index of the result
+     * @param component  index of the component
+     *
+     * @return the value of the component
+     *
+     * @throws IllegalArgumentException if the component is not stored as int
+     */
+    public int getInt(int row, int component) {
+        Objects.checkIndex(row, size);
+        return intColumn(component)[row];
+    }
+
+    /**
+     * Returns a long component of a result.
+     *
+     * @param row        index of the result
+     * @param component  index of the component
+     *
+     * @return the value of the component
+     *
+     * @throws IllegalArgumentException if the component is not stored as long
+     */
+    public long getLong(int row, int component) {
+        Objects.checkIndex(row, size);
+        return longColumn(component)[row];
+    }
+
+    /**
+     * Returns a float component of a result.
+     *
+     * @param row        index of the result
+     * @param component  index of the component
+     *
+     * @return the value of the component
+     *
+     * @throws IllegalArgumentException if the component is not stored as int
+     */
+    public float getFloat(int row, int component) {
+        return Float.intBitsToFloat(getInt(row, component));
+    }
+
+    /**
+     * Returns a double component of a result.
+     *
+     * @param row        index of the result
+     * @param component  index of the component
+     *
+     * @return the value of the component
+     *
+     * @throws IllegalArgumentException if the component is not stored as long
+     */
+    public double getDouble(int row, int component) {
+        return Double.longBitsToDouble(getLong(row, component));
+    }
+
+    /**
+     * Returns an object component of a result.
+     *
+     * @param row        index of the result
+     * @param component  index of the component
+     *
+     * @return the value of the component
+     *
+     * @throws IllegalArgumentException if the component is not stored as Object
+     */
+    public Object getObject(int row, int component) {
+        Objects.checkIndex(row, size);
+        return objectColumn(component)[row];
+    }
+}
@@ -0,0 +1,356 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Binary codec of the carriers of a carrier {@link MethodType}.
+ *
+ * The components are written in the order of the parameter types, using
+ * the slots of the erased layout of {@link Carrier}: a boolean, a byte,
+ * a short, a char, an int or the raw bits of a float are written as an
+ * int, a long or the raw bits of a double are written as a long and the
+ * objects are delegated to an {@link ObjectCodec}.
+ *
+ * The writer and the reader are method handles composed once per codec,
+ * so encoding a carrier does not box the primitive components.
+ */
+public final class CarrierCodec {
+    /**
+     * Codec of the object components.
+     */
+    public interface ObjectCodec {
+        /**
+         * Writes an object component.
+         *
+         * @param buffer  the buffer
+         * @param value   the object component, may be null
+         */
+        void write(ByteBuffer buffer, Object value);
+
+        /**
+         * Reads an object component.
+         *
+         * @param buffer  the buffer
+         *
+         * @return the object component, may be null
+         */
+        Object read(ByteBuffer buffer);
+
+        /**
+         * Returns a codec of strings, a string is written as its length
+         * followed by its UTF-8 bytes, null is written as the length -1.
+         *
+         * @return a codec of strings
+         */
+        static ObjectCodec strings() {
+            return new ObjectCodec() {
+                @Override
+                public void write(ByteBuffer buffer, Object value) {
+                    if (value == null) {
+                        buffer.putInt(-1);
+                        return;
+                    }
+                    byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                    buffer.putInt(bytes.length);
+                    buffer.put(bytes);
+                }
+
+                @Override
+                public Object read(ByteBuffer buffer) {
+                    int length = buffer.getInt();
+                    if (length == -1) {
+                        return null;
+                    }
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    return new String(bytes, StandardCharsets.UTF_8);
+                }
+            };
+        }
+    }
+
+    private static final MethodHandle PUT_INT, PUT_LONG, GET_INT, GET_LONG,
+            OBJECT_CODEC_WRITE, OBJECT_CODEC_READ,
+            FLOAT_TO_INT, INT_TO_FLOAT, DOUBLE_TO_LONG, LONG_TO_DOUBLE;
+
+    static {
+        Lookup lookup = MethodHandles.lookup();
+        try {
+            PUT_INT = lookup.findVirtual(ByteBuffer.class, "putInt",
+                    MethodType.methodType(ByteBuffer.class, int.class));
+            PUT_LONG = lookup.findVirtual(ByteBuffer.class, "putLong",
+                    MethodType.methodType(ByteBuffer.class, long.class));
+            GET_INT = lookup.findVirtual(ByteBuffer.class, "getInt",
+                    MethodType.methodType(int.class));
+            GET_LONG = lookup.findVirtual(ByteBuffer.class, "getLong",
+                    MethodType.methodType(long.class));
+            OBJECT_CODEC_WRITE = lookup.findVirtual(ObjectCodec.class, "write",
+                    MethodType.methodType(void.class, ByteBuffer.class, Object.class));
+            OBJECT_CODEC_READ = lookup.findVirtual(ObjectCodec.class, "read",
+                    MethodType.methodType(Object.class, ByteBuffer.class));
+            FLOAT_TO_INT = lookup.findStatic(Float.class, "floatToRawIntBits",
+                    MethodType.methodType(int.class, float.class));
+            INT_TO_FLOAT = lookup.findStatic(Float.class, "intBitsToFloat",
+                    MethodType.methodType(float.class, int.class));
+            DOUBLE_TO_LONG = lookup.findStatic(Double.class, "doubleToRawLongBits",
+                    MethodType.methodType(long.class, double.class));
+            LONG_TO_DOUBLE = lookup.findStatic(Double.class, "longBitsToDouble",
+                    MethodType.methodType(double.class, long.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Writer of type (buffer, carrier) -> void.
+     */
+    private final MethodHandle writer;
+
+    /**
+     * Reader of type (buffer) -> carrier.
+     */
+    private final MethodHandle reader;
+
+    /**
+     * Constructor
+     *
+     * @param writer  writer of type (buffer, carrier) -> void
+     * @param reader  reader of type (buffer) -> carrier
+     */
+    private CarrierCodec(MethodHandle writer, MethodHandle reader) {
+        this.writer = writer;
+        this.reader = reader;
+    }
+
+    /**
+     * Creates a codec of the carriers of a carrier type.
+     *
+     * @param carrierType  type of the carriers
+     * @param objectCodec  codec of the object components
+     *
+     * @return a codec of the carriers
+     */
+    public static CarrierCodec of(MethodType carrierType, ObjectCodec objectCodec) {
+        Objects.requireNonNull(carrierType, "carrierType is null");
+        Objects.requireNonNull(objectCodec, "objectCodec is null");
+        MethodHandle[] components = Carrier.components(carrierType);
+        MethodHandle constructor = Carrier.constructor(carrierType)
+                .asType(carrierType.changeReturnType(Object.class));
+        return new CarrierCodec(
+                writer(carrierType, components, objectCodec),
+                reader(carrierType, constructor, objectCodec));
+    }
+
+    /**
+     * Creates a codec of the carriers of a carrier type scoped to the
+     * lookup class.
+     *
+     * @param lookup       the lookup whose lookup class is the scope
+     * @param carrierType  type of the carriers
+     * @param objectCodec  codec of the object components
+     *
+     * @return a codec of the carriers
+     *
+     * @see CarrierMetadata#fromCarrier(Lookup, MethodType)
+     */
+    public static CarrierCodec of(Lookup lookup, MethodType carrierType, ObjectCodec objectCodec) {
+        Objects.requireNonNull(lookup, "lookup is null");
+        Objects.requireNonNull(carrierType, "carrierType is null");
+        return of(CarrierMetadata.fromCarrier(lookup, carrierType), objectCodec);
+    }
+
+    /**
+     * Creates a codec of the carriers described by a metadata, by example
+     * the metadata used to create a matcher with
+     * {@link Pattern#toMatcher(Lookup, Class, CarrierMetadata, int, boolean, Pattern.Mode)}.
+     *
+     * @param carrierMetadata  metadata of the carriers
+     * @param objectCodec      codec of the object components
+     *
+     * @return a codec of the carriers
+     *
+     * @throws IllegalArgumentException if the metadata has lazy bindings
+     */
+    public static CarrierCodec of(CarrierMetadata carrierMetadata, ObjectCodec objectCodec) {
+        Objects.requireNonNull(carrierMetadata, "carrierMetadata is null");
+        Objects.requireNonNull(objectCodec, "objectCodec is null");
+        MethodType carrierType = carrierMetadata.constructor().type().changeReturnType(Object.class);
+        MethodHandle[] components = new MethodHandle[carrierType.parameterCount()];
+        for (int i = 0; i < components.length; i++) {
+            MethodHandle accessor = carrierMetadata.accessor(i);
+            if (accessor.type().returnType() != carrierType.parameterType(i)) {
+                throw new IllegalArgumentException("binding " + i + " is lazy");
+            }
+            components[i] = accessor.asType(MethodType.methodType(carrierType.parameterType(i), Object.class));
+        }
+        MethodHandle constructor = carrierMetadata.constructor().asType(carrierType);
+        return new CarrierCodec(
+                writer(carrierType, components, objectCodec),
+                reader(carrierType, constructor, objectCodec));
+    }
+
+    /**
+     * Creates a method handle writing a component.
+     *
+     * @param ptype        type of the component
+     * @param component    getter of the component
+     * @param objectCodec  codec of the object components
+     *
+     * @return a method handle of type (buffer, carrier) -> void
+     */
+    private static MethodHandle write(Class<?> ptype, MethodHandle component, ObjectCodec objectCodec) {
+        MethodHandle put;
+        MethodHandle value;
+        if (!ptype.isPrimitive()) {
+            put = OBJECT_CODEC_WRITE.bindTo(objectCodec);
+            value = component.asType(MethodType.methodType(Object.class, Object.class));
+        } else if (ptype == long.class || ptype == double.class) {
+            put = PUT_LONG.asType(MethodType.methodType(void.class, ByteBuffer.class, long.class));
+            value = ptype == double.class ?
+                    MethodHandles.filterReturnValue(component, DOUBLE_TO_LONG) : component;
+        } else {
+            put = PUT_INT.asType(MethodType.methodType(void.class, ByteBuffer.class, int.class));
+            value = ptype == float.class ?
+                    MethodHandles.filterReturnValue(component, FLOAT_TO_INT) :
+                    MethodHandles.explicitCastArguments(component, MethodType.methodType(int.class, Object.class));
+        }
+        return MethodHandles.filterArguments(put, 1, value);
+    }
+
+    /**
+     * Creates a method handle reading a component.
+     *
+     * @param ptype        type of the component
+     * @param objectCodec  codec of the object components
+     *
+     * @return a method handle of type (buffer) -> component
+     */
+    private static MethodHandle read(Class<?> ptype, ObjectCodec objectCodec) {
+        if (!ptype.isPrimitive()) {
+            return OBJECT_CODEC_READ.bindTo(objectCodec)
+                    .asType(MethodType.methodType(ptype, ByteBuffer.class));
+        }
+        if (ptype == long.class || ptype == double.class) {
+            return ptype == double.class ?
+                    MethodHandles.filterReturnValue(GET_LONG, LONG_TO_DOUBLE) : GET_LONG;
+        }
+        return ptype == float.class ?
+                MethodHandles.filterReturnValue(GET_INT, INT_TO_FLOAT) :
+                MethodHandles.explicitCastArguments(GET_INT, MethodType.methodType(ptype, ByteBuffer.class));
+    }
+
+    /**
+     * Creates the writer, each component is written in sequence.
+     *
+     * @param carrierType  type of the carriers
+     * @param components   getters of the components
+     * @param objectCodec  codec of the object components
+     *
+     * @return a method handle of type (buffer, carrier) -> void
+     */
+    private static MethodHandle writer(MethodType carrierType, MethodHandle[] components,
+                                       ObjectCodec objectCodec) {
+        // (buffer, carrier) -> write0(...); write1(...); ...
+        MethodHandle writer = MethodHandles.empty(
+                MethodType.methodType(void.class, ByteBuffer.class, Object.class));
+        for (int i = components.length; --i >= 0;) {
+            writer = MethodHandles.foldArguments(writer,
+                    write(carrierType.parameterType(i), components[i], objectCodec));
+        }
+        return writer;
+    }
+
+    /**
+     * Creates the reader, the arguments of the constructor are read in
+     * sequence.
+     *
+     * @param carrierType  type of the carriers
+     * @param constructor  constructor of the carriers
+     * @param objectCodec  codec of the object components
+     *
+     * @return a method handle of type (buffer) -> carrier
+     */
+    private static MethodHandle reader(MethodType carrierType, MethodHandle constructor,
+                                       ObjectCodec objectCodec) {
+        // (buffer, c0, ..., cN) -> constructor(c0, ..., cN)
+        MethodHandle reader = MethodHandles.dropArguments(constructor, 0, ByteBuffer.class);
+        // from the last component to the first so the outermost fold reads the component 0 first
+        for (int i = carrierType.parameterCount(); --i >= 0;) {
+            // (ci, buffer, c0, ..., ci-1) -> reader(buffer, c0, ..., ci-1, ci)
+            MethodType type = reader.type();
+            MethodType permutedType = type.dropParameterTypes(i + 1, i + 2)
+                    .insertParameterTypes(0, type.parameterType(i + 1));
+            int[] reorder = new int[type.parameterCount()];
+            reorder[0] = 1;
+            for (int j = 0; j < i; j++) {
+                reorder[1 + j] = 2 + j;
+            }
+            reorder[i + 1] = 0;
+            reader = MethodHandles.permuteArguments(reader, permutedType, reorder);
+            reader = MethodHandles.foldArguments(reader, read(carrierType.parameterType(i), objectCodec));
+        }
+        return reader;
+    }
+
+    /**
+     * Returns the writer.
+     *
+     * @return a method handle of type (buffer, carrier) -> void
+     */
+    public MethodHandle writer() {
+        return writer;
+    }
+
+    /**
+     * Returns the reader.
+     *
+     * @return a method handle of type (buffer) -> carrier
+     */
+    public MethodHandle reader() {
+        return reader;
+    }
+
+    /**
+     * Writes a carrier at the position of the buffer.
+     *
+     * @param buffer   the buffer
+     * @param carrier  the carrier
+     */
+    public void write(ByteBuffer buffer, Object carrier) {
+        Objects.requireNonNull(buffer, "buffer is null");
+        Objects.requireNonNull(carrier, "carrier is null");
+        try {
+            writer.invokeExact(buffer, carrier);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Reads a carrier at the position of the buffer.
+     *
+     * @param buffer  the buffer
+     *
+     * @return a new carrier
+     */
+    public Object read(ByteBuffer buffer) {
+        Objects.requireNonNull(buffer, "buffer is null");
+        try {
+            return (Object) reader.invokeExact(buffer);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new AssertionError(e);
+        }
+    }
+}
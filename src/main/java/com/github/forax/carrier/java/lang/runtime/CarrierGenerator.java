@@ -0,0 +1,114 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import java.io.IOException;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates carrier classes at build time.
+ *
+ * The classes are written in a class directory, typically the output
+ * directory of the build, so they are loaded by the class loader of
+ * {@link Carrier} instead of being defined as hidden classes at runtime,
+ * which also means they can be archived by AppCDS.
+ *
+ * Usage:
+ * <pre>
+ *   java CarrierGenerator outputDir spec...
+ * </pre>
+ * where a spec is either a method descriptor, e.g. {@code (ILjava/lang/String;J)V}
+ * optionally prefixed by {@code mutable } to generate the class used by
+ * {@link Carrier#mutableConstructor(MethodType)}, or {@code @file} to read
+ * one spec per line from a file, blank lines and lines starting with
+ * {@code #} being ignored.
+ */
+public final class CarrierGenerator {
+    /**
+     * Prefix of a spec generating a mutable carrier class.
+     */
+    private static final String MUTABLE_PREFIX = "mutable ";
+
+    private CarrierGenerator() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Generates the carrier classes of each spec in the output directory.
+     *
+     * @param outputDir  root directory of the class files
+     * @param specs      carrier specs
+     *
+     * @return the paths of the generated class files
+     *
+     * @throws IOException if a class file can not be written
+     * @throws IllegalArgumentException if a spec is not a valid method descriptor
+     */
+    public static List<Path> generate(Path outputDir, List<String> specs) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        for (String spec : specs) {
+            boolean mutable = spec.startsWith(MUTABLE_PREFIX);
+            String descriptor = mutable ? spec.substring(MUTABLE_PREFIX.length()).strip() : spec;
+            MethodType methodType = MethodType.fromMethodDescriptorString(descriptor,
+                    CarrierGenerator.class.getClassLoader());
+            Map.Entry<String, byte[]> classFile = Carrier.carrierClassFile(methodType, mutable);
+            if (classFile == null) {
+                // carriers stored in arrays do not need a class per shape
+                continue;
+            }
+            Path path = outputDir.resolve(classFile.getKey() + ".class");
+            Files.createDirectories(path.getParent());
+            Files.write(path, classFile.getValue());
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    /**
+     * Reads the specs of the command line, expanding {@code @file} arguments.
+     *
+     * @param args  command line arguments
+     *
+     * @return the list of specs
+     *
+     * @throws IOException if a file can not be read
+     */
+    private static List<String> specs(List<String> args) throws IOException {
+        List<String> specs = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("@")) {
+                specs.add(arg.strip());
+                continue;
+            }
+            for (String line : Files.readAllLines(Path.of(arg.substring(1)))) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                specs.add(line);
+            }
+        }
+        return specs;
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args  output directory followed by the carrier specs
+     *
+     * @throws IOException if a file can not be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: CarrierGenerator outputDir spec...");
+            System.exit(1);
+            return;
+        }
+        List<String> specs = specs(List.of(args).subList(1, args.length));
+        List<Path> paths = generate(Path.of(args[0]), specs);
+        System.out.println(paths.size() + " carrier class(es) generated in " + args[0]);
+    }
+}
@@ -0,0 +1,315 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.BindingAllocator;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ConstantPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RangePattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.github.forax.carrier.java.lang.runtime.Matcher.doMatch;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.doNotMatch;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.index;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.isIntegral;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.or;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodHandles.tableSwitch;
+import static java.lang.invoke.MethodType.methodType;
+
+// Combines the cases of an OrPattern chain, a run of consecutive constant cases is lowered to a lookup
+// returning the index of the case in the run followed by a tableSwitch, instead of one test per case.
+//
+// On an integral primitive receiver (byte, short, char, int or long), the constants and the ranges
+// are merged into disjoint intervals (the first case wins if they overlap), if the values are dense
+// the lookup is an array indexed by the value, otherwise a binary search in the sorted intervals.
+// On a reference receiver, the constants of the same enum are looked up by ordinal, and the constants
+// of a final class whose equals() is symmetric (String and the primitive wrappers) are looked up in a HashMap
+// (the hash codes of the constants are precomputed in the entries, the identity is tested first,
+// then equals() only if the hash codes are equal) after a check of the class of the receiver,
+// so the result is the same as calling constant.equals(o) on each case.
+final class ConstantDispatch {
+  private static final MethodHandle HASH_INDEX, ENUM_INDEX, DENSE_INDEX, SORTED_INDEX;
+  static {
+    var lookup = lookup();
+    try {
+      HASH_INDEX = lookup.findVirtual(HashTable.class, "index", methodType(int.class, Object.class));
+      ENUM_INDEX = lookup.findVirtual(EnumTable.class, "index", methodType(int.class, Object.class));
+      DENSE_INDEX = lookup.findVirtual(DenseTable.class, "index", methodType(int.class, long.class));
+      SORTED_INDEX = lookup.findVirtual(SortedTable.class, "index", methodType(int.class, long.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // under this number of consecutive constants, the tests are cheaper than a lookup
+  private static final int THRESHOLD = 4;
+
+  // an array indexed by the value is used if it has less than 2 empty slots per interval
+  private static final int DENSITY = 3;
+
+  private static final Set<Class<?>> HASHABLE_CLASSES = Set.of(
+      String.class, Boolean.class, Byte.class, Short.class, Character.class,
+      Integer.class, Long.class, Float.class, Double.class);
+
+  private ConstantDispatch() {
+    throw new AssertionError();
+  }
+
+  // return or(case0, or(..., caseN)) with the runs of constant cases lowered to a lookup
+  static MethodHandle toMatcher(OrPattern orPattern, Lookup lookup, Class<?> receiverType, BindingAllocator bindingAllocator, Pattern rootPattern) {
+    var cases = new ArrayList<Pattern>();
+    flatten(orPattern, cases);
+    var matchers = cases.stream()
+        .map(p -> p.toMatcher(lookup, receiverType, bindingAllocator, rootPattern))
+        .toArray(MethodHandle[]::new);
+    return combine(receiverType, bindingAllocator.carrierMetadata(), cases.toArray(Pattern[]::new), matchers);
+  }
+
+  static void flatten(Pattern pattern, List<Pattern> cases) {
+    if (pattern instanceof OrPattern orPattern) {
+      flatten(orPattern.pattern1(), cases);
+      flatten(orPattern.pattern2(), cases);
+      return;
+    }
+    cases.add(pattern);
+  }
+
+  // return or(matchers[0], or(..., matchers[n - 1])), the null cells are skipped
+  static MethodHandle combine(Class<?> receiverType, CarrierMetadata carrierMetadata, Pattern[] cases, MethodHandle[] matchers) {
+    var matcher = (MethodHandle) null;
+    for(var end = matchers.length; end > 0;) {
+      var i = end - 1;
+      if (matchers[i] == null) {
+        end = i;
+        continue;
+      }
+      var runClass = runClass(receiverType, cases[i]);
+      var start = end;
+      var count = 0;
+      if (runClass != null) {
+        // find the start of the run, skipping the cases not selected
+        for(var j = i; j >= 0; j--) {
+          if (matchers[j] == null) {
+            continue;
+          }
+          if (runClass(receiverType, cases[j]) != runClass) {
+            break;
+          }
+          start = j;
+          count++;
+        }
+      }
+      if (count >= THRESHOLD) {
+        var fallback = matcher == null? doNotMatch(receiverType): matcher;
+        matcher = dispatch(receiverType, carrierMetadata, runClass, cases, matchers, start, end, fallback);
+        end = start;
+        continue;
+      }
+      matcher = matcher == null? matchers[i]: or(matchers[i], matcher);
+      end = i;
+    }
+    return matcher == null? doNotMatch(receiverType): matcher;
+  }
+
+  private static Pattern unwrap(Pattern pattern) {
+    return pattern instanceof ResultPattern resultPattern? resultPattern.pattern(): pattern;
+  }
+
+  // the class that identifies a run of cases that can be looked up together, null if the case can not be looked up
+  static Class<?> runClass(Class<?> receiverType, Pattern pattern) {
+    pattern = unwrap(pattern);
+    if (isIntegral(receiverType)) {
+      return pattern instanceof ConstantPattern || pattern instanceof RangePattern? receiverType: null;
+    }
+    if (receiverType.isPrimitive() || !(pattern instanceof ConstantPattern constantPattern)) {
+      return null;
+    }
+    var constant = constantPattern.constant();
+    if (constant instanceof Enum<?> enumConstant) {
+      return enumConstant.getDeclaringClass();
+    }
+    var constantClass = constant.getClass();
+    return HASHABLE_CLASSES.contains(constantClass)? constantClass: null;
+  }
+
+  // return (o, carrier) -> switch(table.index(o)) {
+  //   case k -> k-th case of the run without its test
+  //   default -> fallback(o, carrier)
+  // }
+  private static MethodHandle dispatch(Class<?> receiverType, CarrierMetadata carrierMetadata, Class<?> runClass,
+                                       Pattern[] cases, MethodHandle[] matchers, int start, int end, MethodHandle fallback) {
+    var patterns = new ArrayList<Pattern>();
+    var targets = new ArrayList<MethodHandle>();
+    for(var i = start; i < end; i++) {
+      if (matchers[i] == null) {
+        continue;
+      }
+      var pattern = cases[i];
+      patterns.add(unwrap(pattern));
+      var target = pattern instanceof ResultPattern resultPattern?
+          index(receiverType, carrierMetadata, resultPattern.index()):
+          doMatch(receiverType);
+      targets.add(dropArguments(target, 0, int.class));
+    }
+    MethodHandle table;
+    if (receiverType.isPrimitive()) {
+      table = integralTable(patterns);
+    } else if (runClass.isEnum()) {
+      table = ENUM_INDEX.bindTo(new EnumTable(runClass, patterns));
+    } else {
+      table = HASH_INDEX.bindTo(new HashTable(runClass, patterns));
+    }
+    var tableSwitch = tableSwitch(dropArguments(fallback, 0, int.class), targets.toArray(MethodHandle[]::new));
+    return foldArguments(tableSwitch, table.asType(methodType(int.class, receiverType)));
+  }
+
+  private static long longValue(Object constant) {
+    return constant instanceof Character character? character: ((Number) constant).longValue();
+  }
+
+  // merges the constants and the ranges into disjoint intervals, the first pattern wins if they overlap
+  private static MethodHandle integralTable(List<Pattern> patterns) {
+    var intervals = new TreeMap<Long, long[]>();  // lo -> [hi, index]
+    for(var i = 0; i < patterns.size(); i++) {
+      long lo, hi;
+      if (patterns.get(i) instanceof RangePattern rangePattern) {
+        lo = rangePattern.lo();
+        hi = rangePattern.hi();
+      } else {
+        lo = hi = longValue(((ConstantPattern) patterns.get(i)).constant());
+      }
+      for(var value = lo;;) {
+        var previous = intervals.floorEntry(value);
+        if (previous != null && previous.getValue()[0] >= value) {  // already covered
+          value = previous.getValue()[0];
+        } else {
+          var next = intervals.higherKey(value);
+          var end = (next == null || next > hi)? hi: next - 1;
+          intervals.put(value, new long[] { end, i });
+          value = end;
+        }
+        if (value >= hi) {
+          break;
+        }
+        value++;
+      }
+    }
+    var size = intervals.size();
+    var los = new long[size];
+    var his = new long[size];
+    var indexes = new int[size];
+    var i = 0;
+    for(var entry: intervals.entrySet()) {
+      los[i] = entry.getKey();
+      his[i] = entry.getValue()[0];
+      indexes[i] = (int) entry.getValue()[1];
+      i++;
+    }
+    var min = los[0];
+    var span = his[size - 1] - min;  // may overflow
+    if (span >= 0 && span < (long) DENSITY * size) {
+      var table = new int[(int) span + 1];
+      Arrays.fill(table, -1);
+      for(var j = 0; j < size; j++) {
+        Arrays.fill(table, (int) (los[j] - min), (int) (his[j] - min) + 1, indexes[j]);
+      }
+      return DENSE_INDEX.bindTo(new DenseTable(min, table));
+    }
+    return SORTED_INDEX.bindTo(new SortedTable(los, his, indexes));
+  }
+
+  // maps a String or a boxed constant to the index of its case, -1 if there is no case
+  static final class HashTable {
+    private final Class<?> constantClass;
+    private final HashMap<Object, Integer> map = new HashMap<>();
+
+    HashTable(Class<?> constantClass, List<Pattern> patterns) {
+      this.constantClass = constantClass;
+      for(var i = 0; i < patterns.size(); i++) {
+        map.putIfAbsent(((ConstantPattern) patterns.get(i)).constant(), i);
+      }
+    }
+
+    int index(Object o) {
+      if (o == null || o.getClass() != constantClass) {
+        return -1;
+      }
+      var index = map.get(o);
+      return index == null? -1: index;
+    }
+  }
+
+  // maps an enum constant to the index of its case using its ordinal, -1 if there is no case
+  static final class EnumTable {
+    private final Class<?> enumClass;
+    private final int[] indexes;
+
+    EnumTable(Class<?> enumClass, List<Pattern> patterns) {
+      this.enumClass = enumClass;
+      var indexes = new int[enumClass.getEnumConstants().length];
+      Arrays.fill(indexes, -1);
+      for(var i = patterns.size(); --i >= 0;) {
+        indexes[((Enum<?>) ((ConstantPattern) patterns.get(i)).constant()).ordinal()] = i;
+      }
+      this.indexes = indexes;
+    }
+
+    int index(Object o) {
+      if (!(o instanceof Enum<?> enumConstant) || enumConstant.getDeclaringClass() != enumClass) {
+        return -1;
+      }
+      return indexes[enumConstant.ordinal()];
+    }
+  }
+
+  // maps an integral value to the index of its case with an array indexed by the value, -1 if there is no case
+  static final class DenseTable {
+    private final long min;
+    private final int[] indexes;
+
+    DenseTable(long min, int[] indexes) {
+      this.min = min;
+      this.indexes = indexes;
+    }
+
+    int index(long value) {
+      var offset = value - min;  // an overflow is out of bounds
+      return (offset >= 0 && offset < indexes.length)? indexes[(int) offset]: -1;
+    }
+  }
+
+  // maps an integral value to the index of its case by binary search in the sorted intervals, -1 if there is no case
+  static final class SortedTable {
+    private final long[] los;
+    private final long[] his;
+    private final int[] indexes;
+
+    SortedTable(long[] los, long[] his, int[] indexes) {
+      this.los = los;
+      this.his = his;
+      this.indexes = indexes;
+    }
+
+    int index(long value) {
+      var index = Arrays.binarySearch(los, value);
+      if (index < 0) {
+        index = -index - 2;  // the interval starting before value
+        if (index < 0 || value > his[index]) {
+          return -1;
+        }
+      }
+      return indexes[index];
+    }
+  }
+}
@@ -0,0 +1,370 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.BindingAllocator;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ConstantPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.NullPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RangePattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.forax.carrier.java.lang.runtime.Matcher.IS_NULL;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.index;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.isEquals;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.isInRange;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.isInstance;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.isNull;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.throwNPE;
+import static java.lang.invoke.MethodHandles.constant;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.identity;
+import static java.lang.invoke.MethodHandles.permuteArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+// Lowers a switch, a chain of OrPatterns, to a decision tree.
+// Each case is a row of sub-patterns (the cells), each cell tests a column, a value already computed
+// by the tree: the receiver or a component of a record pattern already deconstructed.
+// The matchers of the tree take all the columns, (columns..., carrier) -> carrier.
+//
+// When the first case starts with a record pattern, the null check, the instance test and the calls
+// to the accessors are done once, the components become new columns (method handle arguments)
+// that memoize the accessors for all the following cases: in the branch where the value is an instance
+// of the record, the record patterns of that class on that column are replaced by the cells of their components,
+// the cases that test another record class or an incompatible type on that column are pruned;
+// in the other branches, the cases that need an instance of the record are pruned.
+// Consecutive cases that start with the same test (null, a constant, a range or a type) share that test.
+// The cases are tried in order, so the first case that matches still wins.
+//
+// The bindings are the same as the COMBINATOR lowering, they are stored in the carrier
+// when all the cells of a case match. Unlike the COMBINATOR lowering, all the accessors of a record
+// pattern are called before the first component is tested.
+final class DecisionTree {
+  // a sub-pattern that tests the value of a column, binding is the first binding of the sub-pattern
+  private record Cell(Pattern pattern, int column, int binding) {}
+
+  // a case, the cells to test, the cells to bind if the case matches and the index of the case (-1 if none)
+  private record Row(List<Cell> cells, List<Cell> binds, int index) {}
+
+  private final Lookup lookup;
+  private final CarrierMetadata carrierMetadata;
+  private final Pattern rootPattern;
+
+  private DecisionTree(Lookup lookup, CarrierMetadata carrierMetadata, Pattern rootPattern) {
+    this.lookup = lookup;
+    this.carrierMetadata = carrierMetadata;
+    this.rootPattern = rootPattern;
+  }
+
+  static MethodHandle toMatcher(Pattern pattern, Lookup lookup, Class<?> receiverType, CarrierMetadata carrierMetadata, int firstBinding, Pattern rootPattern) {
+    var cases = new ArrayList<Pattern>();
+    ConstantDispatch.flatten(pattern, cases);
+    var firstBindings = TypeDispatch.firstBindings(cases, firstBinding);
+    var columnTypes = List.<Class<?>>of(receiverType);
+    var rows = new ArrayList<Row>();
+    for(var i = 0; i < firstBindings.length; i++) {
+      var casePattern = cases.get(i);
+      var index = -1;
+      if (casePattern instanceof ResultPattern resultPattern) {
+        index = resultPattern.index();
+        casePattern = resultPattern.pattern();
+      }
+      rows.add(row(List.of(new Cell(casePattern, 0, firstBindings[i])), List.of(), index, columnTypes));
+    }
+    return new DecisionTree(lookup, carrierMetadata, rootPattern).compile(rows, columnTypes);
+  }
+
+  // a type pattern on a column of the same type always matches, the cell is bound without a test
+  private static Row row(List<Cell> cells, List<Cell> binds, int index, List<Class<?>> columnTypes) {
+    var tests = new ArrayList<Cell>();
+    var allBinds = new ArrayList<>(binds);
+    for(var cell: cells) {
+      if (cell.pattern instanceof TypePattern typePattern && typePattern.type() == columnTypes.get(cell.column)) {
+        allBinds.add(cell);
+      } else {
+        tests.add(cell);
+      }
+    }
+    return new Row(tests, allBinds, index);
+  }
+
+  // return (columns..., carrier) -> the carrier of the first row that matches or null
+  private MethodHandle compile(List<Row> rows, List<Class<?>> columnTypes) {
+    if (rows.isEmpty()) {
+      return doNotMatch(columnTypes);
+    }
+    var row = rows.get(0);
+    if (row.cells.isEmpty()) {  // the next rows are unreachable
+      return success(row, columnTypes);
+    }
+    var cell = row.cells.get(0);
+    if (cell.pattern instanceof RecordPattern recordPattern) {
+      return deconstruct(recordPattern, cell.column, rows, columnTypes);
+    }
+    var end = 1;
+    while(end < rows.size() && shares(cell, rows.get(end))) {
+      end++;
+    }
+    var block = rows.subList(0, end);
+    var matcher = switch (cell.pattern) {
+      case NullPattern nullPattern -> test(cell, block, columnTypes);
+      case ConstantPattern constantPattern -> test(cell, block, columnTypes);
+      case RangePattern rangePattern -> test(cell, block, columnTypes);
+      case TypePattern typePattern -> test(cell, block, columnTypes);
+      default -> opaque(row, columnTypes);
+    };
+    if (end == rows.size()) {
+      return matcher;
+    }
+    return orElse(matcher, compile(rows.subList(end, rows.size()), columnTypes));
+  }
+
+  // true if the first cell of the row can share the test of the cell
+  private static boolean shares(Cell cell, Row row) {
+    if (row.cells.isEmpty()) {
+      return false;
+    }
+    var first = row.cells.get(0);
+    if (first.column != cell.column) {
+      return false;
+    }
+    return switch (cell.pattern) {
+      case NullPattern nullPattern -> first.pattern.equals(cell.pattern);
+      case ConstantPattern constantPattern -> first.pattern.equals(cell.pattern);
+      case RangePattern rangePattern -> first.pattern.equals(cell.pattern);
+      case TypePattern typePattern -> first.pattern.equals(cell.pattern);
+      default -> false;
+    };
+  }
+
+  // return (columns..., carrier) -> {
+  //   var o = columns[column];
+  //   if (o == null) { throw NPE or return nullMatcher(columns..., carrier); }
+  //   if (!(o instanceof RecordClass r)) { return notInstanceMatcher(columns..., carrier); }
+  //   return matcher(columns..., r.component1(), ..., r.componentN(), carrier);
+  // }
+  private MethodHandle deconstruct(RecordPattern recordPattern, int column, List<Row> rows, List<Class<?>> columnTypes) {
+    var recordClass = recordPattern.recordClass();
+    var recordMetadata = CarrierMetadata.fromRecord(lookup, recordClass);
+    var columnType = columnTypes.get(column);
+    var componentCount = recordPattern.patterns().length;
+    var columnCount = columnTypes.size();
+    var newColumnTypes = new ArrayList<>(columnTypes);
+    var accessors = new MethodHandle[componentCount];
+    for(var i = 0; i < componentCount; i++) {
+      var accessor = recordMetadata.accessor(i);
+      accessors[i] = accessor.asType(methodType(accessor.type().returnType(), columnType));
+      newColumnTypes.add(accessor.type().returnType());
+    }
+    var matcher = compile(refine(rows, column, recordClass, true, newColumnTypes), newColumnTypes);
+
+    // compute the components from the record, the first component first
+    if (componentCount != 0) {
+      // (componentN, ..., component1, columns..., carrier)
+      var parameterTypes = new ArrayList<Class<?>>();
+      var reorder = new int[columnCount + componentCount + 1];
+      for(var i = componentCount; --i >= 0;) {
+        parameterTypes.add(newColumnTypes.get(columnCount + i));
+        reorder[columnCount + i] = componentCount - 1 - i;
+      }
+      for(var i = 0; i < columnCount; i++) {
+        reorder[i] = componentCount + i;
+      }
+      parameterTypes.addAll(columnTypes);
+      parameterTypes.add(Object.class);
+      reorder[columnCount + componentCount] = columnCount + componentCount;
+      matcher = permuteArguments(matcher, methodType(Object.class, parameterTypes), reorder);
+      for(var i = componentCount; --i >= 0;) {
+        var projection = dropArguments(atColumn(accessors[i], column, columnTypes), 0, parameterTypes.subList(componentCount - i, componentCount));
+        matcher = foldArguments(matcher, projection);
+      }
+    }
+
+    if (columnType != recordClass) {
+      var notInstanceMatcher = compile(refine(rows, column, recordClass, false, columnTypes), columnTypes);
+      matcher = guardWithTest(atColumn(isInstance(columnType, recordClass), column, columnTypes), matcher, notInstanceMatcher);
+    }
+    var nullMatcher = rootPattern == null?
+        compile(refine(rows, column, null, false, columnTypes), columnTypes):
+        atColumn(throwNPE(columnType, rootPattern, recordPattern), column, columnTypes);
+    return guardWithTest(atColumn(isNull(columnType), column, columnTypes), nullMatcher, matcher);
+  }
+
+  // what a cell becomes when something is known about the value of its column
+  private enum Outcome { MATCH, FAIL, DECONSTRUCT, UNKNOWN }
+
+  // the outcome of a pattern if the value is null (type == null),
+  // an instance of the record class type or a non-null value that is not an instance of type
+  private static Outcome outcome(Pattern pattern, Class<?> type, boolean isInstance) {
+    if (type == null) {
+      return switch (pattern) {
+        case NullPattern nullPattern -> Outcome.MATCH;
+        case ConstantPattern constantPattern -> Outcome.FAIL;
+        case TypePattern typePattern -> Outcome.FAIL;  // the type patterns that always match are already bound
+        case RecordPattern recordPattern -> Outcome.FAIL;
+        default -> Outcome.UNKNOWN;
+      };
+    }
+    if (isInstance) {  // a record class is final
+      return switch (pattern) {
+        case NullPattern nullPattern -> Outcome.FAIL;
+        case TypePattern typePattern -> typePattern.type().isAssignableFrom(type)? Outcome.MATCH: Outcome.FAIL;
+        case RecordPattern recordPattern -> recordPattern.recordClass() == type? Outcome.DECONSTRUCT: Outcome.FAIL;
+        default -> Outcome.UNKNOWN;
+      };
+    }
+    return switch (pattern) {
+      case NullPattern nullPattern -> Outcome.FAIL;
+      case TypePattern typePattern -> typePattern.type() == type? Outcome.FAIL: Outcome.UNKNOWN;
+      case RecordPattern recordPattern -> recordPattern.recordClass() == type? Outcome.FAIL: Outcome.UNKNOWN;
+      default -> Outcome.UNKNOWN;
+    };
+  }
+
+  // the rows knowing something about the value of column (see outcome()),
+  // the record patterns deconstructed use the components already computed, the columns after columnTypes.size(),
+  // a row with a cell that fails is pruned unless a previous cell may throw a NPE
+  private List<Row> refine(List<Row> rows, int column, Class<?> type, boolean isInstance, List<Class<?>> newColumnTypes) {
+    var refinedRows = new ArrayList<Row>();
+    for(var row: rows) {
+      var cells = new ArrayList<Cell>();
+      var binds = new ArrayList<>(row.binds);
+      var mayThrow = false;
+      var pruned = false;
+      for(var cell: row.cells) {
+        var outcome = cell.column == column? outcome(cell.pattern, type, isInstance): Outcome.UNKNOWN;
+        switch (outcome) {
+          case MATCH -> {
+            if (cell.pattern instanceof TypePattern) {
+              binds.add(cell);
+            }
+          }
+          case FAIL -> {
+            pruned = !mayThrow;
+            cells.add(cell);
+          }
+          case DECONSTRUCT -> {
+            var patterns = ((RecordPattern) cell.pattern).patterns();
+            var componentColumn = newColumnTypes.size() - patterns.length;
+            for(int i = 0, binding = cell.binding; i < patterns.length; i++) {
+              cells.add(new Cell(patterns[i], componentColumn + i, binding));
+              binding += patterns[i].bindingCount();
+              mayThrow |= mayThrow(patterns[i]);
+            }
+          }
+          case UNKNOWN -> {
+            cells.add(cell);
+            mayThrow |= mayThrow(cell.pattern);
+          }
+        }
+        if (pruned) {
+          break;
+        }
+      }
+      if (!pruned) {
+        refinedRows.add(row(cells, binds, row.index, newColumnTypes));
+      }
+    }
+    return refinedRows;
+  }
+
+  // true if matching the pattern may throw a NPE
+  private boolean mayThrow(Pattern pattern) {
+    return rootPattern != null &&
+        !(pattern instanceof NullPattern || pattern instanceof ConstantPattern || pattern instanceof RangePattern || pattern instanceof TypePattern);
+  }
+
+  // return (columns..., carrier) -> test(columns[column])? matcher(columns..., carrier): null
+  private MethodHandle test(Cell cell, List<Row> block, List<Class<?>> columnTypes) {
+    var columnType = columnTypes.get(cell.column);
+    var test = switch (cell.pattern) {
+      case NullPattern nullPattern -> isNull(columnType);
+      case ConstantPattern constantPattern -> isEquals(columnType, constantPattern.constant());
+      case RangePattern rangePattern -> isInRange(columnType, rangePattern.lo(), rangePattern.hi());
+      case TypePattern typePattern -> isInstance(columnType, typePattern.type());
+      default -> throw new AssertionError("not a test " + cell.pattern);
+    };
+    var rows = new ArrayList<Row>();
+    for(var row: block) {
+      var first = row.cells.get(0);
+      var binds = row.binds;
+      if (first.pattern instanceof TypePattern) {
+        binds = new ArrayList<>(binds);
+        binds.add(first);
+      }
+      rows.add(new Row(row.cells.subList(1, row.cells.size()), binds, row.index));
+    }
+    return guardWithTest(atColumn(test, cell.column, columnTypes), compile(rows, columnTypes), doNotMatch(columnTypes));
+  }
+
+  // a cell that can not be shared (a nested OrPattern) is matched with the COMBINATOR lowering
+  // return (columns..., carrier) -> {
+  //   var carrier2 = cellMatcher(columns[column], carrier);
+  //   return carrier2 == null? null: matcher(columns..., carrier2);
+  // }
+  private MethodHandle opaque(Row row, List<Class<?>> columnTypes) {
+    var cell = row.cells.get(0);
+    var cellMatcher = cell.pattern.toMatcher(lookup, columnTypes.get(cell.column), new BindingAllocator(carrierMetadata, cell.binding), rootPattern);
+    var matcher = compile(List.of(new Row(row.cells.subList(1, row.cells.size()), row.binds, row.index)), columnTypes);
+    var guard = guardWithTest(dropArguments(IS_NULL, 0, columnTypes), doNotMatch(columnTypes), matcher);
+    return then(atColumn(cellMatcher, cell.column, columnTypes), guard, columnTypes);
+  }
+
+  // return (columns..., carrier) -> the carrier with the bindings and the index of the row
+  private MethodHandle success(Row row, List<Class<?>> columnTypes) {
+    var matcher = dropArguments(identity(Object.class), 0, columnTypes);
+    if (row.index != -1) {
+      matcher = then(atColumn(index(columnTypes.get(0), carrierMetadata, row.index), 0, columnTypes), matcher, columnTypes);
+    }
+    for(var bind: row.binds) {
+      var with = carrierMetadata.with(bind.binding).asType(methodType(Object.class, columnTypes.get(bind.column), Object.class));
+      matcher = then(atColumn(with, bind.column, columnTypes), matcher, columnTypes);
+    }
+    return matcher;
+  }
+
+  // return (columns..., carrier) -> matcher(columns..., step(columns..., carrier))
+  private static MethodHandle then(MethodHandle step, MethodHandle matcher, List<Class<?>> columnTypes) {
+    var columnCount = columnTypes.size();
+    var parameterTypes = new ArrayList<Class<?>>();
+    parameterTypes.add(Object.class);
+    parameterTypes.addAll(columnTypes);
+    parameterTypes.add(Object.class);
+    var reorder = new int[columnCount + 1];
+    for(var i = 0; i < columnCount; i++) {
+      reorder[i] = i + 1;
+    }
+    // (carrier2, columns..., carrier) -> matcher(columns..., carrier2)
+    var mh = permuteArguments(matcher, methodType(Object.class, parameterTypes), reorder);
+    return foldArguments(mh, step);
+  }
+
+  // return (columns..., carrier) -> {
+  //   var carrier2 = matcher1(columns..., carrier);
+  //   return carrier2 != null? carrier2: matcher2(columns..., carrier);
+  // }
+  private static MethodHandle orElse(MethodHandle matcher1, MethodHandle matcher2) {
+    var target = dropArguments(matcher2, 0, Object.class);
+    var fallback = dropArguments(identity(Object.class), 1, matcher1.type().parameterList());
+    return foldArguments(guardWithTest(IS_NULL, target, fallback), matcher1);
+  }
+
+  // return (columns..., carrier) -> null
+  private static MethodHandle doNotMatch(List<Class<?>> columnTypes) {
+    return dropArguments(dropArguments(constant(Object.class, null), 0, columnTypes), columnTypes.size(), Object.class);
+  }
+
+  // adapts a method handle taking the value of a column followed by other parameters
+  // to a method handle taking all the columns followed by the other parameters
+  private static MethodHandle atColumn(MethodHandle mh, int column, List<Class<?>> columnTypes) {
+    var mh2 = dropArguments(mh, 0, columnTypes.subList(0, column));
+    return dropArguments(mh2, column + 1, columnTypes.subList(column + 1, columnTypes.size()));
+  }
+}
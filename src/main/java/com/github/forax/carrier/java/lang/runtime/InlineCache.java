@@ -0,0 +1,117 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.forax.carrier.java.lang.runtime.Matcher.cast;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.isNull;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.test;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.exactInvoker;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+
+// A polymorphic inline cache, the matcher is a MutableCallSite first linked to a miss handler
+// that records the class of the receiver and relinks the call site to a chain of exact class checks
+// (o.getClass() == C), each one followed by the cases compiled for the class C (see TypeDispatch.exactMatcher()).
+// After MAX_CLASSES classes, the call site is relinked to the DISPATCH matcher (the megamorphic state),
+// null is matched by the DISPATCH matcher.
+//
+// Each call to toMatcher() creates a new call site, so a matcher should be created per use site.
+final class InlineCache {
+  private static final MethodHandle IS_CLASS, MISS;
+  static {
+    var lookup = lookup();
+    try {
+      IS_CLASS = lookup.findStatic(InlineCache.class, "isClass", methodType(boolean.class, Class.class, Object.class));
+      MISS = lookup.findVirtual(InlineCache.class, "miss", methodType(MethodHandle.class, Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // maximum number of classes before the call site becomes megamorphic
+  static final int MAX_CLASSES = 3;
+
+  private final Lookup lookup;
+  private final Class<?> receiverType;
+  private final CarrierMetadata carrierMetadata;
+  private final Pattern rootPattern;
+  private final List<Pattern> cases;
+  private final int[] firstBindings;
+  private final MethodHandle megamorphic;
+  private final MutableCallSite callSite;
+
+  // guarded by this
+  private final ArrayList<Class<?>> classes = new ArrayList<>();
+  private final ArrayList<MethodHandle> exactMatchers = new ArrayList<>();
+
+  private InlineCache(Lookup lookup, Class<?> receiverType, CarrierMetadata carrierMetadata, Pattern rootPattern,
+                      List<Pattern> cases, int[] firstBindings, MethodHandle megamorphic) {
+    this.lookup = lookup;
+    this.receiverType = receiverType;
+    this.carrierMetadata = carrierMetadata;
+    this.rootPattern = rootPattern;
+    this.cases = cases;
+    this.firstBindings = firstBindings;
+    this.megamorphic = megamorphic;
+    this.callSite = new MutableCallSite(megamorphic.type());
+    callSite.setTarget(missHandler());
+  }
+
+  // return (o, carrier) -> o == null? megamorphic(o, carrier): callSite.getTarget().invokeExact(o, carrier)
+  static MethodHandle toMatcher(Pattern pattern, Lookup lookup, Class<?> receiverType, CarrierMetadata carrierMetadata, int firstBinding, Pattern rootPattern) {
+    var megamorphic = TypeDispatch.toMatcher(pattern, lookup, receiverType, carrierMetadata, firstBinding, rootPattern);
+    if (receiverType.isPrimitive()) {
+      return megamorphic;
+    }
+    var cases = new ArrayList<Pattern>();
+    ConstantDispatch.flatten(pattern, cases);
+    var firstBindings = TypeDispatch.firstBindings(cases, firstBinding);
+    var inlineCache = new InlineCache(lookup, receiverType, carrierMetadata, rootPattern, cases, firstBindings, megamorphic);
+    return test(isNull(receiverType), megamorphic, inlineCache.callSite.dynamicInvoker());
+  }
+
+  private static boolean isClass(Class<?> type, Object o) {
+    return o.getClass() == type;
+  }
+
+  // return (o, carrier) -> miss(o).invokeExact(o, carrier)
+  private MethodHandle missHandler() {
+    MethodType type = megamorphic.type();
+    return foldArguments(exactInvoker(type), MISS.bindTo(this).asType(methodType(MethodHandle.class, receiverType)));
+  }
+
+  // records the class of o, relinks the call site and returns the matcher for o
+  private synchronized MethodHandle miss(Object o) {
+    var type = o.getClass();
+    var index = classes.indexOf(type);
+    if (index != -1) {  // already relinked by another thread
+      return exactMatchers.get(index);
+    }
+    if (classes.size() == MAX_CLASSES) {
+      callSite.setTarget(megamorphic);
+      return megamorphic;
+    }
+    var exactMatcher = cast(receiverType, TypeDispatch.exactMatcher(lookup, type, carrierMetadata, rootPattern, cases, firstBindings));
+    classes.add(type);
+    exactMatchers.add(exactMatcher);
+
+    // if (o.getClass() == classes[0]) { ... } else if (o.getClass() == classes[1]) { ... } else { miss }
+    var target = missHandler();
+    for(var i = classes.size(); --i >= 0;) {
+      var isClass = dropArguments(IS_CLASS.bindTo(classes.get(i)).asType(methodType(boolean.class, receiverType)), 1, Object.class);
+      target = guardWithTest(isClass, exactMatchers.get(i), target);
+    }
+    callSite.setTarget(target);
+    return exactMatcher;
+  }
+}
@@ -4,22 +4,26 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.lang.invoke.MethodHandles.constant;
 import static java.lang.invoke.MethodHandles.dropArguments;
 import static java.lang.invoke.MethodHandles.filterArguments;
+import static java.lang.invoke.MethodHandles.filterReturnValue;
 import static java.lang.invoke.MethodHandles.foldArguments;
 import static java.lang.invoke.MethodHandles.guardWithTest;
 import static java.lang.invoke.MethodHandles.identity;
 import static java.lang.invoke.MethodHandles.insertArguments;
 import static java.lang.invoke.MethodHandles.lookup;
 import static java.lang.invoke.MethodHandles.permuteArguments;
+import static java.lang.invoke.MethodHandles.zero;
 import static java.lang.invoke.MethodType.methodType;
 
 public class Matcher {
-  private static final MethodHandle THROW_NPE, IS_INSTANCE, EQUALS, IS_NULL, IS_NOT_NULL/*, TAP*/;
+  static final MethodHandle THROW_NPE, IS_INSTANCE, EQUALS, IS_NULL, IS_NOT_NULL, IN_RANGE, THREAD_LOCAL_GET/*, TAP*/;
   static {
     var lookup = lookup();
     try {
@@ -28,13 +32,15 @@ public class Matcher {
       EQUALS = lookup.findVirtual(Object.class, "equals", methodType(boolean.class, Object.class));
       IS_NULL = lookup.findStatic(Objects.class, "isNull", methodType(boolean.class, Object.class));
       IS_NOT_NULL = lookup.findStatic(Objects.class, "nonNull", methodType(boolean.class, Object.class));
+      IN_RANGE = lookup.findStatic(Matcher.class, "inRange", methodType(boolean.class, long.class, long.class, long.class));
+      THREAD_LOCAL_GET = lookup.findVirtual(ThreadLocal.class, "get", methodType(Object.class));
       //TAP = lookup.findStatic(Matcher.class, "_tap", methodType(void.class, Object[].class));
     } catch (NoSuchMethodException | IllegalAccessException e) {
       throw new AssertionError(e);
     }
   }
 
-  private static final class PrimitiveEquals {
+  static final class PrimitiveEquals {
     private static final MethodHandle Z, B, C, S, I, J, F, D;
     static {
       var lookup = MethodHandles.lookup();
@@ -96,6 +102,15 @@ public class Matcher {
     }
   }
 
+  private static boolean inRange(long lo, long hi, long value) {
+    return value >= lo && value <= hi;
+  }
+
+  // byte, short, char, int and long
+  static boolean isIntegral(Class<?> type) {
+    return type.isPrimitive() && type != boolean.class && type != float.class && type != double.class && type != void.class;
+  }
+
   private static void throw_npe(Pattern rootPattern, Pattern pattern) {
     var prefixErrorMessage = rootPattern.prefixErrorMessage(pattern);
     throw new NullPointerException("null while matching pattern " + prefixErrorMessage);
@@ -127,6 +142,15 @@ public class Matcher {
     return insertArguments(matcher, 1, carrier);
   }
 
+  // return o -> matcher.apply(o, scratch carrier of the current thread);
+  public static MethodHandle ofThreadLocal(CarrierMetadata carrierMetadata, MethodHandle matcher) {
+    Objects.requireNonNull(carrierMetadata, "carrierMetadata is null");
+    Objects.requireNonNull(matcher, "matcher is null");
+    checkMatcher(matcher);
+    var threadLocal = ThreadLocal.withInitial(carrierMetadata::newEmpty);
+    return foldArguments(matcher, 1, THREAD_LOCAL_GET.bindTo(threadLocal));
+  }
+
   // return (o, carrier) -> null;
   public static MethodHandle doNotMatch(Class<?> type) {
     return dropArguments(constant(Object.class, null), 0, type, Object.class);
@@ -158,6 +182,15 @@ public class Matcher {
     return dropArguments(insertArguments(equals, 0, constant).asType(methodType(boolean.class, type)), 1, Object.class);
   }
 
+  // return (o, carrier) -> o >= lo && o <= hi
+  public static MethodHandle isInRange(Class<?> type, long lo, long hi) {
+    Objects.requireNonNull(type, "type is null");
+    if (!isIntegral(type)) {
+      throw new IllegalArgumentException("a range is only defined on an integral primitive type " + type.getName());
+    }
+    return dropArguments(insertArguments(IN_RANGE, 0, lo, hi).asType(methodType(boolean.class, type)), 1, Object.class);
+  }
+
   // return (o, carrier) -> { throw new NullPointerException(rootPattern.prefixErrorMessage(pattern)); };
   public static MethodHandle throwNPE(Class<?> type, Pattern rootPattern, Pattern pattern) {
     Objects.requireNonNull(type, "type is null");
@@ -279,38 +312,130 @@ public class Matcher {
   }
 
   // Metadata associated with a Carrier
+  // The metadata of a carrier type are shared, empty and the withers are lazily initialized and safely published
+  // using a compare and exchange so racing threads end up with the same instances
   public static final class CarrierMetadata {
+    private static final VarHandle EMPTY, WITHERS;
+    static {
+      try {
+        EMPTY = MethodHandles.lookup().findVarHandle(CarrierMetadata.class, "empty", Object.class);
+      } catch (NoSuchFieldException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+      WITHERS = MethodHandles.arrayElementVarHandle(MethodHandle[].class);
+    }
+
+    private static final ConcurrentHashMap<MethodType, CarrierMetadata> CARRIER_CACHE = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<MethodType, CarrierMetadata> SCRATCH_CARRIER_CACHE = new ConcurrentHashMap<>();
+    private static final ClassValue<ConcurrentHashMap<MethodType, CarrierMetadata>> SCOPED_CARRIER_CACHES = new ClassValue<>() {
+      @Override
+      protected ConcurrentHashMap<MethodType, CarrierMetadata> computeValue(Class<?> type) {
+        return new ConcurrentHashMap<>();
+      }
+    };
+    // the metadata of a carrier type with a type which is not visible from the carrier class loader
+    // are stored in the class value of that type, so the global caches do not retain user classes
+    private static final ClassValue<ConcurrentHashMap<MethodType, CarrierMetadata>> USER_CARRIER_CACHES = new ClassValue<>() {
+      @Override
+      protected ConcurrentHashMap<MethodType, CarrierMetadata> computeValue(Class<?> type) {
+        return new ConcurrentHashMap<>();
+      }
+    };
+    private static final ClassValue<ConcurrentHashMap<MethodType, CarrierMetadata>> USER_SCRATCH_CARRIER_CACHES = new ClassValue<>() {
+      @Override
+      protected ConcurrentHashMap<MethodType, CarrierMetadata> computeValue(Class<?> type) {
+        return new ConcurrentHashMap<>();
+      }
+    };
+
     private final MethodHandle constructor;
     private final MethodHandle[] accessors;
+    private final MethodHandle[] setters;  // null if the carrier is immutable
+    private final CarrierMetadata storage;  // non null if some accessors are lazy, see lazy()
 
     private Object empty;  // lazily initialized
     private final MethodHandle[] withers;  // array cell lazily initialized
 
-    private CarrierMetadata(MethodHandle constructor, MethodHandle[] accessors) {
+    private CarrierMetadata(MethodHandle constructor, MethodHandle[] accessors, MethodHandle[] setters, CarrierMetadata storage) {
       this.constructor = constructor;
       this.accessors = accessors;
+      this.setters = setters;
+      this.storage = storage;
       this.withers = new MethodHandle[accessors.length];
     }
 
-    // returns an empty carrier
+    private CarrierMetadata(MethodHandle constructor, MethodHandle[] accessors, MethodHandle[] setters) {
+      this(constructor, accessors, setters, null);
+    }
+
+    // returns an empty carrier,
+    // for a scratch carrier, the instance is overwritten by each match so a new carrier is returned
     public Object empty() {
+      if (storage != null) {
+        return storage.empty();
+      }
+      if (setters != null) {
+        return newEmpty();
+      }
+      var empty = EMPTY.getAcquire(this);
       if (empty != null) {
         return empty;
       }
-      return empty = empty(constructor, accessors);
+      empty = empty(constructor, accessors);
+      var witness = EMPTY.compareAndExchangeRelease(this, (Object) null, empty);
+      return witness == null? empty: witness;
+    }
+
+    // returns a new empty carrier, by example to get one scratch carrier per caller
+    public Object newEmpty() {
+      if (storage != null) {
+        return storage.newEmpty();
+      }
+      return empty(constructor, accessors);
     }
 
     public MethodHandle accessor(int i) {
       return accessors[i];
     }
 
-    // returns a mh that creates a new carrier from a value and a previous value of a carrier
+    MethodHandle constructor() {
+      return constructor;
+    }
+
+    // returns the components of a carrier in order, decoded to the types of the carrier type: Carrier[a, 1.5, true],
+    // the class of a carrier can be shared by several carrier types so the carrier toString() may only print
+    // the values as stored
+    public String toString(Object carrier) {
+      var components = new Object[accessors.length];
+      try {
+        for (var i = 0; i < components.length; i++) {
+          components[i] = accessors[i].invoke(carrier);
+        }
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new AssertionError(e);
+      }
+      return Carrier.format(components);
+    }
+
+    // returns a mh that creates a new carrier from a value and a previous value of a carrier,
+    // for a scratch carrier, the previous carrier is updated in place and returned
+    // a lazy binding can not be set from its value, see lazy()
     public MethodHandle with(int i) {
-      var wither = withers[i];
+      if (storage != null) {
+        if (accessors[i] != storage.accessors[i]) {
+          throw new UnsupportedOperationException("binding " + i + " is lazy");
+        }
+        return storage.with(i);
+      }
+      var wither = (MethodHandle) WITHERS.getAcquire(withers, i);
       if (wither != null) {
         return wither;
       }
-      return withers[i] = wither(constructor, accessors, i);
+      wither = (setters == null)? wither(constructor, accessors, i): setter(setters[i]);
+      var witness = (MethodHandle) WITHERS.compareAndExchangeRelease(withers, i, (MethodHandle) null, wither);
+      return witness == null? wither: witness;
     }
 
     private static Object empty(MethodHandle constructor, MethodHandle[] accessors) {
@@ -357,12 +482,73 @@ public class Matcher {
       return permuteArguments(mh, methodType(carrierType, bindingType, carrierType), reorder);
     }
 
+    // return (value, carrier) -> { setter(carrier, value); return carrier; }
+    private static MethodHandle setter(MethodHandle setter) {
+      var setterType = setter.type();
+      var carrierType = setterType.parameterType(0);
+      var bindingType = setterType.parameterType(1);
+      var mh = permuteArguments(setter, methodType(void.class, bindingType, carrierType), 1, 0);
+      return foldArguments(dropArguments(identity(carrierType), 0, bindingType), mh);
+    }
+
     private static CarrierMetadata from(MethodHandle constructor, MethodHandle[] accessors) {
-      return new CarrierMetadata(constructor, accessors);
+      return new CarrierMetadata(constructor, accessors, null);
     }
 
+    // the accessor of a lazy binding reads the value stored in the carrier (by example the record matched
+    // by a record pattern) and applies the projection (by example the record accessor) each time it is called,
+    // projections[i] is null for a binding which is not lazy, otherwise a projection of type (Object) -> value,
+    // if the stored value is null (the case of the binding did not match), the accessor returns the default value
+    // of the binding type like an eager binding that was never set,
+    // empty() and with() of the non-lazy bindings are the ones of the carrierMetadata storing the values
+    static CarrierMetadata lazy(CarrierMetadata carrierMetadata, MethodHandle[] projections) {
+      var accessors = carrierMetadata.accessors.clone();
+      for (var i = 0; i < accessors.length; i++) {
+        var projection = projections[i];
+        if (projection != null) {
+          var valueType = projection.type().returnType();
+          var guarded = guardWithTest(IS_NULL, dropArguments(zero(valueType), 0, Object.class), projection);
+          accessors[i] = filterReturnValue(accessors[i], guarded);
+        }
+      }
+      return new CarrierMetadata(carrierMetadata.constructor, accessors, carrierMetadata.setters, carrierMetadata);
+    }
+
+    // returns the global cache if all the types of the carrier type are visible from the carrier class loader,
+    // otherwise the cache stored in the class value of the first type which is not
+    private static ConcurrentHashMap<MethodType, CarrierMetadata> cache(MethodType carrierType,
+                                                                       ConcurrentHashMap<MethodType, CarrierMetadata> globalCache,
+                                                                       ClassValue<ConcurrentHashMap<MethodType, CarrierMetadata>> userCaches) {
+      for (var parameterType : carrierType.parameterList()) {
+        if (!Carrier.isShareable(parameterType)) {
+          return userCaches.get(parameterType);
+        }
+      }
+      return globalCache;
+    }
+
+    // the metadata are shared by all the carriers with the same type
     public static CarrierMetadata fromCarrier(MethodType carrierType) {
-      return from(Carrier.constructor(carrierType), Carrier.components(carrierType));
+      Objects.requireNonNull(carrierType, "carrierType is null");
+      return cache(carrierType, CARRIER_CACHE, USER_CARRIER_CACHES).computeIfAbsent(carrierType.changeReturnType(Object.class),
+          type -> from(Carrier.constructor(type), Carrier.components(type)));
+    }
+
+    // the metadata and the carrier classes are scoped to the lookup class and can be unloaded with it
+    public static CarrierMetadata fromCarrier(Lookup lookup, MethodType carrierType) {
+      Objects.requireNonNull(lookup, "lookup is null");
+      Objects.requireNonNull(carrierType, "carrierType is null");
+      return SCOPED_CARRIER_CACHES.get(lookup.lookupClass()).computeIfAbsent(carrierType.changeReturnType(Object.class),
+          type -> from(Carrier.constructor(lookup, type), Carrier.components(lookup, type)));
+    }
+
+    // a scratch carrier is mutable, each binding overwrites the carrier in place instead of creating a new one
+    // the bindings of a failed alternative or of a previous match are not cleared,
+    // so only the bindings of the case that matched can be read
+    public static CarrierMetadata fromScratchCarrier(MethodType carrierType) {
+      Objects.requireNonNull(carrierType, "carrierType is null");
+      return cache(carrierType, SCRATCH_CARRIER_CACHE, USER_SCRATCH_CARRIER_CACHES).computeIfAbsent(carrierType.changeReturnType(Object.class),
+          type -> new CarrierMetadata(Carrier.mutableConstructor(type), Carrier.mutableComponents(type), Carrier.mutableSetters(type)));
     }
 
     public static CarrierMetadata fromRecord(Lookup lookup, Class<?> recordClass) {
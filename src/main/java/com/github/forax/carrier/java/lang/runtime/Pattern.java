@@ -3,6 +3,8 @@ package com.github.forax.carrier.java.lang.runtime;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.stream.IntStream;
 
 import static com.github.forax.carrier.java.lang.runtime.Matcher.*;
@@ -10,6 +12,14 @@ import static com.github.forax.carrier.java.lang.runtime.Matcher.*;
 public sealed interface Pattern {
   record NullPattern() implements Pattern {}
   record ConstantPattern(Object constant) implements Pattern {}
+  // matches an integral primitive value between lo and hi, both inclusive
+  record RangePattern(long lo, long hi) implements Pattern {
+    public RangePattern {
+      if (lo > hi) {
+        throw new IllegalArgumentException("empty range " + lo + ".." + hi);
+      }
+    }
+  }
   record TypePattern(Class<?> type) implements Pattern {}
   //record GuardPattern(Pattern pattern, MethodHandle guard) implements Pattern {}
   record RecordPattern(Class<?> recordClass, Pattern... patterns) implements Pattern {}
@@ -18,18 +28,144 @@ public sealed interface Pattern {
   record OrPattern(Pattern pattern1, Pattern pattern2) implements Pattern {}
   record ResultPattern(int index, Pattern pattern) implements Pattern {}
 
+  // how the pattern tree is lowered to a matcher
+  enum Mode {
+    // one combinator per pattern, each binding creates a new carrier
+    COMBINATOR,
+    // bindings are passed as method handle arguments, the carrier is created once on success
+    SINGLE_ALLOCATION,
+    // the cases of a switch are selected by the class of the receiver, the matcher of each class is cached,
+    // for a sealed receiver type, the matchers of the final subclasses are precompiled in a table
+    DISPATCH,
+    // a polymorphic inline cache, the matcher is relinked for the first classes of receiver seen
+    INLINE_CACHE,
+    // the cases of a switch are compiled to a decision tree, consecutive cases that start with the same
+    // record pattern or the same test share it, so the null check, the instance test and the accessors run once
+    DECISION_TREE,
+    // the pattern is compiled to the bytecode of a hidden class, bindings are local variables,
+    // falls back to COMBINATOR if the lookup can not define a hidden class or a class is not accessible
+    BYTECODE,
+    // the pattern tree is interpreted for the first calls, then the matcher is relinked to the COMBINATOR lowering
+    TIERED
+  }
+
   default MethodHandle toMatcher(Lookup lookup, Class<?> receiverType, MethodType carrierType, int firstBinding, boolean emitNPE) {
-    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
-    return toMatcher(lookup, receiverType, new BindingAllocator(carrierMetadata, firstBinding), emitNPE? this: null);
+    return toMatcher(lookup, receiverType, carrierType, firstBinding, emitNPE, Mode.COMBINATOR);
+  }
+
+  // the carriers are the global ones of CarrierMetadata.fromCarrier(carrierType)
+  default MethodHandle toMatcher(Lookup lookup, Class<?> receiverType, MethodType carrierType, int firstBinding, boolean emitNPE, Mode mode) {
+    Objects.requireNonNull(carrierType, "carrierType is null");
+    return toMatcher(lookup, receiverType, CarrierMetadata.fromCarrier(carrierType), firstBinding, emitNPE, mode);
+  }
+
+  // the carriers are the ones of carrierMetadata, by example CarrierMetadata.fromCarrier(lookup, carrierType)
+  // for carriers scoped to the lookup class that can be unloaded with it,
+  // or CarrierMetadata.fromScratchCarrier() to reuse
+  // the same carrier for all the matches (see Matcher.of() and Matcher.ofThreadLocal()).
+  // With a scratch carrier, a binding of an alternative that failed or of a previous match is not cleared,
+  // so only the index and the bindings of the case that matched can be read
+  default MethodHandle toMatcher(Lookup lookup, Class<?> receiverType, CarrierMetadata carrierMetadata, int firstBinding, boolean emitNPE, Mode mode) {
+    Objects.requireNonNull(carrierMetadata, "carrierMetadata is null");
+    Objects.requireNonNull(mode, "mode is null");
+    var rootPattern = emitNPE? this: null;
+    return switch (mode) {
+      case COMBINATOR -> toMatcher(lookup, receiverType, new BindingAllocator(carrierMetadata, firstBinding), rootPattern);
+      case SINGLE_ALLOCATION -> SingleAllocation.toMatcher(this, lookup, receiverType, carrierMetadata, firstBinding, rootPattern);
+      case DISPATCH -> TypeDispatch.toMatcher(this, lookup, receiverType, carrierMetadata, firstBinding, rootPattern);
+      case INLINE_CACHE -> InlineCache.toMatcher(this, lookup, receiverType, carrierMetadata, firstBinding, rootPattern);
+      case DECISION_TREE -> DecisionTree.toMatcher(this, lookup, receiverType, carrierMetadata, firstBinding, rootPattern);
+      case BYTECODE -> BytecodeMatcher.toMatcher(this, lookup, receiverType, carrierMetadata, firstBinding, rootPattern);
+      case TIERED -> PatternInterpreter.toMatcher(this, lookup, receiverType, carrierMetadata, firstBinding, rootPattern);
+    };
+  }
+
+  // a matcher and the metadata of the carriers it returns
+  record LazyMatcher(MethodHandle matcher, CarrierMetadata carrierMetadata) {}
+
+  // lazy bindings: a type pattern on a record component that needs no type test does not call the accessor,
+  // the carrier stores the record instead and the accessor of the binding in the returned metadata
+  // calls the record accessor each time the binding is read.
+  // The type tests and the null checks are still done eagerly so the same values match.
+  // Like the toMatcher() that takes a carrier type, the carriers are the global ones
+  // of CarrierMetadata.fromCarrier(storageType), storageType being carrierType with Object for the lazy bindings.
+  default LazyMatcher toLazyMatcher(Lookup lookup, Class<?> receiverType, MethodType carrierType, int firstBinding, boolean emitNPE) {
+    Objects.requireNonNull(lookup, "lookup is null");
+    Objects.requireNonNull(receiverType, "receiverType is null");
+    Objects.requireNonNull(carrierType, "carrierType is null");
+    var projections = new MethodHandle[carrierType.parameterCount()];
+    lazyProjections(lookup, new BindingAllocator(null, firstBinding), projections);
+    var storageType = carrierType.changeReturnType(Object.class);
+    for(var i = 0; i < projections.length; i++) {
+      if (projections[i] != null) {
+        storageType = storageType.changeParameterType(i, Object.class);
+        projections[i] = projections[i].asType(MethodType.methodType(carrierType.parameterType(i), Object.class));
+      }
+    }
+    var carrierMetadata = CarrierMetadata.fromCarrier(storageType);
+    var matcher = toMatcher(lookup, receiverType, new BindingAllocator(carrierMetadata, firstBinding, true), emitNPE? this: null);
+    return new LazyMatcher(matcher, CarrierMetadata.lazy(carrierMetadata, projections));
+  }
+
+  // a type pattern on a record component of the same type, the binding can be computed later from the record
+  private static boolean isLazy(Pattern pattern, Class<?> componentType) {
+    return pattern instanceof TypePattern typePattern && typePattern.type == componentType;
+  }
+
+  // records the record accessor of each lazy binding, the bindings are allocated in the same order as toMatcher()
+  private void lazyProjections(Lookup lookup, BindingAllocator bindingAllocator, MethodHandle[] projections) {
+    switch (this) {
+      case NullPattern nullPattern -> {}
+      case ConstantPattern constantPattern -> {}
+      case RangePattern rangePattern -> {}
+      case TypePattern typePattern -> bindingAllocator.nextBinding();
+      case RecordPattern recordPattern -> {
+        var carrierMetadata = CarrierMetadata.fromRecord(lookup, recordPattern.recordClass);
+        var patterns = recordPattern.patterns;
+        for(var i = 0; i < patterns.length; i++) {
+          var accessor = carrierMetadata.accessor(i);
+          if (isLazy(patterns[i], accessor.type().returnType())) {
+            projections[bindingAllocator.nextBinding()] = accessor;
+          } else {
+            patterns[i].lazyProjections(lookup, bindingAllocator, projections);
+          }
+        }
+      }
+      case OrPattern orPattern -> {
+        orPattern.pattern1.lazyProjections(lookup, bindingAllocator, projections);
+        orPattern.pattern2.lazyProjections(lookup, bindingAllocator, projections);
+      }
+      case ResultPattern resultPattern -> resultPattern.pattern.lazyProjections(lookup, bindingAllocator, projections);
+    }
+  }
+
+  // number of bindings allocated by this pattern
+  default int bindingCount() {
+    return switch (this) {
+      case NullPattern nullPattern -> 0;
+      case ConstantPattern constantPattern -> 0;
+      case RangePattern rangePattern -> 0;
+      case TypePattern typePattern -> 1;
+      case RecordPattern recordPattern -> Arrays.stream(recordPattern.patterns).mapToInt(Pattern::bindingCount).sum();
+      case OrPattern orPattern -> orPattern.pattern1.bindingCount() + orPattern.pattern2.bindingCount();
+      case ResultPattern resultPattern -> resultPattern.pattern.bindingCount();
+    };
   }
 
   class BindingAllocator {
     private final CarrierMetadata carrierMetadata;
+    private final boolean lazy;
     private int binding;
 
-    public BindingAllocator(CarrierMetadata carrierMetadata, int binding) {
+    // if lazy, the carrier stores the record instead of the value of a lazy binding, see toLazyMatcher()
+    public BindingAllocator(CarrierMetadata carrierMetadata, int binding, boolean lazy) {
       this.carrierMetadata = carrierMetadata;
       this.binding = binding;
+      this.lazy = lazy;
+    }
+
+    public BindingAllocator(CarrierMetadata carrierMetadata, int binding) {
+      this(carrierMetadata, binding, false);
     }
 
     public CarrierMetadata carrierMetadata() {
@@ -39,6 +175,13 @@ public sealed interface Pattern {
     public int nextBinding() {
       return binding++;
     }
+
+    // allocates count consecutive bindings and returns the first one
+    public int allocate(int count) {
+      var first = binding;
+      binding += count;
+      return first;
+    }
   }
 
   default MethodHandle toMatcher(Lookup lookup, Class<?> receiverType, BindingAllocator bindingAllocator, Pattern rootPattern) {
@@ -51,9 +194,13 @@ public sealed interface Pattern {
           test(isEquals(receiverType, constantPattern.constant),
               doMatch(receiverType),
               doNotMatch(receiverType));
+      case RangePattern rangePattern ->
+          test(isInRange(receiverType, rangePattern.lo, rangePattern.hi),
+              doMatch(receiverType),
+              doNotMatch(receiverType));
       case TypePattern typePattern -> {
         if (receiverType == typePattern.type) {
-          yield bind(bindingAllocator.nextBinding(), bindingAllocator.carrierMetadata);
+          yield cast(receiverType, bind(bindingAllocator.nextBinding(), bindingAllocator.carrierMetadata));
         }
         yield test(isInstance(receiverType, typePattern.type),
             cast(receiverType, bind(bindingAllocator.nextBinding(), bindingAllocator.carrierMetadata)),
@@ -72,6 +219,10 @@ public sealed interface Pattern {
               var pattern = patterns[i];
               var accessor = carrierMetadata.accessor(i);
               var returnType = accessor.type().returnType();
+              if (bindingAllocator.lazy && isLazy(pattern, returnType)) {
+                // the record is stored, the accessor is called when the binding is read
+                return cast(recordClass, bind(bindingAllocator.nextBinding(), bindingAllocator.carrierMetadata));
+              }
               return Matcher.project(accessor,
                   pattern.toMatcher(
                       lookup,
@@ -100,9 +251,7 @@ public sealed interface Pattern {
       }
       //case DeconstructorPattern deconstructorPattern -> {}
       case OrPattern orPattern ->
-          or(
-              orPattern.pattern1.toMatcher(lookup, receiverType, bindingAllocator, rootPattern),
-              orPattern.pattern2.toMatcher(lookup, receiverType, bindingAllocator, rootPattern));
+          ConstantDispatch.toMatcher(orPattern, lookup, receiverType, bindingAllocator, rootPattern);
       case ResultPattern resultPattern ->
           and(
               resultPattern.pattern.toMatcher(lookup, receiverType, bindingAllocator, rootPattern),
@@ -114,6 +263,7 @@ public sealed interface Pattern {
     return switch (this) {
       case NullPattern nullPattern -> "null";
       case ConstantPattern constantPattern -> "" + constantPattern.constant;
+      case RangePattern rangePattern -> rangePattern.lo + ".." + rangePattern.hi;
       case TypePattern typePattern -> {
         if (typePattern == pattern) {
           yield shortName(typePattern.type) + "^";
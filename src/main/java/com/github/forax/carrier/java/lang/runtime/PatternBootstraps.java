@@ -0,0 +1,268 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.Mode;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.invoke.MethodType.methodType;
+
+// Bootstrap methods of the translation of a switch described in the README
+//   Object carrier = invokedynamic match(value)Ljava/lang/Object; [descriptor, bindingTypes]
+//   int index = invokedynamic component(carrier)I [0, carrierType]
+//   T binding = invokedynamic component(carrier)T [i, carrierType]
+//
+// The descriptor is a list of cases separated by '|', a case is a pattern
+//   '?' is a binding, '_' is a hole, both are type patterns whose type is the next type of bindingTypes,
+//       a hole takes a slot in the carrier that is never read
+//   Name(patterns) is a record pattern, Name is a binary name (with '.' or '/') resolved from the lookup class,
+//       its enclosing classes then its package, the patterns of the record components are not separated,
+//       inside a record pattern, '|' is an or pattern between two components patterns, by example Box(?|?)
+// bindingTypes is the concatenation of the field descriptors of the bindings and holes, in order,
+// the class names use the same resolution as the descriptor.
+//
+// The carrier type is (int, bindingTypes...), the component 0 is the index of the matching case,
+// the component i is the binding or hole i - 1 of the descriptor, the carrier is null if no case match.
+//
+// The parsing and the carriers are cached per lookup class, so they can be unloaded with it,
+// the matcher uses the COMBINATOR mode and is the constant target of the call site so it can be fully inlined.
+public final class PatternBootstraps {
+  private PatternBootstraps() {
+    throw new AssertionError();
+  }
+
+  // the cases of a switch as a pattern and the type of its carrier
+  private record Switch(Pattern pattern, MethodType carrierType) {}
+
+  private record Key(String descriptor, String bindingTypes) {}
+
+  private static final ClassValue<ConcurrentHashMap<Key, Switch>> SWITCH_CACHES = new ClassValue<>() {
+    @Override
+    protected ConcurrentHashMap<Key, Switch> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  // return value -> carrier or null
+  public static CallSite match(Lookup lookup, String name, MethodType type, String descriptor, String bindingTypes) {
+    Objects.requireNonNull(lookup, "lookup is null");
+    Objects.requireNonNull(type, "type is null");
+    Objects.requireNonNull(descriptor, "descriptor is null");
+    Objects.requireNonNull(bindingTypes, "bindingTypes is null");
+    if (type.parameterCount() != 1 || type.returnType() != Object.class) {
+      throw new IllegalArgumentException("invalid match type " + type);
+    }
+    var aSwitch = SWITCH_CACHES.get(lookup.lookupClass())
+        .computeIfAbsent(new Key(descriptor, bindingTypes), key -> parse(lookup, key.descriptor, key.bindingTypes));
+    var carrierMetadata = CarrierMetadata.fromCarrier(lookup, aSwitch.carrierType);
+    var matcher = aSwitch.pattern.toMatcher(lookup, type.parameterType(0), carrierMetadata, 1, false, Mode.COMBINATOR);
+    return new ConstantCallSite(Matcher.of(carrierMetadata.empty(), matcher));
+  }
+
+  // return carrier -> carrier.component[index], for the index 0, return -1 if the carrier is null
+  public static CallSite component(Lookup lookup, String name, MethodType type, int index, MethodType carrierType) {
+    Objects.requireNonNull(lookup, "lookup is null");
+    Objects.requireNonNull(type, "type is null");
+    Objects.requireNonNull(carrierType, "carrierType is null");
+    if (type.parameterCount() != 1 || type.parameterType(0) != Object.class) {
+      throw new IllegalArgumentException("invalid component type " + type);
+    }
+    Objects.checkIndex(index, carrierType.parameterCount());
+    var carrierMetadata = CarrierMetadata.fromCarrier(lookup, carrierType);
+    var component = index == 0? Matcher.switchResult(carrierMetadata): carrierMetadata.accessor(index);
+    return new ConstantCallSite(component.asType(type));
+  }
+
+  private static Switch parse(Lookup lookup, String descriptor, String bindingTypes) {
+    var types = parseTypes(lookup, bindingTypes);
+    var parser = new Parser(lookup, descriptor, types);
+    var cases = new ArrayList<Pattern>();
+    cases.add(new ResultPattern(0, parser.pattern()));
+    while (parser.accept('|')) {
+      cases.add(new ResultPattern(cases.size(), parser.pattern()));
+    }
+    if (parser.index != descriptor.length()) {
+      throw parser.error("unexpected character");
+    }
+    if (parser.typeIndex != types.size()) {
+      throw new IllegalArgumentException("too many binding types " + bindingTypes + " for " + descriptor);
+    }
+    var pattern = cases.get(cases.size() - 1);
+    for(var i = cases.size() - 1; --i >= 0;) {
+      pattern = new OrPattern(cases.get(i), pattern);
+    }
+    var carrierTypes = new ArrayList<Class<?>>();
+    carrierTypes.add(int.class);
+    carrierTypes.addAll(types);
+    return new Switch(pattern, methodType(Object.class, carrierTypes));
+  }
+
+  private static final class Parser {
+    private final Lookup lookup;
+    private final String descriptor;
+    private final List<Class<?>> types;
+    private int index;
+    private int typeIndex;
+
+    private Parser(Lookup lookup, String descriptor, List<Class<?>> types) {
+      this.lookup = lookup;
+      this.descriptor = descriptor;
+      this.types = types;
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at " + index + " in " + descriptor);
+    }
+
+    private boolean accept(char c) {
+      if (index < descriptor.length() && descriptor.charAt(index) == c) {
+        index++;
+        return true;
+      }
+      return false;
+    }
+
+    // a pattern or an or pattern between the patterns of a record component
+    private Pattern alternatives() {
+      var pattern = pattern();
+      while (accept('|')) {
+        pattern = new OrPattern(pattern, pattern());
+      }
+      return pattern;
+    }
+
+    private Pattern pattern() {
+      if (index == descriptor.length()) {
+        throw error("missing pattern");
+      }
+      var c = descriptor.charAt(index);
+      if (c == '?' || c == '_') {
+        index++;
+        if (typeIndex == types.size()) {
+          throw error("missing binding type");
+        }
+        return new TypePattern(types.get(typeIndex++));
+      }
+      if (!Character.isLetter(c) && c != '$') {
+        throw error("invalid character " + c);
+      }
+      var start = index;
+      while (index < descriptor.length() && isNamePart(descriptor.charAt(index))) {
+        index++;
+      }
+      var name = descriptor.substring(start, index);
+      var recordClass = findClass(lookup, name);
+      if (!recordClass.isRecord()) {
+        throw error(name + " is not a record");
+      }
+      if (!accept('(')) {
+        throw error("missing '('");
+      }
+      var patterns = new ArrayList<Pattern>();
+      while (!accept(')')) {
+        patterns.add(alternatives());
+      }
+      var componentCount = recordClass.getRecordComponents().length;
+      if (patterns.size() != componentCount) {
+        throw error(name + " has " + componentCount + " components, not " + patterns.size());
+      }
+      return new RecordPattern(recordClass, patterns.toArray(Pattern[]::new));
+    }
+
+    private static boolean isNamePart(char c) {
+      return Character.isJavaIdentifierPart(c) || c == '.' || c == '/';
+    }
+  }
+
+  // parses a sequence of field descriptors
+  private static List<Class<?>> parseTypes(Lookup lookup, String bindingTypes) {
+    var types = new ArrayList<Class<?>>();
+    var index = 0;
+    while (index < bindingTypes.length()) {
+      var dimensions = 0;
+      while (index < bindingTypes.length() && bindingTypes.charAt(index) == '[') {
+        dimensions++;
+        index++;
+      }
+      if (index == bindingTypes.length()) {
+        throw new IllegalArgumentException("missing array component type in " + bindingTypes);
+      }
+      Class<?> type = switch (bindingTypes.charAt(index++)) {
+        case 'Z' -> boolean.class;
+        case 'B' -> byte.class;
+        case 'C' -> char.class;
+        case 'S' -> short.class;
+        case 'I' -> int.class;
+        case 'J' -> long.class;
+        case 'F' -> float.class;
+        case 'D' -> double.class;
+        case 'L' -> {
+          var end = bindingTypes.indexOf(';', index);
+          if (end == -1) {
+            throw new IllegalArgumentException("missing ';' in " + bindingTypes);
+          }
+          var name = bindingTypes.substring(index, end);
+          index = end + 1;
+          yield findClass(lookup, name);
+        }
+        default -> throw new IllegalArgumentException("invalid type " + bindingTypes.charAt(index - 1) + " in " + bindingTypes);
+      };
+      for(var i = 0; i < dimensions; i++) {
+        type = type.arrayType();
+      }
+      types.add(type);
+    }
+    return types;
+  }
+
+  // finds a class by its name as a member of the lookup class or one of its enclosing classes,
+  // then in the package of the lookup class, then as a fully qualified name
+  private static Class<?> findClass(Lookup lookup, String name) {
+    var binaryName = name.replace('/', '.');
+    var scope = lookup.lookupClass().getName();
+    for(;;) {
+      var type = findClassOrNull(lookup, scope + '$' + binaryName);
+      if (type != null) {
+        return type;
+      }
+      var dollar = scope.lastIndexOf('$');
+      if (dollar == -1) {
+        break;
+      }
+      scope = scope.substring(0, dollar);
+    }
+    var packageName = lookup.lookupClass().getPackageName();
+    if (!packageName.isEmpty()) {
+      var type = findClassOrNull(lookup, packageName + '.' + binaryName);
+      if (type != null) {
+        return type;
+      }
+    }
+    var type = findClassOrNull(lookup, binaryName);
+    if (type != null) {
+      return type;
+    }
+    throw new TypeNotPresentException(name, null);
+  }
+
+  private static Class<?> findClassOrNull(Lookup lookup, String binaryName) {
+    try {
+      return lookup.findClass(binaryName);
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (IllegalAccessException e) {
+      throw (IllegalAccessError) new IllegalAccessError().initCause(e);
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.BindingAllocator;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ConstantPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.NullPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RangePattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.RecordComponent;
+import java.util.HashMap;
+
+import static com.github.forax.carrier.java.lang.runtime.Matcher.THROW_NPE;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+
+// A tiered matcher, the matcher is a MutableCallSite first linked to an interpreter of the pattern tree,
+// after THRESHOLD calls, the pattern is lowered with the COMBINATOR mode and the call site is relinked
+// to the compiled matcher, so a switch that is only run a few times never builds its method handle tree.
+//
+// The interpreter walks a tree of nodes created from the pattern, it has the same semantics as the COMBINATOR
+// lowering, the record accessors are method handles found once, the bindings use the withers of the carrier.
+//
+// The threshold is configured by the system property com.github.forax.carrier.tieredThreshold.
+final class PatternInterpreter {
+  private static final MethodHandle INTERPRET;
+  static {
+    var lookup = lookup();
+    try {
+      INTERPRET = lookup.findVirtual(PatternInterpreter.class, "interpret", methodType(Object.class, Object.class, Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // number of calls before the pattern is compiled
+  static final int THRESHOLD = Integer.getInteger("com.github.forax.carrier.tieredThreshold", 1_000);
+
+  private final Pattern pattern;
+  private final Lookup lookup;
+  private final Class<?> receiverType;
+  private final CarrierMetadata carrierMetadata;
+  private final int firstBinding;
+  private final Pattern rootPattern;
+  private final int threshold;
+  private final Node node;
+  private final MutableCallSite callSite;
+  private final HashMap<Class<?>, MethodHandle[]> accessorMap = new HashMap<>();  // only used at link time
+
+  private int counter;  // racy, the pattern may be compiled a little later
+  private boolean compiled;  // guarded by this
+
+  private PatternInterpreter(Pattern pattern, Lookup lookup, Class<?> receiverType, CarrierMetadata carrierMetadata, int firstBinding,
+                             Pattern rootPattern, int threshold) {
+    this.pattern = pattern;
+    this.lookup = lookup;
+    this.receiverType = receiverType;
+    this.carrierMetadata = carrierMetadata;
+    this.firstBinding = firstBinding;
+    this.rootPattern = rootPattern;
+    this.threshold = threshold;
+    this.node = node(pattern, receiverType, new BindingAllocator(carrierMetadata, firstBinding));
+    var type = methodType(Object.class, receiverType, Object.class);
+    this.callSite = new MutableCallSite(type);
+    callSite.setTarget(INTERPRET.bindTo(this).asType(type));
+  }
+
+  static MethodHandle toMatcher(Pattern pattern, Lookup lookup, Class<?> receiverType, CarrierMetadata carrierMetadata, int firstBinding, Pattern rootPattern) {
+    return toMatcher(pattern, lookup, receiverType, carrierMetadata, firstBinding, rootPattern, THRESHOLD);
+  }
+
+  // return (o, carrier) -> callSite.getTarget().invokeExact(o, carrier)
+  static MethodHandle toMatcher(Pattern pattern, Lookup lookup, Class<?> receiverType, CarrierMetadata carrierMetadata, int firstBinding, Pattern rootPattern,
+                                int threshold) {
+    if (threshold <= 0) {
+      return pattern.toMatcher(lookup, receiverType, new BindingAllocator(carrierMetadata, firstBinding), rootPattern);
+    }
+    return new PatternInterpreter(pattern, lookup, receiverType, carrierMetadata, firstBinding, rootPattern, threshold).callSite.dynamicInvoker();
+  }
+
+  private Object interpret(Object o, Object carrier) throws Throwable {
+    if (++counter == threshold) {
+      compile();
+    }
+    return node.match(o, carrier);
+  }
+
+  // relinks the call site to the compiled matcher
+  private synchronized void compile() {
+    if (compiled) {
+      return;
+    }
+    compiled = true;
+    callSite.setTarget(pattern.toMatcher(lookup, receiverType, new BindingAllocator(carrierMetadata, firstBinding), rootPattern));
+  }
+
+  // a node of the interpreter, return the carrier with the bindings or null if the value does not match
+  private interface Node {
+    Object match(Object value, Object carrier) throws Throwable;
+  }
+
+  // creates the nodes of a pattern for a value of type, the bindings are allocated like the COMBINATOR lowering
+  private Node node(Pattern pattern, Class<?> type, BindingAllocator bindingAllocator) {
+    return switch (pattern) {
+      case NullPattern nullPattern -> (value, carrier) -> value == null? carrier: null;
+      case ConstantPattern constantPattern -> {
+        var constant = constantPattern.constant();
+        if (!type.isPrimitive() || type == boolean.class) {
+          yield (value, carrier) -> constant.equals(value)? carrier: null;
+        }
+        if (type == float.class || type == double.class) {
+          var doubleConstant = ((Number) constant).doubleValue();
+          yield (value, carrier) -> doubleConstant == ((Number) value).doubleValue()? carrier: null;
+        }
+        var longConstant = toLong(constant);
+        yield (value, carrier) -> longConstant == toLong(value)? carrier: null;
+      }
+      case RangePattern rangePattern -> {
+        if (!Matcher.isIntegral(type)) {
+          throw new IllegalArgumentException("a range is only defined on an integral primitive type " + type.getName());
+        }
+        var lo = rangePattern.lo();
+        var hi = rangePattern.hi();
+        yield (value, carrier) -> {
+          var longValue = toLong(value);
+          return longValue >= lo && longValue <= hi? carrier: null;
+        };
+      }
+      case TypePattern typePattern -> {
+        var binding = bindingAllocator.nextBinding();
+        var patternType = typePattern.type();
+        if (patternType == type) {
+          yield (value, carrier) -> carrierMetadata.with(binding).invoke(value, carrier);
+        }
+        yield (value, carrier) -> patternType.isInstance(value)? carrierMetadata.with(binding).invoke(value, carrier): null;
+      }
+      case RecordPattern recordPattern -> {
+        var recordClass = recordPattern.recordClass();
+        var recordComponents = recordClass.getRecordComponents();
+        var patterns = recordPattern.patterns();
+        var accessors = accessors(recordClass, recordComponents);
+        var nodes = new Node[patterns.length];
+        for(var i = 0; i < patterns.length; i++) {
+          nodes[i] = node(patterns[i], recordComponents[i].getType(), bindingAllocator);
+        }
+        yield (value, carrier) -> {
+          if (value == null) {
+            if (rootPattern != null) {
+              THROW_NPE.invokeExact(rootPattern, (Pattern) recordPattern);
+            }
+            return null;
+          }
+          if (!recordClass.isInstance(value)) {
+            return null;
+          }
+          for(var i = 0; i < nodes.length; i++) {
+            carrier = nodes[i].match(accessors[i].invoke(value), carrier);
+            if (carrier == null) {
+              return null;
+            }
+          }
+          return carrier;
+        };
+      }
+      case OrPattern orPattern -> {
+        var node1 = node(orPattern.pattern1(), type, bindingAllocator);
+        var node2 = node(orPattern.pattern2(), type, bindingAllocator);
+        yield (value, carrier) -> {
+          var carrier2 = node1.match(value, carrier);
+          return carrier2 != null? carrier2: node2.match(value, carrier);
+        };
+      }
+      case ResultPattern resultPattern -> {
+        var node = node(resultPattern.pattern(), type, bindingAllocator);
+        var index = resultPattern.index();
+        yield (value, carrier) -> {
+          var carrier2 = node.match(value, carrier);
+          return carrier2 == null? null: carrierMetadata.with(0).invoke(index, carrier2);
+        };
+      }
+    };
+  }
+
+  // the accessors of a record class, shared by all the record patterns of the same class
+  private MethodHandle[] accessors(Class<?> recordClass, RecordComponent[] recordComponents) {
+    var accessors = accessorMap.get(recordClass);
+    if (accessors != null) {
+      return accessors;
+    }
+    accessors = new MethodHandle[recordComponents.length];
+    for(var i = 0; i < recordComponents.length; i++) {
+      try {
+        accessors[i] = lookup.unreflect(recordComponents[i].getAccessor());
+      } catch (IllegalAccessException e) {
+        throw (IllegalAccessError) new IllegalAccessError().initCause(e);
+      }
+    }
+    accessorMap.put(recordClass, accessors);
+    return accessors;
+  }
+
+  // the value of a boxed integral primitive
+  private static long toLong(Object value) {
+    return value instanceof Character c? c: ((Number) value).longValue();
+  }
+}
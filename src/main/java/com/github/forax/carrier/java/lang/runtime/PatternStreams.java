@@ -0,0 +1,202 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.Mode;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
+import java.util.stream.Collector;
+
+import static java.lang.invoke.MethodType.methodType;
+
+// Stream operations built from a pattern and a carrier type,
+// the mapMulti operations emit the carrier or a binding of the elements that match the pattern
+// and groupingByCase() routes the carriers to a downstream collector per case index (see Matcher.switchResult()).
+//
+// All the operations are stateless so they can be used with parallel streams,
+// the primitive operations read the bindings with an accessor typed as int, long or double so nothing is boxed.
+public final class PatternStreams {
+  private final CarrierMetadata carrierMetadata;
+  private final MethodHandle op;
+
+  private PatternStreams(CarrierMetadata carrierMetadata, MethodHandle op) {
+    this.carrierMetadata = carrierMetadata;
+    this.op = op;
+  }
+
+  public static PatternStreams of(Lookup lookup, Pattern pattern, Class<?> receiverType, MethodType carrierType, int firstBinding) {
+    Objects.requireNonNull(lookup, "lookup is null");
+    Objects.requireNonNull(pattern, "pattern is null");
+    Objects.requireNonNull(receiverType, "receiverType is null");
+    Objects.requireNonNull(carrierType, "carrierType is null");
+    var carrierMetadata = CarrierMetadata.fromCarrier(lookup, carrierType);
+    var matcher = pattern.toMatcher(lookup, receiverType, carrierMetadata, firstBinding, false, Mode.COMBINATOR);
+    var op = Matcher.of(carrierMetadata.empty(), matcher).asType(methodType(Object.class, Object.class));
+    return new PatternStreams(carrierMetadata, op);
+  }
+
+  public CarrierMetadata carrierMetadata() {
+    return carrierMetadata;
+  }
+
+  private Object match(Object value) {
+    try {
+      return (Object) op.invokeExact(value);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private MethodHandle accessor(int binding, Class<?> type) {
+    var accessor = carrierMetadata.accessor(binding);
+    var bindingType = accessor.type().returnType();
+    try {
+      return accessor.asType(methodType(type, Object.class));
+    } catch (WrongMethodTypeException e) {
+      throw new IllegalArgumentException("binding " + binding + " of type " + bindingType.getName() + " is not convertible to " + type, e);
+    }
+  }
+
+  // return (element, sink) -> { if (match(element)) sink.accept(carrier); }
+  public <T> BiConsumer<T, Consumer<Object>> mapMulti() {
+    return (element, sink) -> {
+      var carrier = match(element);
+      if (carrier != null) {
+        sink.accept(carrier);
+      }
+    };
+  }
+
+  // return (element, sink) -> { if (match(element)) sink.accept(binding); }
+  public <T> BiConsumer<T, Consumer<Object>> mapMulti(int binding) {
+    var accessor = accessor(binding, Object.class);
+    return (element, sink) -> {
+      var carrier = match(element);
+      if (carrier != null) {
+        Object value;
+        try {
+          value = (Object) accessor.invokeExact(carrier);
+        } catch (RuntimeException | Error e) {
+          throw e;
+        } catch (Throwable e) {
+          throw new AssertionError(e);
+        }
+        sink.accept(value);
+      }
+    };
+  }
+
+  // return (element, sink) -> { if (match(element)) sink.accept(int binding); }
+  public <T> BiConsumer<T, IntConsumer> mapMultiToInt(int binding) {
+    var accessor = accessor(binding, int.class);
+    return (element, sink) -> {
+      var carrier = match(element);
+      if (carrier != null) {
+        int value;
+        try {
+          value = (int) accessor.invokeExact(carrier);
+        } catch (RuntimeException | Error e) {
+          throw e;
+        } catch (Throwable e) {
+          throw new AssertionError(e);
+        }
+        sink.accept(value);
+      }
+    };
+  }
+
+  // return (element, sink) -> { if (match(element)) sink.accept(long binding); }
+  public <T> BiConsumer<T, LongConsumer> mapMultiToLong(int binding) {
+    var accessor = accessor(binding, long.class);
+    return (element, sink) -> {
+      var carrier = match(element);
+      if (carrier != null) {
+        long value;
+        try {
+          value = (long) accessor.invokeExact(carrier);
+        } catch (RuntimeException | Error e) {
+          throw e;
+        } catch (Throwable e) {
+          throw new AssertionError(e);
+        }
+        sink.accept(value);
+      }
+    };
+  }
+
+  // return (element, sink) -> { if (match(element)) sink.accept(double binding); }
+  public <T> BiConsumer<T, DoubleConsumer> mapMultiToDouble(int binding) {
+    var accessor = accessor(binding, double.class);
+    return (element, sink) -> {
+      var carrier = match(element);
+      if (carrier != null) {
+        double value;
+        try {
+          value = (double) accessor.invokeExact(carrier);
+        } catch (RuntimeException | Error e) {
+          throw e;
+        } catch (Throwable e) {
+          throw new AssertionError(e);
+        }
+        sink.accept(value);
+      }
+    };
+  }
+
+  // the downstream collector and its container of a case
+  private record Downstream(Collector<Object, Object, ?> collector, Object container) {}
+
+  // routes the carriers of each case index to a downstream collector created by downstreamFactory,
+  // the elements that do not match are skipped
+  @SuppressWarnings("unchecked")
+  public <T, R> Collector<T, ?, Map<Integer, R>> groupingByCase(IntFunction<? extends Collector<Object, ?, ? extends R>> downstreamFactory) {
+    Objects.requireNonNull(downstreamFactory, "downstreamFactory is null");
+    var switchResult = Matcher.switchResult(carrierMetadata).asType(methodType(int.class, Object.class));
+    BiConsumer<HashMap<Integer, Downstream>, T> accumulator = (map, element) -> {
+      var carrier = match(element);
+      if (carrier == null) {
+        return;
+      }
+      int index;
+      try {
+        index = (int) switchResult.invokeExact(carrier);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new AssertionError(e);
+      }
+      var downstream = map.computeIfAbsent(index, i -> {
+        var collector = (Collector<Object, Object, ?>) downstreamFactory.apply(i);
+        return new Downstream(collector, collector.supplier().get());
+      });
+      downstream.collector.accumulator().accept(downstream.container, carrier);
+    };
+    return Collector.of(
+        HashMap::new,
+        accumulator,
+        (map1, map2) -> {
+          map2.forEach((index, downstream2) -> map1.merge(index, downstream2, (d1, d2) ->
+              new Downstream(d1.collector, d1.collector.combiner().apply(d1.container, d2.container))));
+          return map1;
+        },
+        map -> {
+          var result = new HashMap<Integer, R>();
+          map.forEach((index, downstream) ->
+              result.put(index, (R) downstream.collector.finisher().apply(downstream.container)));
+          return result;
+        });
+  }
+}
@@ -0,0 +1,182 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.BindingAllocator;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ConstantPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.NullPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RangePattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.forax.carrier.java.lang.runtime.Matcher.EQUALS;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.IS_INSTANCE;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.IN_RANGE;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.IS_NULL;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.THROW_NPE;
+import static java.lang.invoke.MethodHandles.constant;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.filterArguments;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.identity;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.permuteArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+// Lowers a pattern in continuation passing style, the pending bindings are passed as method handle arguments
+// and the carrier constructor is only called once the whole pattern has succeeded,
+// so a failed match allocates nothing.
+//
+// Each pattern is compiled with a continuation k of type (context..., bindings...) -> carrier
+// to a method handle of type (receiver, context..., bindings...) -> carrier or null,
+// the context being the enclosing record values still needed to project the remaining components.
+final class SingleAllocation {
+  private SingleAllocation() {
+    throw new AssertionError();
+  }
+
+  // return (o, carrier) -> matcher(o, accessor0(carrier), ..., accessorN(carrier))
+  static MethodHandle toMatcher(Pattern pattern, Lookup lookup, Class<?> receiverType, CarrierMetadata carrierMetadata, int firstBinding, Pattern rootPattern) {
+    var constructor = carrierMetadata.constructor();
+    var bindingTypes = constructor.type().parameterList();
+    var bindingAllocator = new BindingAllocator(carrierMetadata, firstBinding);
+    var matcher = compile(pattern, lookup, receiverType, List.of(), bindingTypes, constructor, bindingAllocator, rootPattern);
+
+    var count = bindingTypes.size();
+    if (count == 0) {
+      return dropArguments(matcher, 1, Object.class);
+    }
+    var accessors = new MethodHandle[count];
+    var reorder = new int[1 + count];
+    for(var i = 0; i < count; i++) {
+      accessors[i] = carrierMetadata.accessor(i);
+      reorder[1 + i] = 1;
+    }
+    var mh = filterArguments(matcher, 1, accessors);
+    return permuteArguments(mh, methodType(Object.class, receiverType, Object.class), reorder);
+  }
+
+  private static List<Class<?>> parameters(Class<?> receiverType, List<Class<?>> context, List<Class<?>> bindingTypes) {
+    var parameters = new ArrayList<Class<?>>(1 + context.size() + bindingTypes.size());
+    parameters.add(receiverType);
+    parameters.addAll(context);
+    parameters.addAll(bindingTypes);
+    return parameters;
+  }
+
+  // return (o, context..., bindings...) -> null
+  private static MethodHandle fail(List<Class<?>> parameters) {
+    return dropArguments(constant(Object.class, null), 0, parameters);
+  }
+
+  // return (o, context..., bindings...) -> test(o)? target(o, ...): fallback(o, ...)
+  private static MethodHandle test(MethodHandle test, Class<?> receiverType, MethodHandle target, MethodHandle fallback) {
+    return guardWithTest(test.asType(methodType(boolean.class, receiverType)), target, fallback);
+  }
+
+  // return (value, context..., bindings...) -> k(context..., bindings[binding] = value)
+  private static MethodHandle bind(MethodHandle k, int contextCount, int binding) {
+    var type = k.type();
+    var position = contextCount + binding;
+    var reorder = new int[type.parameterCount()];
+    for(var i = 0; i < reorder.length; i++) {
+      reorder[i] = (i == position)? 0: i + 1;
+    }
+    var newType = type.insertParameterTypes(0, type.parameterType(position));
+    return permuteArguments(k, newType, reorder);
+  }
+
+  private static MethodHandle compile(Pattern pattern, Lookup lookup, Class<?> receiverType,
+                                      List<Class<?>> context, List<Class<?>> bindingTypes, MethodHandle k,
+                                      BindingAllocator bindingAllocator, Pattern rootPattern) {
+    var parameters = parameters(receiverType, context, bindingTypes);
+    return switch (pattern) {
+      case NullPattern nullPattern ->
+          test(IS_NULL, receiverType,
+              dropArguments(k, 0, receiverType),
+              fail(parameters));
+      case ConstantPattern constantPattern -> {
+        var equals = receiverType.isPrimitive()? Matcher.PrimitiveEquals.primitiveEquals(receiverType): EQUALS;
+        yield test(insertArguments(equals, 0, constantPattern.constant()), receiverType,
+            dropArguments(k, 0, receiverType),
+            fail(parameters));
+      }
+      case RangePattern rangePattern -> {
+        if (!Matcher.isIntegral(receiverType)) {
+          throw new IllegalArgumentException("a range is only defined on an integral primitive type " + receiverType.getName());
+        }
+        yield test(insertArguments(IN_RANGE, 0, rangePattern.lo(), rangePattern.hi()), receiverType,
+            dropArguments(k, 0, receiverType),
+            fail(parameters));
+      }
+      case TypePattern typePattern -> {
+        var type = typePattern.type();
+        var target = bind(k, context.size(), bindingAllocator.nextBinding());
+        if (receiverType == type) {
+          yield target.asType(target.type().changeParameterType(0, receiverType));
+        }
+        yield test(IS_INSTANCE.bindTo(type), receiverType,
+            target.asType(target.type().changeParameterType(0, receiverType)),
+            fail(parameters));
+      }
+      case RecordPattern recordPattern -> {
+        var recordClass = recordPattern.recordClass();
+        var recordMetadata = CarrierMetadata.fromRecord(lookup, recordClass);
+        var patterns = recordPattern.patterns();
+
+        // bindings must be allocated from left to right but the continuations are built from right to left
+        var bindings = new int[patterns.length];
+        for(var i = 0; i < patterns.length; i++) {
+          bindings[i] = bindingAllocator.allocate(patterns[i].bindingCount());
+        }
+
+        var recordContext = new ArrayList<Class<?>>(1 + context.size());
+        recordContext.add(recordClass);
+        recordContext.addAll(context);
+        var matcher = dropArguments(k, 0, recordClass);
+        for(var i = patterns.length; --i >= 0;) {
+          var accessor = recordMetadata.accessor(i);
+          var componentType = accessor.type().returnType();
+          var subAllocator = new BindingAllocator(bindingAllocator.carrierMetadata(), bindings[i]);
+          var subMatcher = compile(patterns[i], lookup, componentType, recordContext, bindingTypes, matcher, subAllocator, rootPattern);
+          var mh = filterArguments(subMatcher, 0, accessor);
+          var reorder = new int[1 + matcher.type().parameterCount()];
+          for(var j = 1; j < reorder.length; j++) {
+            reorder[j] = j - 1;
+          }
+          matcher = permuteArguments(mh, matcher.type(), reorder);
+        }
+
+        var result = (receiverType == recordClass)?
+            matcher:
+            test(IS_INSTANCE.bindTo(recordClass), receiverType,
+                matcher.asType(matcher.type().changeParameterType(0, receiverType)),
+                fail(parameters));
+        var npe = rootPattern == null?
+            fail(parameters):
+            dropArguments(insertArguments(THROW_NPE, 0, rootPattern, pattern).asType(methodType(Object.class)), 0, parameters);
+        yield test(IS_NULL, receiverType, npe, result);
+      }
+      case OrPattern orPattern -> {
+        var matcher1 = compile(orPattern.pattern1(), lookup, receiverType, context, bindingTypes, k, bindingAllocator, rootPattern);
+        var matcher2 = compile(orPattern.pattern2(), lookup, receiverType, context, bindingTypes, k, bindingAllocator, rootPattern);
+        var target = dropArguments(matcher2, 0, Object.class);
+        var fallback = dropArguments(identity(Object.class), 1, parameters);
+        yield foldArguments(guardWithTest(IS_NULL, target, fallback), matcher1);
+      }
+      case ResultPattern resultPattern -> {
+        // the index of the result is always stored in the binding 0
+        var contextCount = context.size();
+        var resultK = dropArguments(insertArguments(k, contextCount, resultPattern.index()), contextCount, bindingTypes.get(0));
+        yield compile(resultPattern.pattern(), lookup, receiverType, context, bindingTypes, resultK, bindingAllocator, rootPattern);
+      }
+    };
+  }
+}
@@ -0,0 +1,284 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.BindingAllocator;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ConstantPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.NullPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RangePattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.github.forax.carrier.java.lang.runtime.Matcher.cast;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.doNotMatch;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.isNull;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.or;
+import static com.github.forax.carrier.java.lang.runtime.Matcher.test;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodHandles.tableSwitch;
+import static java.lang.invoke.MethodType.methodType;
+
+// Lowers a switch, a chain of OrPatterns, to a dispatch on the class of the receiver,
+// the matcher of a runtime class only tries the cases that can match an instance of that class,
+// in the order of the cases so the first case that matches still wins.
+//
+// The cases are compiled once with the same bindings as the COMBINATOR lowering,
+// the consecutive constant cases of the same class are kept together (so ConstantDispatch still applies),
+// for each runtime class, a ClassValue computes on first use the index of the next candidate case
+// from each case, a tableSwitch on that index calls the matcher of the candidate case
+// and if it does not match, switches again from the next case.
+// All the matchers are built at link time and the tableSwitch is the target of a call site
+// that never changes, so the JIT can inline them.
+// null is matched by the combination of all the cases (so the null checks and the NPEs are unchanged).
+//
+// If the receiver type is sealed, the final classes of the hierarchy (the leaves) are known upfront,
+// the matcher of each leaf is compiled eagerly with the leaf as receiver type so the type tests of the cases
+// are resolved at link time, the cases after a case that always matches the leaf are dropped,
+// and a tableSwitch on the index of the leaf selects the matcher.
+final class TypeDispatch {
+  private static final MethodHandle NEXT_CANDIDATE, LEAF_INDEX;
+  static {
+    var lookup = lookup();
+    try {
+      NEXT_CANDIDATE = lookup.findVirtual(CandidateTable.class, "next", methodType(int.class, Object.class, int.class));
+      LEAF_INDEX = lookup.findVirtual(LeafIndex.class, "index", methodType(int.class, Object.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private TypeDispatch() {
+    throw new AssertionError();
+  }
+
+  // return (o, carrier) -> o == null? matcher(o, carrier): dispatch(0, o, carrier)
+  static MethodHandle toMatcher(Pattern pattern, Lookup lookup, Class<?> receiverType, CarrierMetadata carrierMetadata, int firstBinding, Pattern rootPattern) {
+    var cases = new ArrayList<Pattern>();
+    ConstantDispatch.flatten(pattern, cases);
+    var bindingAllocator = new BindingAllocator(carrierMetadata, firstBinding);
+    var matchers = cases.stream()
+        .map(p -> p.toMatcher(lookup, receiverType, bindingAllocator, rootPattern))
+        .toArray(MethodHandle[]::new);
+    var caseArray = cases.toArray(Pattern[]::new);
+    var matcher = ConstantDispatch.combine(receiverType, carrierMetadata, caseArray, matchers);
+    if (receiverType.isPrimitive() || matchers.length == 1) {
+      return matcher;
+    }
+    var target = classDispatch(receiverType, carrierMetadata, caseArray, matchers);
+    if (receiverType.isSealed()) {
+      target = sealedDispatch(lookup, receiverType, carrierMetadata, firstBinding, rootPattern, cases, target);
+    }
+    return test(isNull(receiverType), matcher, target);
+  }
+
+  // return (o, carrier) -> dispatch(0, o, carrier)
+  // with dispatch(k, o, carrier) -> switch(candidateTable.next(o, k)) {
+  //   case i -> or(segmentMatchers[i], dispatch(i + 1))(o, carrier);
+  //   default -> null;
+  // }
+  private static MethodHandle classDispatch(Class<?> receiverType, CarrierMetadata carrierMetadata, Pattern[] cases, MethodHandle[] matchers) {
+    // a segment is a case or a run of consecutive constant cases of the same class
+    var segmentStarts = new ArrayList<Integer>();
+    for(var i = 0; i < cases.length; i++) {
+      var runClass = ConstantDispatch.runClass(receiverType, cases[i]);
+      if (i == 0 || runClass == null || runClass != ConstantDispatch.runClass(receiverType, cases[i - 1])) {
+        segmentStarts.add(i);
+      }
+    }
+    segmentStarts.add(cases.length);
+    var segmentCount = segmentStarts.size() - 1;
+    var segments = new Pattern[segmentCount][];
+    var segmentMatchers = new MethodHandle[segmentCount];
+    for(var i = 0; i < segmentCount; i++) {
+      int start = segmentStarts.get(i), end = segmentStarts.get(i + 1);
+      segments[i] = Arrays.copyOfRange(cases, start, end);
+      segmentMatchers[i] = ConstantDispatch.combine(receiverType, carrierMetadata, segments[i], Arrays.copyOfRange(matchers, start, end));
+    }
+
+    var candidateTable = new CandidateTable(segments);
+    var callSite = new MutableCallSite(methodType(Object.class, int.class, receiverType, Object.class));
+    var invoker = callSite.dynamicInvoker();
+    var dispatches = new MethodHandle[segmentCount + 1];
+    for(var k = 0; k <= segmentCount; k++) {
+      var next = insertArguments(NEXT_CANDIDATE.bindTo(candidateTable), 1, k).asType(methodType(int.class, receiverType));
+      dispatches[k] = foldArguments(invoker, next);
+    }
+    var targets = new MethodHandle[segmentCount];
+    for(var i = 0; i < segmentCount; i++) {
+      targets[i] = dropArguments(or(segmentMatchers[i], dispatches[i + 1]), 0, int.class);
+    }
+    callSite.setTarget(tableSwitch(dropArguments(doNotMatch(receiverType), 0, int.class), targets));
+    return dispatches[0];
+  }
+
+  // return (o, carrier) -> switch(leafIndex(o.getClass())) {
+  //   case 0 ... n - 1 -> leafMatchers[index](o, carrier);
+  //   default -> fallback(o, carrier);
+  // }
+  private static MethodHandle sealedDispatch(Lookup lookup, Class<?> receiverType, CarrierMetadata carrierMetadata, int firstBinding, Pattern rootPattern,
+                                             List<Pattern> cases, MethodHandle fallback) {
+    var leafSet = new LinkedHashSet<Class<?>>();
+    leaves(receiverType, leafSet);
+    if (leafSet.isEmpty()) {
+      return fallback;
+    }
+    var leaves = leafSet.toArray(Class<?>[]::new);
+    var firstBindings = firstBindings(cases, firstBinding);
+    var targets = new MethodHandle[leaves.length];
+    for(var i = 0; i < leaves.length; i++) {
+      var leafMatcher = exactMatcher(lookup, leaves[i], carrierMetadata, rootPattern, cases, firstBindings);
+      targets[i] = dropArguments(cast(receiverType, leafMatcher), 0, int.class);
+    }
+    var leafIndex = LEAF_INDEX.bindTo(new LeafIndex(leaves)).asType(methodType(int.class, receiverType));
+    return foldArguments(tableSwitch(dropArguments(fallback, 0, int.class), targets), leafIndex);
+  }
+
+  // the first binding of each case
+  static int[] firstBindings(List<Pattern> cases, int firstBinding) {
+    var firstBindings = new int[cases.size()];
+    for(int i = 0, binding = firstBinding; i < firstBindings.length; i++) {
+      firstBindings[i] = binding;
+      binding += cases.get(i).bindingCount();
+    }
+    return firstBindings;
+  }
+
+  // return (o, carrier) -> matcher of the cases for a receiver of exactly the class type,
+  // the type tests are resolved for type and the cases after a case that always matches are dropped
+  static MethodHandle exactMatcher(Lookup lookup, Class<?> type, CarrierMetadata carrierMetadata, Pattern rootPattern,
+                                   List<Pattern> cases, int[] firstBindings) {
+    var exactCases = new Pattern[firstBindings.length];
+    var exactMatchers = new MethodHandle[firstBindings.length];
+    for(var i = 0; i < firstBindings.length; i++) {
+      var pattern = cases.get(i);
+      if (!isCandidate(pattern, type)) {
+        continue;
+      }
+      var specialized = specialize(pattern, type);
+      exactCases[i] = specialized;
+      exactMatchers[i] = specialized.toMatcher(lookup, type, new BindingAllocator(carrierMetadata, firstBindings[i]), rootPattern);
+      if (isTotal(specialized, type)) {  // the next cases are unreachable
+        break;
+      }
+    }
+    return ConstantDispatch.combine(type, carrierMetadata, exactCases, exactMatchers);
+  }
+
+  // the final classes of a sealed hierarchy, the other classes are matched by the fallback
+  private static void leaves(Class<?> type, Set<Class<?>> leaves) {
+    if (type.isSealed()) {
+      for(var permittedSubclass: type.getPermittedSubclasses()) {
+        leaves(permittedSubclass, leaves);
+      }
+      return;
+    }
+    if (!type.isInterface() && Modifier.isFinal(type.getModifiers())) {
+      leaves.add(type);
+    }
+  }
+
+  // replaces the type tests of a candidate pattern on a leaf (an exact class) by the leaf itself
+  private static Pattern specialize(Pattern pattern, Class<?> leaf) {
+    return switch (pattern) {
+      case TypePattern typePattern -> typePattern.type().isAssignableFrom(leaf)? new TypePattern(leaf): pattern;
+      case OrPattern orPattern -> new OrPattern(specialize(orPattern.pattern1(), leaf), specialize(orPattern.pattern2(), leaf));
+      case ResultPattern resultPattern -> new ResultPattern(resultPattern.index(), specialize(resultPattern.pattern(), leaf));
+      default -> pattern;
+    };
+  }
+
+  // true if the pattern matches any non-null instance of type
+  static boolean isTotal(Pattern pattern, Class<?> type) {
+    return switch (pattern) {
+      case NullPattern nullPattern -> false;
+      case ConstantPattern constantPattern -> false;
+      case RangePattern rangePattern -> false;
+      case TypePattern typePattern -> typePattern.type().isAssignableFrom(type);
+      case RecordPattern recordPattern -> {
+        if (recordPattern.recordClass() != type) {
+          yield false;
+        }
+        // a sub-pattern is total if it does not test its component, even if the component is null
+        var recordComponents = type.getRecordComponents();
+        var patterns = recordPattern.patterns();
+        for(var i = 0; i < patterns.length; i++) {
+          if (!(patterns[i] instanceof TypePattern typePattern) || typePattern.type() != recordComponents[i].getType()) {
+            yield false;
+          }
+        }
+        yield true;
+      }
+      case OrPattern orPattern -> isTotal(orPattern.pattern1(), type) || isTotal(orPattern.pattern2(), type);
+      case ResultPattern resultPattern -> isTotal(resultPattern.pattern(), type);
+    };
+  }
+
+  // true if the pattern may match a non-null instance of type
+  static boolean isCandidate(Pattern pattern, Class<?> type) {
+    return switch (pattern) {
+      case NullPattern nullPattern -> false;
+      case ConstantPattern constantPattern -> true;  // equals() may accept any class
+      case RangePattern rangePattern -> false;  // only matches a primitive
+      case TypePattern typePattern -> typePattern.type().isAssignableFrom(type);
+      case RecordPattern recordPattern -> recordPattern.recordClass().isAssignableFrom(type);
+      case OrPattern orPattern -> isCandidate(orPattern.pattern1(), type) || isCandidate(orPattern.pattern2(), type);
+      case ResultPattern resultPattern -> isCandidate(resultPattern.pattern(), type);
+    };
+  }
+
+  // for a runtime class, the index of the next segment that has a candidate case from each segment,
+  // the number of segments if there is none
+  static final class CandidateTable extends ClassValue<int[]> {
+    private final Pattern[][] segments;
+
+    CandidateTable(Pattern[][] segments) {
+      this.segments = segments;
+    }
+
+    @Override
+    protected int[] computeValue(Class<?> type) {
+      var next = new int[segments.length + 1];
+      next[segments.length] = segments.length;
+      for(var i = segments.length; --i >= 0;) {
+        next[i] = Arrays.stream(segments[i]).anyMatch(pattern -> isCandidate(pattern, type))? i: next[i + 1];
+      }
+      return next;
+    }
+
+    int next(Object o, int from) {
+      return get(o.getClass())[from];
+    }
+  }
+
+  // the index of a leaf class, -1 for the other classes
+  static final class LeafIndex extends ClassValue<Integer> {
+    private final List<Class<?>> leaves;
+
+    LeafIndex(Class<?>[] leaves) {
+      this.leaves = List.of(leaves);
+    }
+
+    @Override
+    protected Integer computeValue(Class<?> type) {
+      return leaves.indexOf(type);
+    }
+
+    int index(Object o) {
+      return get(o.getClass());
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Scaling of the batch matching of 1M values with the number of threads of the pool
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class BatchMatcherBenchmark {
+  record Point(int x, int y) {}
+  record Rectangle(Point p1, Point p2) {}
+
+  @Param({"1", "2", "4", "8"})
+  public int parallelism;
+
+  private ForkJoinPool pool;
+  private BatchMatcher batchMatcher;
+  private Object[] values;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, int.class, int.class, int.class, Point.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = new OrPattern(
+        new ResultPattern(0,
+            new RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(int.class))),
+        new ResultPattern(1,
+            new RecordPattern(Rectangle.class,
+                new RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(int.class)),
+                new TypePattern(Point.class))));
+    var matcher = pattern.toMatcher(MethodHandles.lookup(), Object.class, carrierType, 1, false);
+    pool = new ForkJoinPool(parallelism);
+    batchMatcher = BatchMatcher.of(carrierMetadata, Matcher.of(carrierMetadata.empty(), matcher), pool);
+    values = IntStream.range(0, 1_000_000)
+        .mapToObj(i -> switch (i % 3) {
+          case 0 -> new Point(i, i);
+          case 1 -> new Rectangle(new Point(i, i), new Point(i, i));
+          default -> "" + i;
+        })
+        .toArray();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public Map<Integer, List<Object>> match() {
+    return batchMatcher.match(values);
+  }
+}
@@ -0,0 +1,93 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchMatcherTest {
+  record Point(int x, int y) {}
+
+  private static final MethodType CARRIER_TYPE = MethodType.methodType(Object.class, int.class, int.class, int.class, String.class);
+  private static final CarrierMetadata CARRIER_METADATA = CarrierMetadata.fromCarrier(CARRIER_TYPE);
+
+  private static MethodHandle op() {
+    var pattern = new OrPattern(
+        new ResultPattern(0,
+            new RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(int.class))),
+        new ResultPattern(1,
+            new TypePattern(String.class)));
+    var matcher = pattern.toMatcher(MethodHandles.lookup(), Object.class, CARRIER_TYPE, 1, false);
+    return Matcher.of(CARRIER_METADATA.empty(), matcher);
+  }
+
+  private static Object value(int i) {
+    return switch (i % 3) {
+      case 0 -> new Point(i, -i);
+      case 1 -> "" + i;
+      default -> i;
+    };
+  }
+
+  @Test
+  public void matchArray() throws Throwable {
+    var values = IntStream.range(0, 10_000).mapToObj(BatchMatcherTest::value).toArray();
+    var pool = new ForkJoinPool(4);
+    try {
+      var partitions = BatchMatcher.of(CARRIER_METADATA, op(), pool).match(values);
+      var points = partitions.get(0);
+      var strings = partitions.get(1);
+      var unmatched = partitions.get(-1);
+      assertEquals(3, partitions.size());
+      assertEquals(3334, points.size());
+      assertEquals(3333, strings.size());
+      assertEquals(3333, unmatched.size());
+      // encounter order is kept
+      for(var i = 0; i < points.size(); i++) {
+        assertEquals(i * 3, (int) CARRIER_METADATA.accessor(1).invokeExact(points.get(i)));
+      }
+      for(var i = 0; i < strings.size(); i++) {
+        assertEquals("" + (i * 3 + 1), (String) CARRIER_METADATA.accessor(3).invokeExact(strings.get(i)));
+      }
+      for(var i = 0; i < unmatched.size(); i++) {
+        assertEquals(i * 3 + 2, unmatched.get(i));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void matchList() {
+    var values = List.of(new Point(1, 2), "foo", 3.0);
+    var partitions = BatchMatcher.of(CARRIER_METADATA, op()).match(values);
+    assertAll(
+        () -> assertEquals(1, partitions.get(0).size()),
+        () -> assertEquals(1, partitions.get(1).size()),
+        () -> assertEquals(List.of(3.0), partitions.get(-1))
+    );
+  }
+
+  @Test
+  public void matchEmpty() {
+    var partitions = BatchMatcher.of(CARRIER_METADATA, op()).match(new Object[0]);
+    assertTrue(partitions.isEmpty());
+  }
+
+  @Test
+  public void invalidOp() {
+    assertThrows(IllegalArgumentException.class,
+        () -> BatchMatcher.of(CARRIER_METADATA, Matcher.doNotMatch(Object.class)));
+  }
+}
@@ -0,0 +1,112 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.Mode;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CarrierBatchTest {
+  record Point(int x, int y) {}
+
+  @Test
+  public void appendMatcherOutput() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, int.class, String.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = new OrPattern(
+        new ResultPattern(0,
+            new RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(int.class))),
+        new ResultPattern(1,
+            new TypePattern(String.class)));
+    var matcher = pattern.toMatcher(lookup, Object.class, carrierType, 1, false);
+    var batch = CarrierBatch.of(carrierMetadata);
+    var appender = batch.appender(Matcher.of(carrierMetadata.empty(), matcher));
+
+    for(var i = 0; i < 100; i++) {
+      appender.invokeExact((Object) new Point(i, -i));
+    }
+    appender.invokeExact((Object) "hello");
+    appender.invokeExact((Object) 3.0);
+
+    assertEquals(102, batch.size());
+    var xs = batch.intColumn(1);
+    var sum = 0;
+    for(var i = 0; i < 100; i++) {
+      sum += xs[i];
+    }
+    assertAll(
+        () -> assertEquals(0, batch.caseIndex(0)),
+        () -> assertEquals(1, batch.caseIndex(100)),
+        () -> assertEquals(-1, batch.caseIndex(101)),
+        () -> assertEquals(42, batch.getInt(42, 1)),
+        () -> assertEquals(-42, batch.getInt(42, 2)),
+        () -> assertEquals("hello", batch.getObject(100, 3)),
+        () -> assertNull(batch.getObject(101, 3)),
+        () -> assertEquals(-1, batch.caseIndexColumn()[101])
+    );
+    assertEquals(4950, sum);
+  }
+
+  @Test
+  public void primitiveColumns() throws Throwable {
+    var carrierType = MethodType.methodType(Object.class,
+        float.class, double.class, boolean.class, byte.class, char.class, long.class);
+    var batch = CarrierBatch.of(carrierType);
+    batch.append(Carrier.constructor(carrierType).invokeExact(1.5f, 2.5, true, (byte) -3, 'c', 42L));
+
+    assertAll(
+        () -> assertEquals(1, batch.size()),
+        () -> assertEquals(0, batch.caseIndex(0)),
+        () -> assertEquals(1.5f, batch.getFloat(0, 0)),
+        () -> assertEquals(2.5, batch.getDouble(0, 1)),
+        () -> assertEquals(1, batch.getInt(0, 2)),
+        () -> assertEquals(-3, batch.getInt(0, 3)),
+        () -> assertEquals('c', batch.getInt(0, 4)),
+        () -> assertEquals(42L, batch.getLong(0, 5))
+    );
+  }
+
+  @Test
+  public void scopedCarriers() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, String.class);
+    var batch = CarrierBatch.of(lookup, carrierType);
+    var matcher = new ResultPattern(0, new TypePattern(String.class))
+        .toMatcher(lookup, Object.class, batch.carrierMetadata(), 1, false, Mode.COMBINATOR);
+    var appender = batch.appender(Matcher.of(batch.carrierMetadata().empty(), matcher));
+    appender.invokeExact((Object) "hello");
+    appender.invokeExact((Object) 42);
+    assertAll(
+        () -> assertSame(CarrierMetadata.fromCarrier(lookup, carrierType), batch.carrierMetadata()),
+        () -> assertEquals("hello", batch.getObject(0, 1)),
+        () -> assertEquals(-1, batch.caseIndex(1)),
+        () -> assertNull(batch.getObject(1, 1))
+    );
+  }
+
+  @Test
+  public void wrongColumnType() {
+    var batch = CarrierBatch.of(MethodType.methodType(Object.class, int.class, String.class));
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> batch.longColumn(0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> batch.intColumn(1)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> batch.objectColumn(2)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> batch.caseIndex(0))
+    );
+  }
+
+  @Test
+  public void appenderWrongType() {
+    var batch = CarrierBatch.of(MethodType.methodType(Object.class, int.class));
+    assertThrows(IllegalArgumentException.class,
+        () -> batch.appender(Matcher.doNotMatch(Object.class)));
+  }
+}
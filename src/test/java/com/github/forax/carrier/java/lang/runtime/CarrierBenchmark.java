@@ -0,0 +1,50 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+
+// Cost of linking a switch site whose carrier type has already been seen
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class CarrierBenchmark {
+  private static final MethodType CARRIER_TYPE =
+      methodType(Object.class, int.class, String.class, double.class, float.class, long.class, Object.class);
+
+  @Benchmark
+  public MethodHandle constructor() {
+    return Carrier.constructor(CARRIER_TYPE);
+  }
+
+  @Benchmark
+  public MethodHandle[] components() {
+    return Carrier.components(CARRIER_TYPE);
+  }
+
+  @Benchmark
+  public MethodHandle component() {
+    return Carrier.component(CARRIER_TYPE, 3);
+  }
+
+  @Benchmark
+  public CarrierMetadata carrierMetadata() {
+    return CarrierMetadata.fromCarrier(CARRIER_TYPE);
+  }
+}
@@ -0,0 +1,92 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.CarrierCodec.ObjectCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+
+// Round trip (write then read) of 1000 carriers with the generated codec
+// vs hand written code using the component accessors and a DataOutputStream
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class CarrierCodecBenchmark {
+  private static final MethodType CARRIER_TYPE =
+      methodType(Object.class, int.class, long.class, double.class, String.class, int.class);
+  private static final MethodHandle CONSTRUCTOR = Carrier.constructor(CARRIER_TYPE);
+  private static final MethodHandle[] COMPONENTS = Carrier.components(CARRIER_TYPE);
+  private static final CarrierCodec CODEC = CarrierCodec.of(CARRIER_TYPE, ObjectCodec.strings());
+
+  private Object[] carriers;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+  private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+
+  @Setup
+  public void setup() throws Throwable {
+    carriers = new Object[1_000];
+    for(var i = 0; i < carriers.length; i++) {
+      carriers[i] = CONSTRUCTOR.invokeExact(i, (long) i, i * 0.5, "value" + i, -i);
+    }
+  }
+
+  @Benchmark
+  public int codec() {
+    buffer.clear();
+    for(var carrier: carriers) {
+      CODEC.write(buffer, carrier);
+    }
+    buffer.flip();
+    var count = 0;
+    while(buffer.hasRemaining()) {
+      CODEC.read(buffer);
+      count++;
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int dataOutputStream() throws Throwable {
+    bytes.reset();
+    var output = new DataOutputStream(bytes);
+    for(var carrier: carriers) {
+      output.writeInt((int) COMPONENTS[0].invokeExact(carrier));
+      output.writeLong((long) COMPONENTS[1].invokeExact(carrier));
+      output.writeDouble((double) COMPONENTS[2].invokeExact(carrier));
+      output.writeUTF((String) COMPONENTS[3].invokeExact(carrier));
+      output.writeInt((int) COMPONENTS[4].invokeExact(carrier));
+    }
+    output.flush();
+    var input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    var count = 0;
+    try {
+      for(;;) {
+        var carrier = (Object) CONSTRUCTOR.invokeExact(input.readInt(), input.readLong(), input.readDouble(), input.readUTF(), input.readInt());
+        count++;
+      }
+    } catch (IOException e) {  // EOFException
+      return count;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.CarrierCodec.ObjectCodec;
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.Mode;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CarrierCodecTest {
+  @Test
+  public void roundTrip() throws Throwable {
+    var carrierType = MethodType.methodType(Object.class,
+        int.class, String.class, long.class, double.class, float.class, boolean.class, byte.class, short.class, char.class, String.class);
+    var codec = CarrierCodec.of(carrierType, ObjectCodec.strings());
+    var carrier = Carrier.constructor(carrierType).invokeExact(42, "h\u00e9llo", 43L, 2.5, 1.5f, true, (byte) -3, (short) -4, 'c', (String) null);
+    var buffer = ByteBuffer.allocate(128);
+    codec.write(buffer, carrier);
+    assertEquals(4 + (4 + 6) + 8 + 8 + 4 + 4 + 4 + 4 + 4 + 4, buffer.position());
+
+    buffer.flip();
+    var copy = codec.read(buffer);
+    assertAll(
+        () -> assertFalse(buffer.hasRemaining()),
+        () -> assertEquals(carrier, copy),
+        () -> assertEquals("h\u00e9llo", (String) Carrier.component(carrierType, 1).invokeExact(copy)),
+        () -> assertTrue((boolean) Carrier.component(carrierType, 5).invokeExact(copy)),
+        () -> assertNull((String) Carrier.component(carrierType, 9).invokeExact(copy))
+    );
+  }
+
+  @Test
+  public void layout() throws Throwable {
+    var carrierType = MethodType.methodType(Object.class, int.class, long.class);
+    var codec = CarrierCodec.of(carrierType, ObjectCodec.strings());
+    var buffer = ByteBuffer.allocate(12);
+    codec.write(buffer, Carrier.constructor(carrierType).invokeExact(1, 2L));
+    buffer.flip();
+    assertAll(
+        () -> assertEquals(1, buffer.getInt()),
+        () -> assertEquals(2L, buffer.getLong())
+    );
+  }
+
+  @Test
+  public void severalCarriers() throws Throwable {
+    var carrierType = MethodType.methodType(Object.class, int.class, String.class);
+    var codec = CarrierCodec.of(carrierType, ObjectCodec.strings());
+    var constructor = Carrier.constructor(carrierType);
+    var buffer = ByteBuffer.allocateDirect(1024);
+    for(var i = 0; i < 10; i++) {
+      codec.write(buffer, constructor.invokeExact(i, "" + i));
+    }
+    buffer.flip();
+    for(var i = 0; i < 10; i++) {
+      assertEquals(constructor.invokeExact(i, "" + i), codec.read(buffer));
+    }
+    assertThrows(BufferUnderflowException.class, () -> codec.read(buffer));
+  }
+
+  @Test
+  public void matcherOutput() throws Throwable {
+    record Point(int x, double y) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, double.class, String.class);
+    var pattern = new OrPattern(
+        new ResultPattern(0, new RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(double.class))),
+        new ResultPattern(1, new TypePattern(String.class)));
+    var carrierMetadata = CarrierMetadata.fromCarrier(lookup, carrierType);
+    var matcher = Matcher.of(carrierMetadata.empty(),
+        pattern.toMatcher(lookup, Object.class, carrierMetadata, 1, false, Mode.COMBINATOR));
+    var codec = CarrierCodec.of(carrierMetadata, ObjectCodec.strings());
+    var buffer = ByteBuffer.allocate(128);
+    var carrier1 = matcher.invoke(new Point(3, 4.5));
+    var carrier2 = matcher.invoke("hello");
+    codec.write(buffer, carrier1);
+    codec.write(buffer, carrier2);
+
+    buffer.flip();
+    var copy1 = codec.read(buffer);
+    var copy2 = codec.read(buffer);
+    assertAll(
+        () -> assertEquals(carrier1, copy1),
+        () -> assertEquals(carrier2, copy2),
+        () -> assertEquals(3, (int) carrierMetadata.accessor(1).invokeExact(copy1)),
+        () -> assertEquals(4.5, (double) carrierMetadata.accessor(2).invokeExact(copy1)),
+        () -> assertEquals(1, (int) carrierMetadata.accessor(0).invokeExact(copy2)),
+        () -> assertEquals("hello", (String) carrierMetadata.accessor(3).invokeExact(copy2))
+    );
+  }
+
+  @Test
+  public void lookupScopedCarriers() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, String.class);
+    var codec = CarrierCodec.of(lookup, carrierType, ObjectCodec.strings());
+    var carrier = Carrier.constructor(lookup, carrierType).invokeExact(42, "foo");
+    var buffer = ByteBuffer.allocate(64);
+    codec.write(buffer, carrier);
+    buffer.flip();
+    assertEquals(carrier, codec.read(buffer));
+  }
+
+  @Test
+  public void lazyMetadata() {
+    record Box(String s) {}
+    var lookup = MethodHandles.lookup();
+    var lazyMatcher = new RecordPattern(Box.class, new TypePattern(String.class))
+        .toLazyMatcher(lookup, Object.class, MethodType.methodType(Object.class, String.class), 0, false);
+    assertThrows(IllegalArgumentException.class, () -> CarrierCodec.of(lazyMatcher.carrierMetadata(), ObjectCodec.strings()));
+  }
+
+  @Test
+  public void emptyCarrier() {
+    var carrierType = MethodType.methodType(Object.class);
+    var codec = CarrierCodec.of(carrierType, ObjectCodec.strings());
+    var buffer = ByteBuffer.allocate(0);
+    assertNotNull(codec.read(buffer));
+  }
+}
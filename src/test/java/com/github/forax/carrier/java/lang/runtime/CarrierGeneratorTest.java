@@ -0,0 +1,77 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodType;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CarrierGeneratorTest {
+  // the directory of the test classes, so the generated classes are visible from the class loader of Carrier
+  private static Path classesDir() throws URISyntaxException {
+    return Path.of(CarrierGeneratorTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  // a shape not used by the other tests so the class is not already defined as a hidden class
+  private static MethodType shape(Class<?> first) {
+    var ptypes = new Class<?>[15];
+    Collections.nCopies(7, Object.class).toArray(ptypes);
+    for(var i = 7; i < 12; i++) {
+      ptypes[i] = int.class;
+    }
+    for(var i = 12; i < 15; i++) {
+      ptypes[i] = long.class;
+    }
+    ptypes[0] = first;
+    return MethodType.methodType(Object.class, ptypes);
+  }
+
+  @Test
+  public void generatedCarrierIsNotHidden() throws Throwable {
+    var methodType = shape(String.class);
+    var paths = CarrierGenerator.generate(classesDir(), List.of(methodType.toMethodDescriptorString()));
+    assertEquals(1, paths.size());
+    assertTrue(paths.get(0).getFileName().toString().startsWith("Carrier$"));
+
+    var args = new Object[] { "foo", 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12L, 13L, 14L };
+    var carrier = Carrier.constructor(methodType).invokeWithArguments(args);
+    assertAll(
+        () -> assertFalse(carrier.getClass().isHidden()),
+        () -> assertEquals("foo", (String) Carrier.component(methodType, 0).invokeExact(carrier)),
+        () -> assertEquals(14L, (long) Carrier.component(methodType, 14).invokeExact(carrier))
+    );
+  }
+
+  @Test
+  public void generatedMutableCarrierIsNotHidden() throws Throwable {
+    var methodType = shape(Object.class);
+    var paths = CarrierGenerator.generate(classesDir(), List.of("mutable " + methodType.toMethodDescriptorString()));
+    assertEquals(1, paths.size());
+    assertTrue(paths.get(0).getFileName().toString().startsWith("MutableCarrier$"));
+
+    var args = new Object[] { "foo", 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12L, 13L, 14L };
+    var carrier = Carrier.mutableConstructor(methodType).invokeWithArguments(args);
+    Carrier.mutableSetters(methodType)[7].invoke(carrier, 42);
+    assertAll(
+        () -> assertFalse(carrier.getClass().isHidden()),
+        () -> assertEquals(42, (int) Carrier.mutableComponents(methodType)[7].invokeExact(carrier))
+    );
+  }
+
+  @Test
+  public void largeCarrierIsSkipped() throws Throwable {
+    var methodType = MethodType.methodType(Object.class, Collections.nCopies(40, int.class));
+    var paths = CarrierGenerator.generate(classesDir(), List.of(methodType.toMethodDescriptorString()));
+    assertTrue(paths.isEmpty());
+  }
+
+  @Test
+  public void invalidSpec() {
+    assertThrows(IllegalArgumentException.class,
+        () -> CarrierGenerator.generate(classesDir(), List.of("not a descriptor")));
+  }
+}
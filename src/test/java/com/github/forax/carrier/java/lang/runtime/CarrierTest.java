@@ -1,8 +1,12 @@
 package com.github.forax.carrier.java.lang.runtime;
 
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
 import org.junit.jupiter.api.Test;
 
 import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 public class CarrierTest {
@@ -176,4 +180,269 @@ public class CarrierTest {
         () -> assertEquals(43f, (float) Carrier.components(methodType)[4].invokeExact((Object) carrier))
     );
   }
-}
\ No newline at end of file
+
+  @Test
+  public void mutableCarrierIDL() throws Throwable {
+    var methodType = MethodType.methodType(Object.class, int.class, double.class, String.class);
+    var constructor = Carrier.mutableConstructor(methodType);
+    var components = Carrier.mutableComponents(methodType);
+    var setters = Carrier.mutableSetters(methodType);
+    var carrier = constructor.invokeExact(42, 42.0, "42");
+
+    setters[0].invokeExact(carrier, 43);
+    setters[1].invokeExact(carrier, 43.0);
+    setters[2].invokeExact(carrier, "43");
+    assertAll(
+        () -> assertEquals(MethodType.methodType(void.class, Object.class, double.class), setters[1].type()),
+        () -> assertEquals(43, (int) components[0].invokeExact(carrier)),
+        () -> assertEquals(43.0, (double) components[1].invokeExact(carrier)),
+        () -> assertEquals("43", (String) components[2].invokeExact(carrier)),
+        () -> assertNotSame(constructor.invokeExact(42, 42.0, "42").getClass(),
+            Carrier.constructor(methodType).invokeExact(42, 42.0, "42").getClass())
+    );
+  }
+
+  @Test
+  public void carrierLarge() throws Throwable {
+    var ptypes = new Class<?>[60];
+    var values = new Object[ptypes.length];
+    for(var i = 0; i < ptypes.length; i++) {
+      switch (i % 4) {
+        case 0 -> { ptypes[i] = long.class; values[i] = (long) i; }
+        case 1 -> { ptypes[i] = double.class; values[i] = (double) i; }
+        case 2 -> { ptypes[i] = String.class; values[i] = "" + i; }
+        default -> { ptypes[i] = int.class; values[i] = i; }
+      }
+    }
+    var methodType = MethodType.methodType(Object.class, ptypes);
+    var constructor = Carrier.constructor(methodType);
+    var carrier = constructor.invokeWithArguments(values);
+
+    assertAll(
+        () -> assertEquals(Object[].class, carrier.getClass().getDeclaredField("objects").getType()),
+        () -> assertEquals(int[].class, carrier.getClass().getDeclaredField("ints").getType()),
+        () -> assertEquals(long[].class, carrier.getClass().getDeclaredField("longs").getType())
+    );
+    for(var i = 0; i < ptypes.length; i++) {
+      var expectedMethodType = MethodType.methodType(ptypes[i], Object.class);
+      assertEquals(expectedMethodType, Carrier.component(methodType, i).type());
+      assertEquals(expectedMethodType, Carrier.components(methodType)[i].type());
+      assertEquals(values[i], Carrier.component(methodType, i).invoke(carrier));
+      assertEquals(values[i], Carrier.components(methodType)[i].invoke(carrier));
+    }
+  }
+
+  @Test
+  public void mutableCarrierLarge() throws Throwable {
+    var ptypes = new Class<?>[40];
+    Arrays.fill(ptypes, long.class);
+    var methodType = MethodType.methodType(Object.class, ptypes);
+    var values = new Object[40];
+    Arrays.fill(values, 0L);
+    var carrier = Carrier.mutableConstructor(methodType).invokeWithArguments(values);
+    var setters = Carrier.mutableSetters(methodType);
+    var components = Carrier.mutableComponents(methodType);
+
+    setters[39].invokeExact(carrier, 42L);
+    assertEquals(42L, (long) components[39].invokeExact(carrier));
+    assertEquals(0L, (long) components[0].invokeExact(carrier));
+  }
+
+  @Test
+  public void shapePolicyBucket() {
+    assertAll(
+        () -> assertEquals(0, Carrier.ShapePolicy.POWER_OF_TWO.bucket(0)),
+        () -> assertEquals(1, Carrier.ShapePolicy.POWER_OF_TWO.bucket(1)),
+        () -> assertEquals(4, Carrier.ShapePolicy.POWER_OF_TWO.bucket(3)),
+        () -> assertEquals(4, Carrier.ShapePolicy.POWER_OF_TWO.bucket(4)),
+        () -> assertEquals(8, Carrier.ShapePolicy.POWER_OF_TWO.bucket(5)),
+        () -> assertEquals(5, Carrier.ShapePolicy.EXACT.bucket(5))
+    );
+  }
+
+  @Test
+  public void shapePolicyPowerOfTwo() throws Throwable {
+    var cache = new Carrier.CarrierCache(true, Carrier.ShapePolicy.POWER_OF_TWO, false);
+    var methodType = MethodType.methodType(Object.class, String.class, int.class, double.class, char.class, String.class, int.class);
+    var handles = cache.findCarrierHandles(methodType, false);
+    var carrier = handles.constructor().invokeExact("foo", 1, 2.0, 'c', "bar", 3);
+    var components = handles.components();
+    var otherMethodType = MethodType.methodType(Object.class, int.class, String.class, long.class, Object.class, int.class, int.class);
+    var otherCarrier = cache.findCarrierHandles(otherMethodType, false).constructor().invokeExact(4, "baz", 5L, (Object) "qux", 6, 7);
+    assertAll(
+        () -> assertTrue(carrier.getClass().getName().contains("Carrier$o2i4l1")),
+        () -> assertSame(carrier.getClass(), otherCarrier.getClass()),
+        () -> assertEquals(1, cache.carrierClassCount()),
+        () -> assertEquals("foo", (String) components[0].invokeExact(carrier)),
+        () -> assertEquals(1, (int) components[1].invokeExact(carrier)),
+        () -> assertEquals(2.0, (double) components[2].invokeExact(carrier)),
+        () -> assertEquals('c', (char) components[3].invokeExact(carrier)),
+        () -> assertEquals("bar", (String) components[4].invokeExact(carrier)),
+        () -> assertEquals(3, (int) components[5].invokeExact(carrier))
+    );
+  }
+
+  @Test
+  public void mutableShapePolicyPowerOfTwo() throws Throwable {
+    var cache = new Carrier.CarrierCache(true, Carrier.ShapePolicy.POWER_OF_TWO, false);
+    var methodType = MethodType.methodType(Object.class, long.class, String.class, long.class, long.class);
+    var handles = cache.findCarrierHandles(methodType, true);
+    var carrier = handles.constructor().invokeExact(1L, "foo", 2L, 3L);
+    var setters = handles.setters();
+    var components = handles.components();
+
+    setters[3].invokeExact(carrier, 4L);
+    setters[1].invokeExact(carrier, "bar");
+    assertAll(
+        () -> assertTrue(carrier.getClass().getName().contains("MutableCarrier$o1i0l4")),
+        () -> assertEquals(1L, (long) components[0].invokeExact(carrier)),
+        () -> assertEquals("bar", (String) components[1].invokeExact(carrier)),
+        () -> assertEquals(2L, (long) components[2].invokeExact(carrier)),
+        () -> assertEquals(4L, (long) components[3].invokeExact(carrier))
+    );
+  }
+
+  @Test
+  public void typedCarrier() throws Throwable {
+    record Secret(int value) {}
+    var cache = new Carrier.CarrierCache(true, Carrier.ShapePolicy.EXACT, true);
+    var methodType = MethodType.methodType(Object.class,
+        float.class, String.class, boolean.class, double.class, byte.class, short.class, char.class, long.class, Secret.class);
+    var handles = cache.findCarrierHandles(methodType, false);
+    var constructor = handles.constructor();
+    var components = handles.components();
+    var secret = new Secret(42);
+    var carrier = constructor.invokeExact(1.5f, "foo", true, 2.5, (byte) -3, (short) -4, 'c', 5L, secret);
+    assertAll(
+        () -> assertEquals(methodType, constructor.type()),
+        () -> assertNull(handles.setters()),
+        () -> assertEquals(int.class, carrier.getClass().getDeclaredField("c0").getType()),
+        () -> assertEquals(long.class, carrier.getClass().getDeclaredField("c3").getType()),
+        () -> assertEquals(1.5f, (float) components[0].invokeExact(carrier)),
+        () -> assertEquals("foo", (String) components[1].invokeExact(carrier)),
+        () -> assertTrue((boolean) components[2].invokeExact(carrier)),
+        () -> assertEquals(2.5, (double) components[3].invokeExact(carrier)),
+        () -> assertEquals((byte) -3, (byte) components[4].invokeExact(carrier)),
+        () -> assertEquals((short) -4, (short) components[5].invokeExact(carrier)),
+        () -> assertEquals('c', (char) components[6].invokeExact(carrier)),
+        () -> assertEquals(5L, (long) components[7].invokeExact(carrier)),
+        () -> assertSame(secret, (Secret) components[8].invokeExact(carrier))
+    );
+  }
+
+  @Test
+  public void typedCarrierMutableIsNotTyped() throws Throwable {
+    var cache = new Carrier.CarrierCache(true, Carrier.ShapePolicy.EXACT, true);
+    var methodType = MethodType.methodType(Object.class, int.class, String.class);
+    var carrier = cache.findCarrierHandles(methodType, true).constructor().invokeExact(1, "foo");
+    assertTrue(carrier.getClass().getName().contains("MutableCarrier$"));
+  }
+
+  @Test
+  public void carrierEqualsHashCodeToString() throws Throwable {
+    var methodType = MethodType.methodType(Object.class, String.class, int.class, double.class);
+    var constructor = Carrier.constructor(methodType);
+    var carrier = constructor.invokeExact("foo", 42, 2.5);
+    var same = constructor.invokeExact("foo", 42, 2.5);
+    var other = constructor.invokeExact("foo", 43, 2.5);
+    var map = new HashMap<Object, String>();
+    map.put(carrier, "value");
+    assertAll(
+        () -> assertEquals(carrier, same),
+        () -> assertEquals(carrier.hashCode(), same.hashCode()),
+        () -> assertNotEquals(carrier, other),
+        () -> assertNotEquals(carrier, null),
+        () -> assertEquals("value", map.get(same)),
+        () -> assertNull(map.get(other)),
+        () -> assertTrue(carrier.toString().startsWith("Carrier[foo, 42, "))
+    );
+  }
+
+  @Test
+  public void carrierMetadataToString() throws Throwable {
+    var methodType = MethodType.methodType(Object.class, String.class, double.class, float.class, boolean.class, char.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(methodType);
+    var carrier = Carrier.constructor(methodType).invokeExact("x", 1.5, 2.5f, true, 'c');
+    assertEquals("Carrier[x, 1.5, 2.5, true, c]", carrierMetadata.toString(carrier));
+  }
+
+  @Test
+  public void typedCarrierToString() throws Throwable {
+    var cache = new Carrier.CarrierCache(true, Carrier.ShapePolicy.EXACT, true);
+    var methodType = MethodType.methodType(Object.class, String.class, double.class, float.class, boolean.class, char.class);
+    var carrier = cache.findCarrierHandles(methodType, false).constructor().invokeExact("x", 1.5, 2.5f, true, 'c');
+    assertEquals("Carrier[x, 1.5, 2.5, true, c]", carrier.toString());
+  }
+
+  @Test
+  public void carrierEqualsRawDouble() throws Throwable {
+    var methodType = MethodType.methodType(Object.class, double.class);
+    var constructor = Carrier.constructor(methodType);
+    assertAll(
+        () -> assertEquals(constructor.invokeExact(Double.NaN), constructor.invokeExact(Double.NaN)),
+        () -> assertNotEquals(constructor.invokeExact(0.0), constructor.invokeExact(-0.0))
+    );
+  }
+
+  @Test
+  public void carrierLargeEqualsHashCode() throws Throwable {
+    var ptypes = new Class<?>[40];
+    Arrays.fill(ptypes, int.class);
+    ptypes[0] = String.class;
+    ptypes[1] = long.class;
+    var methodType = MethodType.methodType(Object.class, ptypes);
+    var values = new Object[40];
+    Arrays.fill(values, 7);
+    values[0] = "foo";
+    values[1] = 42L;
+    var constructor = Carrier.constructor(methodType);
+    var carrier = constructor.invokeWithArguments(values);
+    var same = constructor.invokeWithArguments(values);
+    values[39] = 8;
+    var other = constructor.invokeWithArguments(values);
+    assertAll(
+        () -> assertEquals(carrier, same),
+        () -> assertEquals(carrier.hashCode(), same.hashCode()),
+        () -> assertNotEquals(carrier, other),
+        () -> assertTrue(carrier.toString().contains("foo"))
+    );
+  }
+
+  @Test
+  public void mutableCarrierIdentityEqualsHashCode() throws Throwable {
+    var smallType = MethodType.methodType(Object.class, String.class, int.class);
+    var largeTypes = new Class<?>[40];
+    Arrays.fill(largeTypes, int.class);
+    largeTypes[0] = String.class;
+    for(var methodType : List.of(smallType, MethodType.methodType(Object.class, largeTypes))) {
+      var values = new Object[methodType.parameterCount()];
+      Arrays.fill(values, 7);
+      values[0] = "foo";
+      var constructor = Carrier.mutableConstructor(methodType);
+      var carrier = constructor.invokeWithArguments(values);
+      var same = constructor.invokeWithArguments(values);
+      var hashCode = carrier.hashCode();
+      Carrier.mutableSetters(methodType)[0].invoke(carrier, "bar");
+      assertAll(
+          () -> assertEquals(carrier, carrier),
+          () -> assertNotEquals(carrier, same),
+          () -> assertEquals(hashCode, carrier.hashCode()),
+          () -> assertTrue(carrier.toString().contains("bar"))
+      );
+    }
+  }
+
+  @Test
+  public void typedCarrierEquals() throws Throwable {
+    var cache = new Carrier.CarrierCache(true, Carrier.ShapePolicy.EXACT, true);
+    var methodType = MethodType.methodType(Object.class, float.class, String.class);
+    var constructor = cache.findCarrierHandles(methodType, false).constructor();
+    var carrier = constructor.invokeExact(1.5f, "foo");
+    var same = constructor.invokeExact(1.5f, "foo");
+    assertAll(
+        () -> assertEquals(carrier, same),
+        () -> assertEquals(carrier.hashCode(), same.hashCode()),
+        () -> assertNotEquals(carrier, constructor.invokeExact(1.5f, "bar"))
+    );
+  }
+}
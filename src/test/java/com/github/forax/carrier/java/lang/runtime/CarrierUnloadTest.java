@@ -0,0 +1,149 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.Mode;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.*;
+
+public class CarrierUnloadTest {
+  record Point(int x, int y) {}
+
+  // a class loaded by its own class loader, like a plugin,
+  // with a public constructor and a static method lookup() that returns its lookup
+  private static Class<?> newPluginClass() {
+    var writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    writer.visit(V17, ACC_PUBLIC | ACC_SUPER, "Plugin", null, "java/lang/Object", null);
+    var init = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    init.visitCode();
+    init.visitVarInsn(ALOAD, 0);
+    init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    init.visitInsn(RETURN);
+    init.visitMaxs(-1, -1);
+    init.visitEnd();
+    var lookup = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "lookup", "()" + Type.getDescriptor(Lookup.class), null, null);
+    lookup.visitCode();
+    lookup.visitMethodInsn(INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup", "()" + Type.getDescriptor(Lookup.class), false);
+    lookup.visitInsn(ARETURN);
+    lookup.visitMaxs(-1, -1);
+    lookup.visitEnd();
+    writer.visitEnd();
+    var bytes = writer.toByteArray();
+    var loader = new ClassLoader(CarrierUnloadTest.class.getClassLoader()) {
+      @Override
+      protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (!name.equals("Plugin")) {
+          throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+      }
+    };
+    try {
+      return loader.loadClass("Plugin");
+    } catch (ClassNotFoundException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // deploy a plugin, match a value then forget the plugin
+  private static WeakReference<Class<?>> deployAndMatch() throws Throwable {
+    var pluginLookup = MethodHandles.lookup().in(newPluginClass());
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, long.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(pluginLookup, carrierType);
+    assertSame(carrierMetadata, CarrierMetadata.fromCarrier(pluginLookup, carrierType));
+
+    var pattern = new RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(int.class));
+    var matcher = pattern.toMatcher(MethodHandles.lookup(), Object.class, new Pattern.BindingAllocator(carrierMetadata, 0), null);
+    var carrier = matcher.invokeExact((Object) new Point(1, 2), carrierMetadata.empty());
+    assertEquals(1, (int) carrierMetadata.accessor(0).invokeExact(carrier));
+    assertEquals(2, (int) carrierMetadata.accessor(1).invokeExact(carrier));
+
+    var carrierClass = carrier.getClass();
+    assertNotSame(carrierClass, Carrier.constructor(carrierType).invoke(1, 2, 3L).getClass());
+    return new WeakReference<>(carrierClass);
+  }
+
+  // run the GC until the referent is collected
+  private static void awaitCollected(WeakReference<?> ref) throws InterruptedException {
+    for(var i = 0; i < 100 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(ref.get());
+  }
+
+  @Test
+  public void carrierClassUnloadedAfterRedeploy() throws Throwable {
+    awaitCollected(deployAndMatch());
+  }
+
+  // use the global carrier caches with a plugin type then forget the plugin
+  private static WeakReference<ClassLoader> deployGlobalCarrier() throws Throwable {
+    var pluginClass = newPluginClass();
+    var carrierType = MethodType.methodType(Object.class, int.class, pluginClass);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    assertSame(carrierMetadata, CarrierMetadata.fromCarrier(carrierType));
+    var carrier = carrierMetadata.with(0).invoke(42, carrierMetadata.empty());
+    assertEquals(42, (int) carrierMetadata.accessor(0).invokeExact(carrier));
+    assertNull(carrierMetadata.accessor(1).invoke(carrier));
+
+    var scratchMetadata = CarrierMetadata.fromScratchCarrier(carrierType);
+    var scratch = scratchMetadata.with(0).invoke(42, scratchMetadata.empty());
+    assertEquals(42, (int) scratchMetadata.accessor(0).invokeExact(scratch));
+    return new WeakReference<>(pluginClass.getClassLoader());
+  }
+
+  @Test
+  public void pluginUnloadedAfterGlobalCarrier() throws Throwable {
+    awaitCollected(deployGlobalCarrier());
+  }
+
+  // match a plugin instance with Pattern.toMatcher() using scoped carriers and with the switch bootstraps
+  // then forget the plugin
+  private static WeakReference<ClassLoader> deployAndMatchPlugin() throws Throwable {
+    var pluginClass = newPluginClass();
+    var pluginLookup = (Lookup) pluginClass.getMethod("lookup").invoke(null);
+    var plugin = pluginClass.getConstructor().newInstance();
+    var carrierType = MethodType.methodType(Object.class, int.class, pluginClass);
+
+    var pattern = new ResultPattern(0, new TypePattern(pluginClass));
+    var carrierMetadata = CarrierMetadata.fromCarrier(pluginLookup, carrierType);
+    var matcher = pattern.toMatcher(pluginLookup, Object.class, carrierMetadata, 1, false, Mode.COMBINATOR);
+    var carrier = matcher.invoke(plugin, carrierMetadata.empty());
+    assertEquals(0, (int) carrierMetadata.accessor(0).invoke(carrier));
+    assertSame(plugin, carrierMetadata.accessor(1).invoke(carrier));
+
+    var match = PatternBootstraps.match(pluginLookup, "match",
+        MethodType.methodType(Object.class, Object.class), "?", "LPlugin;").dynamicInvoker();
+    var component = PatternBootstraps.component(pluginLookup, "component",
+        MethodType.methodType(Object.class, Object.class), 1, carrierType).dynamicInvoker();
+    assertSame(plugin, component.invoke(match.invoke(plugin)));
+    return new WeakReference<>(pluginClass.getClassLoader());
+  }
+
+  @Test
+  public void pluginUnloadedAfterMatch() throws Throwable {
+    awaitCollected(deployAndMatchPlugin());
+  }
+
+  @Test
+  public void scopedCarrierSharedByScope() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, String.class);
+    var constructor = Carrier.constructor(lookup, carrierType);
+    var carrier = constructor.invokeExact("hello");
+    assertEquals("hello", (String) Carrier.components(lookup, carrierType)[0].invokeExact(carrier));
+    assertSame(constructor, Carrier.constructor(lookup, carrierType));
+  }
+}
@@ -0,0 +1,67 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ConstantPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+// Matching a command name against a switch of N string constants,
+// the last case (hit) and a name that is not a case (miss)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ConstantDispatchBenchmark {
+  @Param({"5", "50", "200"})
+  public int cases;
+
+  private MethodHandle op;
+  private MethodHandle switchResult;
+  private String hit;
+  private String miss;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    var pattern = (Pattern) new ResultPattern(cases - 1, new ConstantPattern("command" + (cases - 1)));
+    for(var i = cases - 1; --i >= 0;) {
+      pattern = new OrPattern(new ResultPattern(i, new ConstantPattern("command" + i)), pattern);
+    }
+    var carrierType = MethodType.methodType(Object.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var matcher = pattern.toMatcher(MethodHandles.lookup(), String.class, carrierType, 1, false);
+    op = Matcher.of(carrierMetadata.empty(), matcher);
+    switchResult = Matcher.switchResult(carrierMetadata).asType(MethodType.methodType(int.class, Object.class));
+    // not interned, so the identity fast path does not apply
+    hit = new String("command" + (cases - 1));
+    miss = new String("command" + cases);
+  }
+
+  @Benchmark
+  public int hit() throws Throwable {
+    return (int) switchResult.invokeExact((Object) op.invokeExact(hit));
+  }
+
+  @Benchmark
+  public int miss() throws Throwable {
+    return (int) switchResult.invokeExact((Object) op.invokeExact(miss));
+  }
+}
@@ -0,0 +1,95 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ConstantPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Matching 1 000 segments against a switch of deep record patterns,
+//   case Segment(Point(Coord(0), Coord y), Point end) -> 0
+//   ...
+//   case Segment(Point(Coord(n - 1), Coord y), Point end) -> n - 1
+//   case Object o -> n
+// the linear lowering (COMBINATOR) versus the decision tree (DECISION_TREE)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DecisionTreeBenchmark {
+  public record Coord(int value) {}
+  public record Point(Coord x, Coord y) {}
+  public record Segment(Point start, Point end) {}
+
+  @Param({"4", "8", "16"})
+  public int cases;
+
+  @Param({"COMBINATOR", "DECISION_TREE"})
+  public String mode;
+
+  private MethodHandle op;
+  private MethodHandle switchResult;
+  private Object[] values;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    var pattern = (Pattern) new ResultPattern(cases, new TypePattern(Object.class));
+    for(var i = cases; --i >= 0;) {
+      pattern = new OrPattern(
+          new ResultPattern(i,
+              new RecordPattern(Segment.class,
+                  new RecordPattern(Point.class,
+                      new RecordPattern(Coord.class, new ConstantPattern(i)),
+                      new TypePattern(Coord.class)),
+                  new TypePattern(Point.class))),
+          pattern);
+    }
+    var bindingTypes = new ArrayList<Class<?>>();
+    bindingTypes.add(int.class);
+    for(var i = 0; i < cases; i++) {
+      bindingTypes.add(Coord.class);
+      bindingTypes.add(Point.class);
+    }
+    bindingTypes.add(Object.class);
+    var carrierType = MethodType.methodType(Object.class, bindingTypes);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var matcher = pattern.toMatcher(MethodHandles.lookup(), Object.class, carrierType, 1, false, Pattern.Mode.valueOf(mode));
+    op = Matcher.of(carrierMetadata.empty(), matcher).asType(MethodType.methodType(Object.class, Object.class));
+    switchResult = Matcher.switchResult(carrierMetadata).asType(MethodType.methodType(int.class, Object.class));
+    values = new Object[1_000];
+    for(var i = 0; i < values.length; i++) {
+      var x = (i * 7919) % (cases + 1);
+      values[i] = new Segment(new Point(new Coord(x), new Coord(i)), new Point(new Coord(i), new Coord(x)));
+    }
+  }
+
+  @Benchmark
+  public int match() throws Throwable {
+    var sum = 0;
+    for(var value: values) {
+      sum += (int) switchResult.invokeExact((Object) op.invokeExact(value));
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,90 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.TypeDispatchBenchmark.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+// Matching 1 000 values against a switch of 50 record patterns when the values are instances
+// of only a few classes (the last cases of the switch)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class InlineCacheBenchmark {
+  private static final int CASES = 50;
+
+  @Param({"1", "2", "8"})
+  public int classes;
+
+  @Param({"COMBINATOR", "DISPATCH", "INLINE_CACHE"})
+  public String mode;
+
+  private MethodHandle op;
+  private MethodHandle switchResult;
+  private Object[] values;
+
+  @Setup(Level.Trial)
+  public void setup() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    byte[] bytes;
+    var name = Message.class.getName();
+    try(var input = Message.class.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+      bytes = input.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    var messageClasses = new Class<?>[CASES];
+    var messages = new Object[CASES];
+    for(var i = 0; i < CASES; i++) {
+      var hiddenLookup = lookup.defineHiddenClass(bytes, true);
+      messageClasses[i] = hiddenLookup.lookupClass();
+      messages[i] = hiddenLookup.findConstructor(messageClasses[i], MethodType.methodType(void.class)).invoke();
+    }
+
+    var pattern = (Pattern) new ResultPattern(CASES - 1, new RecordPattern(messageClasses[CASES - 1]));
+    for(var i = CASES - 1; --i >= 0;) {
+      pattern = new OrPattern(new ResultPattern(i, new RecordPattern(messageClasses[i])), pattern);
+    }
+    var carrierType = MethodType.methodType(Object.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var matcher = pattern.toMatcher(lookup, Object.class, carrierType, 1, false, Pattern.Mode.valueOf(mode));
+    op = Matcher.of(carrierMetadata.empty(), matcher).asType(MethodType.methodType(Object.class, Object.class));
+    switchResult = Matcher.switchResult(carrierMetadata).asType(MethodType.methodType(int.class, Object.class));
+    values = new Object[1_000];
+    for(var i = 0; i < values.length; i++) {
+      values[i] = messages[CASES - 1 - (i % classes)];
+    }
+  }
+
+  @Benchmark
+  public int match() throws Throwable {
+    var sum = 0;
+    for(var value: values) {
+      sum += (int) switchResult.invokeExact((Object) op.invokeExact(value));
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,61 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+
+// Cost of linking switch sites that share the same carrier type when all the threads link at the same time
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class LinkBenchmark {
+  record Point(int x, int y) {}
+  record Rectangle(Point p1, Point p2) {}
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodType CARRIER_TYPE = methodType(Object.class, int.class, int.class, int.class, int.class, int.class, Point.class);
+  private static final Pattern PATTERN = new OrPattern(
+      new ResultPattern(0,
+          new RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(int.class))),
+      new ResultPattern(1,
+          new RecordPattern(Rectangle.class,
+              new RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(int.class)),
+              new TypePattern(Point.class))));
+
+  @Benchmark
+  public MethodHandle linkSwitch() {
+    return PATTERN.toMatcher(LOOKUP, Object.class, CARRIER_TYPE, 1, false);
+  }
+
+  @Benchmark
+  public MethodHandle withers() {
+    var carrierMetadata = CarrierMetadata.fromCarrier(CARRIER_TYPE);
+    carrierMetadata.with(0);
+    carrierMetadata.with(1);
+    carrierMetadata.with(2);
+    return carrierMetadata.with(3);
+  }
+}
@@ -371,4 +371,89 @@ public class MatcherTest {
     assertNotNull(carrier);
     assertEquals(42, (int) carrierMetadata.accessor(0).invokeExact(carrier));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void scratchWith() throws Throwable {
+    var carrierMetadata = CarrierMetadata.fromScratchCarrier(methodType(Object.class, int.class));
+    var empty = carrierMetadata.newEmpty();
+
+    var mh = carrierMetadata.with(0);
+    var carrier = mh.invokeExact(666, empty);
+    assertSame(empty, carrier);
+    assertEquals(666, (int) carrierMetadata.accessor(0).invokeExact(carrier));
+  }
+
+  @Test
+  public void ofThreadLocal() throws Throwable {
+    record Point(int x, int y) {}
+    var carrierType = methodType(Object.class, int.class, int.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromScratchCarrier(carrierType);
+
+    var pattern = new Pattern.ResultPattern(7,
+        new Pattern.RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(int.class)));
+    var matcher = pattern.toMatcher(MethodHandles.lookup(), Object.class, new Pattern.BindingAllocator(carrierMetadata, 1), null);
+    var op = Matcher.ofThreadLocal(carrierMetadata, matcher);
+
+    var carrier1 = op.invokeExact((Object) new Point(1, 2));
+    assertEquals(7, (int) carrierMetadata.accessor(0).invokeExact(carrier1));
+    assertEquals(1, (int) carrierMetadata.accessor(1).invokeExact(carrier1));
+    assertEquals(2, (int) carrierMetadata.accessor(2).invokeExact(carrier1));
+
+    var carrier2 = op.invokeExact((Object) new Point(3, 4));
+    assertSame(carrier1, carrier2);
+    assertEquals(3, (int) carrierMetadata.accessor(1).invokeExact(carrier2));
+    assertEquals(4, (int) carrierMetadata.accessor(2).invokeExact(carrier2));
+
+    var carrier3 = op.invokeExact((Object) "hello");
+    assertNull(carrier3);
+
+    var otherThreadCarrier = new Object[1];
+    var thread = new Thread(() -> {
+      try {
+        otherThreadCarrier[0] = op.invokeExact((Object) new Point(5, 6));
+      } catch (Throwable e) {
+        throw new AssertionError(e);
+      }
+    });
+    thread.start();
+    thread.join();
+    assertNotSame(carrier1, otherThreadCarrier[0]);
+    assertEquals(3, (int) carrierMetadata.accessor(1).invokeExact(carrier1));
+  }
+
+  @Test
+  public void carrierMetadataShared() throws Throwable {
+    var carrierType = methodType(Object.class, int.class, String.class, long.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    assertSame(carrierMetadata, CarrierMetadata.fromCarrier(carrierType));
+    assertSame(carrierMetadata, CarrierMetadata.fromCarrier(carrierType.changeReturnType(void.class)));
+    assertSame(carrierMetadata.empty(), CarrierMetadata.fromCarrier(carrierType).empty());
+  }
+
+  @Test
+  public void carrierMetadataWithConcurrent() throws Throwable {
+    var carrierType = methodType(Object.class, int.class, String.class, double.class, char.class);
+    var withers = new MethodHandle[8][];
+    var threads = new Thread[withers.length];
+    for(var i = 0; i < threads.length; i++) {
+      var index = i;
+      threads[i] = new Thread(() -> {
+        var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+        withers[index] = new MethodHandle[] {
+            carrierMetadata.with(0), carrierMetadata.with(1), carrierMetadata.with(2), carrierMetadata.with(3)
+        };
+      });
+    }
+    for(var thread: threads) {
+      thread.start();
+    }
+    for(var thread: threads) {
+      thread.join();
+    }
+    for(var i = 1; i < withers.length; i++) {
+      for(var j = 0; j < 4; j++) {
+        assertSame(withers[0][j], withers[i][j]);
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ConstantPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Matching 1 000 values against a switch that alternates record patterns and type patterns,
+//   case Labeled(List labels, 0) -> 0
+//   case String s -> 1
+//   case Labeled(List labels, 1) -> 2
+//   case Integer i -> 3
+//   case Labeled(List labels, 2) -> 4
+//   case Object o -> 5
+// the accessor labels() does a defensive copy, it is called by each record pattern with the linear lowering (COMBINATOR)
+// and once per match with the decision tree (DECISION_TREE)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MemoizedAccessorBenchmark {
+  public record Labeled(List<String> labels, int kind) {
+    @Override
+    public List<String> labels() {
+      return new ArrayList<>(labels);
+    }
+  }
+
+  @Param({"COMBINATOR", "DECISION_TREE"})
+  public String mode;
+
+  private MethodHandle op;
+  private MethodHandle switchResult;
+  private Object[] values;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    var pattern = (Pattern) new ResultPattern(5, new TypePattern(Object.class));
+    for(var i = 3; --i >= 0;) {
+      if (i != 2) {
+        pattern = new OrPattern(new ResultPattern(2 * i + 1, new TypePattern(i == 0? String.class: Integer.class)), pattern);
+      }
+      pattern = new OrPattern(
+          new ResultPattern(2 * i, new RecordPattern(Labeled.class, new TypePattern(List.class), new ConstantPattern(i))),
+          pattern);
+    }
+    var carrierType = MethodType.methodType(Object.class,
+        int.class, List.class, String.class, List.class, Integer.class, List.class, Object.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var matcher = pattern.toMatcher(MethodHandles.lookup(), Object.class, carrierType, 1, false, Pattern.Mode.valueOf(mode));
+    op = Matcher.of(carrierMetadata.empty(), matcher).asType(MethodType.methodType(Object.class, Object.class));
+    switchResult = Matcher.switchResult(carrierMetadata).asType(MethodType.methodType(int.class, Object.class));
+    var labels = List.of("a", "b", "c", "d", "e", "f", "g", "h");
+    values = new Object[1_000];
+    for(var i = 0; i < values.length; i++) {
+      values[i] = switch (i % 5) {
+        case 0 -> "hello";
+        case 1 -> 42;
+        default -> new Labeled(labels, i % 4);
+      };
+    }
+  }
+
+  @Benchmark
+  public int match() throws Throwable {
+    var sum = 0;
+    for(var value: values) {
+      sum += (int) switchResult.invokeExact((Object) op.invokeExact(value));
+    }
+    return sum;
+  }
+}
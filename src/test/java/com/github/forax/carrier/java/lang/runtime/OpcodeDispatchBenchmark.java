@@ -0,0 +1,69 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ConstantPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+// Decoding 1 000 int opcodes with a switch of N int constants,
+// dense opcodes (0, 1, 2, ...) or sparse opcodes (0, 1000, 2000, ...)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class OpcodeDispatchBenchmark {
+  @Param({"10", "100", "200"})
+  public int cases;
+
+  @Param({"1", "1000"})
+  public int stride;
+
+  private MethodHandle op;
+  private MethodHandle switchResult;
+  private int[] opcodes;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    var pattern = (Pattern) new ResultPattern(cases - 1, new ConstantPattern((cases - 1) * stride));
+    for(var i = cases - 1; --i >= 0;) {
+      pattern = new OrPattern(new ResultPattern(i, new ConstantPattern(i * stride)), pattern);
+    }
+    var carrierType = MethodType.methodType(Object.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var matcher = pattern.toMatcher(MethodHandles.lookup(), int.class, carrierType, 1, false);
+    op = Matcher.of(carrierMetadata.empty(), matcher);
+    switchResult = Matcher.switchResult(carrierMetadata).asType(MethodType.methodType(int.class, Object.class));
+    opcodes = new int[1_000];
+    for(var i = 0; i < opcodes.length; i++) {
+      opcodes[i] = ((i * 7919) % cases) * stride;
+    }
+  }
+
+  @Benchmark
+  public int decode() throws Throwable {
+    var sum = 0;
+    for(var opcode: opcodes) {
+      sum += (int) switchResult.invokeExact((Object) op.invokeExact(opcode));
+    }
+    return sum;
+  }
+}
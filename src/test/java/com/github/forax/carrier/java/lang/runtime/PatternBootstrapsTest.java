@@ -0,0 +1,147 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.*;
+
+public class PatternBootstrapsTest {
+  record Point(int x, int y) {}
+  record Rectangle(Point p1, Point p2) {}
+  record Box(Object o) {}
+
+  private static final Handle MATCH = new Handle(H_INVOKESTATIC, Type.getInternalName(PatternBootstraps.class), "match",
+      methodType(CallSite.class, Lookup.class, String.class, MethodType.class, String.class, String.class).toMethodDescriptorString(), false);
+  private static final Handle COMPONENT = new Handle(H_INVOKESTATIC, Type.getInternalName(PatternBootstraps.class), "component",
+      methodType(CallSite.class, Lookup.class, String.class, MethodType.class, int.class, MethodType.class).toMethodDescriptorString(), false);
+
+  // static int eval(Object value) {
+  //   return switch(value) {
+  //     case Point(int a, int b) -> a + b;
+  //     case Rectangle(Point(int a, int _), Point p) -> a + p.y;
+  //     default -> -1;
+  //   };
+  // }
+  private static Class<?> generateExample() throws IllegalAccessException {
+    var carrierType = Type.getMethodType(methodType(Object.class, int.class, int.class, int.class, int.class, int.class, Point.class).toMethodDescriptorString());
+    var writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    writer.visit(V17, ACC_PUBLIC | ACC_SUPER, Type.getInternalName(PatternBootstrapsTest.class) + "$Example", null, "java/lang/Object", null);
+    var mv = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "eval", "(Ljava/lang/Object;)I", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitInvokeDynamicInsn("match", "(Ljava/lang/Object;)Ljava/lang/Object;", MATCH, "Point(??)|Rectangle(Point(?_)?)", "IIIILPoint;");
+    mv.visitVarInsn(ASTORE, 1);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitInvokeDynamicInsn("component", "(Ljava/lang/Object;)I", COMPONENT, 0, carrierType);
+    var case0 = new Label();
+    var case1 = new Label();
+    var otherwise = new Label();
+    mv.visitTableSwitchInsn(0, 1, otherwise, case0, case1);
+
+    mv.visitLabel(case0);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitInvokeDynamicInsn("component", "(Ljava/lang/Object;)I", COMPONENT, 1, carrierType);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitInvokeDynamicInsn("component", "(Ljava/lang/Object;)I", COMPONENT, 2, carrierType);
+    mv.visitInsn(IADD);
+    mv.visitInsn(IRETURN);
+
+    mv.visitLabel(case1);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitInvokeDynamicInsn("component", "(Ljava/lang/Object;)I", COMPONENT, 3, carrierType);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitInvokeDynamicInsn("component", "(Ljava/lang/Object;)" + Type.getDescriptor(Point.class), COMPONENT, 5, carrierType);
+    mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Point.class), "y", "()I", false);
+    mv.visitInsn(IADD);
+    mv.visitInsn(IRETURN);
+
+    mv.visitLabel(otherwise);
+    mv.visitInsn(ICONST_M1);
+    mv.visitInsn(IRETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+    writer.visitEnd();
+    return MethodHandles.lookup().defineClass(writer.toByteArray());
+  }
+
+  @Test
+  public void generatedSwitch() throws Throwable {
+    var example = generateExample();
+    var eval = MethodHandles.lookup().findStatic(example, "eval", methodType(int.class, Object.class));
+    assertAll(
+        () -> assertEquals(3, (int) eval.invokeExact((Object) new Point(1, 2))),
+        () -> assertEquals(5, (int) eval.invokeExact((Object) new Rectangle(new Point(1, 2), new Point(3, 4)))),
+        () -> assertEquals(-1, (int) eval.invokeExact((Object) new Rectangle(null, new Point(3, 4)))),
+        () -> assertEquals(-1, (int) eval.invokeExact((Object) "hello")),
+        () -> assertEquals(-1, (int) eval.invokeExact((Object) null))
+    );
+  }
+
+  @Test
+  public void matchAndComponent() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var match = PatternBootstraps.match(lookup, "match", methodType(Object.class, Object.class),
+        "Box(?|?)|?", "Ljava/lang/String;Ljava/lang/Integer;Ljava/lang/Object;");
+    var carrierType = methodType(Object.class, int.class, String.class, Integer.class, Object.class);
+    var index = PatternBootstraps.component(lookup, "component", methodType(int.class, Object.class), 0, carrierType).dynamicInvoker();
+    var string = PatternBootstraps.component(lookup, "component", methodType(String.class, Object.class), 1, carrierType).dynamicInvoker();
+    var integer = PatternBootstraps.component(lookup, "component", methodType(Integer.class, Object.class), 2, carrierType).dynamicInvoker();
+    var matcher = match.dynamicInvoker();
+
+    var carrier1 = matcher.invokeExact((Object) new Box("hello"));
+    var carrier2 = matcher.invokeExact((Object) new Box(42));
+    var carrier3 = matcher.invokeExact((Object) new Box(4.0));
+    assertAll(
+        () -> assertEquals(0, (int) index.invokeExact(carrier1)),
+        () -> assertEquals("hello", (String) string.invokeExact(carrier1)),
+        () -> assertEquals(0, (int) index.invokeExact(carrier2)),
+        () -> assertEquals(42, (Integer) integer.invokeExact(carrier2)),
+        () -> assertEquals(1, (int) index.invokeExact(carrier3))
+    );
+  }
+
+  @Test
+  public void matchPrimitiveReceiver() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var match = PatternBootstraps.match(lookup, "match", methodType(Object.class, long.class), "?", "J").dynamicInvoker();
+    var carrierType = methodType(Object.class, int.class, long.class);
+    var component = PatternBootstraps.component(lookup, "component", methodType(long.class, Object.class), 1, carrierType).dynamicInvoker();
+    assertEquals(42L, (long) component.invokeExact(match.invokeExact(42L)));
+  }
+
+  @Test
+  public void matchNoMatch() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var match = PatternBootstraps.match(lookup, "match", methodType(Object.class, Object.class), "Point(??)", "II").dynamicInvoker();
+    var index = PatternBootstraps.component(lookup, "component", methodType(int.class, Object.class), 0,
+        methodType(Object.class, int.class, int.class, int.class)).dynamicInvoker();
+    assertEquals(-1, (int) index.invokeExact(match.invokeExact((Object) "hello")));
+  }
+
+  @Test
+  public void matchInvalidDescriptors() {
+    var lookup = MethodHandles.lookup();
+    var type = methodType(Object.class, Object.class);
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> PatternBootstraps.match(lookup, "match", type, "Point(??)", "I")),
+        () -> assertThrows(IllegalArgumentException.class, () -> PatternBootstraps.match(lookup, "match", type, "Point(??)", "III")),
+        () -> assertThrows(IllegalArgumentException.class, () -> PatternBootstraps.match(lookup, "match", type, "Point(?)", "I")),
+        () -> assertThrows(IllegalArgumentException.class, () -> PatternBootstraps.match(lookup, "match", type, "Point(??", "II")),
+        () -> assertThrows(IllegalArgumentException.class, () -> PatternBootstraps.match(lookup, "match", type, "Point(??))", "II")),
+        () -> assertThrows(IllegalArgumentException.class, () -> PatternBootstraps.match(lookup, "match", type, "?", "Q")),
+        () -> assertThrows(IllegalArgumentException.class, () -> PatternBootstraps.match(lookup, "match", type, "java.lang.String()", "")),
+        () -> assertThrows(TypeNotPresentException.class, () -> PatternBootstraps.match(lookup, "match", type, "Unknown()", "")),
+        () -> assertThrows(IllegalArgumentException.class, () -> PatternBootstraps.match(lookup, "match", methodType(int.class, Object.class), "?", "I"))
+    );
+  }
+}
@@ -0,0 +1,108 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatternStreamsTest {
+  record Point(int x, int y) {}
+  record Measure(String name, double value, long timestamp) {}
+
+  private static PatternStreams pointOrString() {
+    var pattern = new OrPattern(
+        new ResultPattern(0,
+            new RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(int.class))),
+        new ResultPattern(1,
+            new TypePattern(String.class)));
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, int.class, String.class);
+    return PatternStreams.of(MethodHandles.lookup(), pattern, Object.class, carrierType, 1);
+  }
+
+  private static List<Object> values() {
+    return IntStream.range(0, 1_000)
+        .mapToObj(i -> switch (i % 3) {
+          case 0 -> new Point(i, 2 * i);
+          case 1 -> "" + i;
+          default -> i;
+        })
+        .toList();
+  }
+
+  @Test
+  public void mapMulti() {
+    var streams = pointOrString();
+    var carriers = values().stream().mapMulti(streams.mapMulti()).toList();
+    assertEquals(667, carriers.size());
+  }
+
+  @Test
+  public void mapMultiBinding() {
+    var streams = pointOrString();
+    var strings = values().stream().mapMulti(streams.mapMulti(3)).filter(s -> s != null).toList();
+    assertEquals(333, strings.size());
+    assertEquals("1", strings.get(0));
+  }
+
+  @Test
+  public void mapMultiToIntParallel() {
+    var streams = pointOrString();
+    var sum = values().parallelStream()
+        .filter(Point.class::isInstance)
+        .mapMultiToInt(streams.mapMultiToInt(2))
+        .sum();
+    assertEquals(IntStream.range(0, 1_000).filter(i -> i % 3 == 0).map(i -> 2 * i).sum(), sum);
+  }
+
+  @Test
+  public void mapMultiToLongAndDouble() {
+    var pattern = new RecordPattern(Measure.class,
+        new TypePattern(String.class), new TypePattern(double.class), new TypePattern(long.class));
+    var carrierType = MethodType.methodType(Object.class, String.class, double.class, long.class);
+    var streams = PatternStreams.of(MethodHandles.lookup(), pattern, Object.class, carrierType, 0);
+    var measures = List.<Object>of(new Measure("a", 1.5, 10L), "skip", new Measure("b", 2.5, 20L));
+    assertAll(
+        () -> assertEquals(4.0, measures.stream().mapMultiToDouble(streams.mapMultiToDouble(1)).sum()),
+        () -> assertEquals(30L, measures.stream().mapMultiToLong(streams.mapMultiToLong(2)).sum()),
+        () -> assertThrows(IllegalArgumentException.class, () -> streams.mapMultiToInt(0))
+    );
+  }
+
+  @Test
+  public void groupingByCaseParallel() {
+    var streams = pointOrString();
+    Map<Integer, Long> counts = values().parallelStream()
+        .collect(streams.groupingByCase(index -> Collectors.counting()));
+    assertEquals(Map.of(0, 334L, 1, 333L), counts);
+  }
+
+  @Test
+  public void groupingByCaseDifferentDownstreams() throws Throwable {
+    var streams = pointOrString();
+    var accessor = streams.carrierMetadata().accessor(3);
+    Map<Integer, Object> results = values().stream()
+        .collect(streams.groupingByCase(index -> switch (index) {
+          case 0 -> Collectors.counting();
+          case 1 -> Collectors.mapping(carrier -> {
+            try {
+              return (String) accessor.invokeExact(carrier);
+            } catch (Throwable e) {
+              throw new AssertionError(e);
+            }
+          }, Collectors.joining(",", "[", "]"));
+          default -> throw new AssertionError();
+        }));
+    assertEquals(334L, results.get(0));
+    assertTrue(((String) results.get(1)).startsWith("[1,4,7,"));
+  }
+}
@@ -2,8 +2,10 @@ package com.github.forax.carrier.java.lang.runtime;
 
 import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
 import com.github.forax.carrier.java.lang.runtime.Pattern.ConstantPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.Mode;
 import com.github.forax.carrier.java.lang.runtime.Pattern.NullPattern;
 import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RangePattern;
 import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
 import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
 import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
@@ -237,4 +239,961 @@ public class PatternTest {
     var carrier3 = matcher.invokeExact((String) null, empty);
     assertNull(carrier3);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void singleAllocationRecordPattern() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, Point3.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var empty = carrierMetadata.empty();
+
+    record Rectangle(Point3 upperLeft, Point3 lowerRight) {}
+
+    var pattern = new RecordPattern(Rectangle.class,
+        new RecordPattern(Point3.class,
+            new TypePattern(int.class),
+            new ConstantPattern(0),
+            new TypePattern(int.class)),
+        new TypePattern(Point3.class));
+    var matcher = pattern.toMatcher(lookup, Object.class, carrierType, 0, false, Mode.SINGLE_ALLOCATION);
+
+    // match
+    var carrier1 = matcher.invokeExact((Object) new Rectangle(new Point3(1, 0, 2), new Point3(3, 4, 5)), empty);
+    assertNotNull(carrier1);
+    assertEquals(1, (int) carrierMetadata.accessor(0).invokeExact(carrier1));
+    assertEquals(2, (int) carrierMetadata.accessor(1).invokeExact(carrier1));
+    assertEquals(new Point3(3, 4, 5), (Point3) carrierMetadata.accessor(2).invokeExact(carrier1));
+
+    // do not match
+    var carrier2 = matcher.invokeExact((Object) new Rectangle(new Point3(1, 1, 2), new Point3(3, 4, 5)), empty);
+    assertNull(carrier2);
+
+    var carrier3 = matcher.invokeExact((Object) "hello", empty);
+    assertNull(carrier3);
+
+    var carrier4 = matcher.invokeExact((Object) new Rectangle(null, null), empty);
+    assertNull(carrier4);
+  }
+
+  record Point3(int x, int y, int z) {}
+
+  @Test
+  public void singleAllocationRecordPatternEmitNull() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var empty = carrierMetadata.empty();
+
+    record Point(int x, int y) {}
+    record Box(Point point) {}
+
+    var pattern = new RecordPattern(Box.class,
+        new RecordPattern(Point.class,
+            new TypePattern(int.class),
+            new TypePattern(int.class)));
+    var matcher = pattern.toMatcher(lookup, Box.class, carrierType, 0, true, Mode.SINGLE_ALLOCATION);
+
+    var carrier = matcher.invokeExact(new Box(new Point(1, 2)), empty);
+    assertEquals(1, (int) carrierMetadata.accessor(0).invokeExact(carrier));
+    assertEquals(2, (int) carrierMetadata.accessor(1).invokeExact(carrier));
+
+    var e = assertThrows(NullPointerException.class,  () -> {
+      var carrier2 = matcher.invokeExact(new Box(null), empty);
+    });
+    assertTrue(e.getMessage().endsWith("Point^"));
+  }
+
+  @Test
+  public void singleAllocationOrPattern() throws Throwable {
+    record Box(Object o) {}
+
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, String.class, Integer.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var empty = carrierMetadata.empty();
+
+    var pattern = new OrPattern(
+        new ResultPattern(1,
+            new RecordPattern(Box.class,
+                new TypePattern(String.class))),
+        new ResultPattern(2,
+            new RecordPattern(Box.class,
+                new TypePattern(Integer.class))));
+    var matcher = pattern.toMatcher(lookup, Box.class, carrierType, 1, false, Mode.SINGLE_ALLOCATION);
+    var op = Matcher.of(empty, matcher);
+
+    // match
+    var carrier1 = op.invokeExact(new Box("hello"));
+    assertEquals(1, (int) Matcher.switchResult(carrierMetadata).invokeExact(carrier1));
+    assertEquals("hello", (String) carrierMetadata.accessor(1).invokeExact(carrier1));
+    assertNull((Integer) carrierMetadata.accessor(2).invokeExact(carrier1));
+
+    // match
+    var carrier2 = op.invokeExact(new Box(42));
+    assertEquals(2, (int) Matcher.switchResult(carrierMetadata).invokeExact(carrier2));
+    assertNull((String) carrierMetadata.accessor(1).invokeExact(carrier2));
+    assertEquals(42, (Integer) carrierMetadata.accessor(2).invokeExact(carrier2));
+
+    // do not match
+    var carrier3 = op.invokeExact(new Box(3.2));
+    assertEquals(-1, (int) Matcher.switchResult(carrierMetadata).invokeExact(carrier3));
+  }
+
+  @Test
+  public void singleAllocationNullPattern() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var empty = carrierMetadata.empty();
+
+    var pattern = new ResultPattern(3, new NullPattern());
+    var matcher = pattern.toMatcher(lookup, String.class, carrierType, 1, false, Mode.SINGLE_ALLOCATION);
+
+    var carrier1 = matcher.invokeExact((String) null, empty);
+    assertEquals(3, (int) carrierMetadata.accessor(0).invokeExact(carrier1));
+
+    var carrier2 = matcher.invokeExact("hello", empty);
+    assertNull(carrier2);
+  }
+
+  static int xCalls;
+
+  record Counted(int x, Object tag) {
+    @Override
+    public int x() {
+      xCalls++;
+      return x;
+    }
+  }
+
+  @Test
+  public void lazyBindingDeferAccessor() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, String.class);
+    var pattern = new ResultPattern(0,
+        new RecordPattern(Counted.class,
+            new TypePattern(int.class),
+            new TypePattern(String.class)));
+    var lazyMatcher = pattern.toLazyMatcher(lookup, Object.class, carrierType, 1, false);
+    var carrierMetadata = lazyMatcher.carrierMetadata();
+    var op = Matcher.of(carrierMetadata.empty(), lazyMatcher.matcher());
+
+    xCalls = 0;
+    var carrier = op.invokeExact((Object) new Counted(42, "hello"));
+    assertEquals(0, xCalls);
+    assertEquals(0, (int) Matcher.switchResult(carrierMetadata).invokeExact(carrier));
+    assertEquals("hello", (String) carrierMetadata.accessor(2).invokeExact(carrier));
+    assertEquals(0, xCalls);
+    assertEquals(42, (int) carrierMetadata.accessor(1).invokeExact(carrier));
+    assertEquals(1, xCalls);
+    assertEquals(42, (int) carrierMetadata.accessor(1).invokeExact(carrier));
+    assertEquals(2, xCalls);
+  }
+
+  @Test
+  public void lazyBindingEagerTypeTest() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, String.class, Integer.class);
+    var pattern = new OrPattern(
+        new ResultPattern(0,
+            new RecordPattern(Counted.class,
+                new TypePattern(int.class),
+                new TypePattern(String.class))),
+        new ResultPattern(1,
+            new RecordPattern(Counted.class,
+                new ConstantPattern(7),
+                new TypePattern(Integer.class))));
+    var lazyMatcher = pattern.toLazyMatcher(lookup, Object.class, carrierType, 1, false);
+    var carrierMetadata = lazyMatcher.carrierMetadata();
+    var op = Matcher.of(carrierMetadata.empty(), lazyMatcher.matcher());
+
+    // the constant pattern needs the value of x
+    xCalls = 0;
+    var carrier1 = op.invokeExact((Object) new Counted(7, 3));
+    assertEquals(1, xCalls);
+    assertEquals(1, (int) Matcher.switchResult(carrierMetadata).invokeExact(carrier1));
+    assertEquals(3, (Integer) carrierMetadata.accessor(3).invokeExact(carrier1));
+
+    // the type test on tag is done eagerly
+    var carrier2 = op.invokeExact((Object) new Counted(8, 3));
+    assertNull(carrier2);
+
+    var carrier3 = op.invokeExact((Object) "not a record");
+    assertNull(carrier3);
+  }
+
+  @Test
+  public void lazyBindingUnmatchedCase() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, String.class, int.class, Object.class);
+    var pattern = new OrPattern(
+        new ResultPattern(0,
+            new RecordPattern(Counted.class,
+                new TypePattern(int.class),
+                new TypePattern(String.class))),
+        new ResultPattern(1,
+            new RecordPattern(Counted.class,
+                new TypePattern(int.class),
+                new TypePattern(Object.class))));
+    var lazyMatcher = pattern.toLazyMatcher(lookup, Object.class, carrierType, 1, false);
+    var carrierMetadata = lazyMatcher.carrierMetadata();
+    var op = Matcher.of(carrierMetadata.empty(), lazyMatcher.matcher());
+
+    // the bindings of the first case are not set, they have their default value
+    var carrier = op.invokeExact((Object) new Counted(42, 3));
+    assertEquals(1, (int) Matcher.switchResult(carrierMetadata).invokeExact(carrier));
+    assertEquals(0, (int) carrierMetadata.accessor(1).invokeExact(carrier));
+    assertNull((String) carrierMetadata.accessor(2).invokeExact(carrier));
+    assertEquals(42, (int) carrierMetadata.accessor(3).invokeExact(carrier));
+    assertEquals(3, carrierMetadata.accessor(4).invokeExact(carrier));
+  }
+
+  @Test
+  public void lazyBindingNestedRecord() throws Throwable {
+    record Box(Counted counted) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, Object.class);
+    var pattern = new ResultPattern(0,
+        new RecordPattern(Box.class,
+            new RecordPattern(Counted.class,
+                new TypePattern(int.class),
+                new TypePattern(Object.class))));
+    var lazyMatcher = pattern.toLazyMatcher(lookup, Box.class, carrierType, 1, true);
+    var carrierMetadata = lazyMatcher.carrierMetadata();
+    var op = Matcher.of(carrierMetadata.empty(), lazyMatcher.matcher());
+
+    xCalls = 0;
+    var carrier = op.invokeExact(new Box(new Counted(3, null)));
+    assertEquals(0, xCalls);
+    assertEquals(3, (int) carrierMetadata.accessor(1).invokeExact(carrier));
+    assertNull(carrierMetadata.accessor(2).invokeExact(carrier));
+    assertEquals(1, xCalls);
+
+    // the null check of the nested record is done eagerly
+    assertThrows(NullPointerException.class, () -> op.invokeExact(new Box(null)));
+  }
+
+  @Test
+  public void lazyBindingWither() {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, Object.class);
+    var pattern = new ResultPattern(0,
+        new RecordPattern(Counted.class, new TypePattern(int.class), new TypePattern(Object.class)));
+    var carrierMetadata = pattern.toLazyMatcher(lookup, Object.class, carrierType, 1, false).carrierMetadata();
+    assertAll(
+        () -> assertNotNull(carrierMetadata.with(0)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> carrierMetadata.with(1))
+    );
+  }
+
+  @Test
+  public void dispatchFirstMatch() throws Throwable {
+    record Point(int x, int y) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, int.class, CharSequence.class, Object.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = new OrPattern(
+        new ResultPattern(0,
+            new RecordPattern(Point.class, new ConstantPattern(0), new TypePattern(int.class))),
+        new OrPattern(
+            new ResultPattern(1,
+                new RecordPattern(Point.class, new TypePattern(int.class), new ConstantPattern(0))),
+            new OrPattern(
+                new ResultPattern(2, new TypePattern(CharSequence.class)),
+                new OrPattern(
+                    new ResultPattern(3, new NullPattern()),
+                    new ResultPattern(4, new TypePattern(Object.class))))));
+    var linear = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false));
+    var dispatch = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false, Mode.DISPATCH));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    for(var value: new Object[] { new Point(0, 1), new Point(1, 0), new Point(0, 0), new Point(2, 2), "hello", new StringBuilder("builder"), 42, null }) {
+      var carrier1 = linear.invokeExact(value);
+      var carrier2 = dispatch.invokeExact(value);
+      assertEquals((int) switchResult.invokeExact(carrier1), (int) switchResult.invokeExact(carrier2), "" + value);
+      for(var i = 1; i < carrierType.parameterCount(); i++) {
+        assertEquals(carrierMetadata.accessor(i).invoke(carrier1), carrierMetadata.accessor(i).invoke(carrier2), "" + value);
+      }
+    }
+    assertAll(
+        () -> assertEquals(0, (int) switchResult.invokeExact(dispatch.invokeExact((Object) new Point(0, 0)))),
+        () -> assertEquals(1, (int) switchResult.invokeExact(dispatch.invokeExact((Object) new Point(1, 0)))),
+        () -> assertEquals(4, (int) switchResult.invokeExact(dispatch.invokeExact((Object) new Point(2, 2)))),
+        () -> assertEquals(2, (int) switchResult.invokeExact(dispatch.invokeExact((Object) "hello"))),
+        () -> assertEquals(3, (int) switchResult.invokeExact(dispatch.invokeExact((Object) null)))
+    );
+  }
+
+  @Test
+  public void dispatchNoMatch() throws Throwable {
+    record Point(int x, int y) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, int.class, String.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = new OrPattern(
+        new ResultPattern(0,
+            new RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(int.class))),
+        new ResultPattern(1, new TypePattern(String.class)));
+    var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false, Mode.DISPATCH));
+
+    var carrier1 = op.invokeExact((Object) new Point(3, 4));
+    assertEquals(0, (int) Matcher.switchResult(carrierMetadata).invokeExact(carrier1));
+    assertEquals(4, (int) carrierMetadata.accessor(2).invokeExact(carrier1));
+    var carrier2 = op.invokeExact((Object) "hello");
+    assertEquals("hello", (String) carrierMetadata.accessor(3).invokeExact(carrier2));
+    assertNull(op.invokeExact((Object) 3.0));
+    assertNull(op.invokeExact((Object) null));
+  }
+
+  @Test
+  public void dispatchNullPointerException() throws Throwable {
+    record Box(Object o) {}
+    record Pair(Box box, int v) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, Object.class, String.class);
+    var pattern = new OrPattern(
+        new ResultPattern(0,
+            new RecordPattern(Box.class, new TypePattern(Object.class))),
+        new ResultPattern(1,
+            new RecordPattern(Pair.class,
+                new RecordPattern(Box.class, new TypePattern(String.class)),
+                new ConstantPattern(1))));
+    var matcher = pattern.toMatcher(lookup, Object.class, carrierType, 1, true, Mode.DISPATCH);
+    var op = Matcher.of(CarrierMetadata.fromCarrier(carrierType).empty(), matcher);
+
+    assertThrows(NullPointerException.class, () -> op.invokeExact((Object) null));
+    assertThrows(NullPointerException.class, () -> op.invokeExact((Object) new Pair(null, 1)));
+    assertNotNull(op.invokeExact((Object) new Pair(new Box("hello"), 1)));
+  }
+
+  sealed interface Expr {}
+  record Const(int value) implements Expr {}
+  record Add(Expr left, Expr right) implements Expr {}
+  record Neg(Expr expr) implements Expr {}
+  static non-sealed class Var implements Expr {
+    final String name;
+
+    Var(String name) {
+      this.name = name;
+    }
+  }
+  static final class Param extends Var {
+    Param(String name) {
+      super(name);
+    }
+  }
+
+  @Test
+  public void dispatchSealed() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, Expr.class, Expr.class, int.class, Expr.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = new OrPattern(
+        new ResultPattern(0,
+            new RecordPattern(Add.class, new TypePattern(Expr.class), new RecordPattern(Const.class, new ConstantPattern(0)))),
+        new OrPattern(
+            new ResultPattern(1,
+                new RecordPattern(Neg.class, new RecordPattern(Neg.class, new TypePattern(Expr.class)))),
+            new OrPattern(
+                new ResultPattern(2, new RecordPattern(Const.class, new TypePattern(int.class))),
+                new OrPattern(
+                    new ResultPattern(3, new TypePattern(Expr.class)),
+                    new ResultPattern(4, new NullPattern())))));
+    var linear = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Expr.class, carrierType, 1, false));
+    var dispatch = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Expr.class, carrierType, 1, false, Mode.DISPATCH));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    var values = new Expr[] {
+        new Add(new Const(1), new Const(0)), new Add(new Const(1), new Const(2)), new Add(new Const(1), null),
+        new Neg(new Neg(new Const(3))), new Neg(new Const(3)), new Neg(null),
+        new Const(42), new Var("x"), new Param("p"), null
+    };
+    var indexes = new int[values.length];
+    for(var i = 0; i < values.length; i++) {
+      var value = values[i];
+      var carrier1 = linear.invokeExact((Expr) value);
+      var carrier2 = dispatch.invokeExact((Expr) value);
+      indexes[i] = (int) switchResult.invokeExact(carrier2);
+      assertEquals((int) switchResult.invokeExact(carrier1), indexes[i], "" + value);
+      for(var j = 1; j < carrierType.parameterCount(); j++) {
+        assertEquals(carrierMetadata.accessor(j).invoke(carrier1), carrierMetadata.accessor(j).invoke(carrier2), "" + value);
+      }
+    }
+    assertArrayEquals(new int[] { 0, 3, 3, 1, 3, 3, 2, 3, 3, 3 }, indexes);
+  }
+
+  @Test
+  public void dispatchSealedNotExhaustive() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, Expr.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = new OrPattern(
+        new ResultPattern(0, new RecordPattern(Const.class, new TypePattern(int.class))),
+        new ResultPattern(1, new RecordPattern(Neg.class, new TypePattern(Expr.class))));
+    var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Expr.class, carrierType, 1, true, Mode.DISPATCH));
+
+    var carrier = op.invokeExact((Expr) new Const(7));
+    assertEquals(0, (int) Matcher.switchResult(carrierMetadata).invokeExact(carrier));
+    assertEquals(7, (int) carrierMetadata.accessor(1).invokeExact(carrier));
+    assertAll(
+        () -> assertNull(op.invokeExact((Expr) new Add(new Const(1), new Const(2)))),
+        () -> assertNull(op.invokeExact((Expr) new Param("p"))),
+        () -> assertThrows(NullPointerException.class, () -> op.invokeExact((Expr) null))
+    );
+  }
+
+  @Test
+  public void constantHashDispatch() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, Object.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = (Pattern) new ResultPattern(200, new TypePattern(Object.class));
+    for(var i = 200; --i >= 0;) {
+      pattern = new OrPattern(new ResultPattern(i, new ConstantPattern("command" + (i % 150))), pattern);
+    }
+    var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    assertAll(
+        () -> assertEquals(0, (int) switchResult.invokeExact(op.invokeExact((Object) "command0"))),
+        () -> assertEquals(149, (int) switchResult.invokeExact(op.invokeExact((Object) new String("command149")))),
+        () -> assertEquals(42, (int) switchResult.invokeExact(op.invokeExact((Object) "command42"))),  // the first case wins
+        () -> assertEquals(200, (int) switchResult.invokeExact(op.invokeExact((Object) "command150"))),
+        () -> assertEquals(200, (int) switchResult.invokeExact(op.invokeExact((Object) new StringBuilder("command0")))),
+        () -> assertEquals(200, (int) switchResult.invokeExact(op.invokeExact((Object) null)))
+    );
+  }
+
+  @Test
+  public void constantHashDispatchMixedClasses() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var constants = new Object[] { 1, 2, 3, 4, 5, 1L, 2L, 3L, 4L, 5L, 'a', "a", 1.0, 6 };
+    var pattern = (Pattern) new ResultPattern(constants.length - 1, new ConstantPattern(constants[constants.length - 1]));
+    for(var i = constants.length - 1; --i >= 0;) {
+      pattern = new OrPattern(new ResultPattern(i, new ConstantPattern(constants[i])), pattern);
+    }
+    var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    for(var i = 0; i < constants.length; i++) {
+      assertEquals(i, (int) switchResult.invokeExact(op.invokeExact(constants[i])));
+    }
+    assertAll(
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact((Object) 7))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact((Object) (short) 1))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact((Object) null)))
+    );
+  }
+
+  @Test
+  public void constantHashDispatchWithoutResult() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = new ResultPattern(1,
+        new OrPattern(new ConstantPattern("a"),
+            new OrPattern(new ConstantPattern("b"),
+                new OrPattern(new ConstantPattern("c"),
+                    new OrPattern(new ConstantPattern("d"), new ConstantPattern("e"))))));
+    var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, String.class, carrierType, 1, false));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    assertAll(
+        () -> assertEquals(1, (int) switchResult.invokeExact(op.invokeExact("c"))),
+        () -> assertEquals(1, (int) switchResult.invokeExact(op.invokeExact("e"))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact("f")))
+    );
+  }
+
+  private static Pattern cases(Pattern... patterns) {
+    var pattern = (Pattern) new ResultPattern(patterns.length - 1, patterns[patterns.length - 1]);
+    for(var i = patterns.length - 1; --i >= 0;) {
+      pattern = new OrPattern(new ResultPattern(i, patterns[i]), pattern);
+    }
+    return pattern;
+  }
+
+  @Test
+  public void intConstantDenseTable() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var patterns = new Pattern[120];
+    for(var i = 0; i < patterns.length; i++) {
+      patterns[i] = new ConstantPattern(i == 60? 7: 3 + i);  // 7 is also the case 4
+    }
+    var op = Matcher.of(carrierMetadata.empty(), cases(patterns).toMatcher(lookup, int.class, carrierType, 1, false));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    for(var i = 0; i < patterns.length; i++) {
+      if (i != 60) {
+        assertEquals(i, (int) switchResult.invokeExact(op.invokeExact(3 + i)));
+      }
+    }
+    assertAll(
+        () -> assertEquals(4, (int) switchResult.invokeExact(op.invokeExact(7))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact(63))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact(2))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact(200))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact(Integer.MIN_VALUE)))
+    );
+  }
+
+  @Test
+  public void longConstantSortedTable() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = cases(
+        new ConstantPattern(Long.MIN_VALUE),
+        new ConstantPattern(-1_000_000_000_000L),
+        new ConstantPattern(0L),
+        new ConstantPattern(1L << 40),
+        new ConstantPattern(Long.MAX_VALUE));
+    var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, long.class, carrierType, 1, false));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    assertAll(
+        () -> assertEquals(0, (int) switchResult.invokeExact(op.invokeExact(Long.MIN_VALUE))),
+        () -> assertEquals(1, (int) switchResult.invokeExact(op.invokeExact(-1_000_000_000_000L))),
+        () -> assertEquals(2, (int) switchResult.invokeExact(op.invokeExact(0L))),
+        () -> assertEquals(3, (int) switchResult.invokeExact(op.invokeExact(1L << 40))),
+        () -> assertEquals(4, (int) switchResult.invokeExact(op.invokeExact(Long.MAX_VALUE))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact(1L))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact(Long.MAX_VALUE - 1))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact(Long.MIN_VALUE + 1)))
+    );
+  }
+
+  @Test
+  public void rangePatternOverlap() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, char.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = cases(
+        new RangePattern('a', 'f'),
+        new ConstantPattern('c'),  // unreachable
+        new RangePattern('d', 'z'),
+        new RangePattern('0', '9'),
+        new ConstantPattern('_'),
+        new TypePattern(char.class));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+    for(var mode: Mode.values()) {
+      var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, char.class, carrierType, 1, false, mode));
+      assertAll(
+          () -> assertEquals(0, (int) switchResult.invokeExact(op.invokeExact('a'))),
+          () -> assertEquals(0, (int) switchResult.invokeExact(op.invokeExact('c'))),
+          () -> assertEquals(0, (int) switchResult.invokeExact(op.invokeExact('f'))),
+          () -> assertEquals(2, (int) switchResult.invokeExact(op.invokeExact('g'))),
+          () -> assertEquals(2, (int) switchResult.invokeExact(op.invokeExact('z'))),
+          () -> assertEquals(3, (int) switchResult.invokeExact(op.invokeExact('5'))),
+          () -> assertEquals(4, (int) switchResult.invokeExact(op.invokeExact('_'))),
+          () -> assertEquals(5, (int) switchResult.invokeExact(op.invokeExact('A'))),
+          () -> assertEquals('A', (char) carrierMetadata.accessor(1).invokeExact(op.invokeExact('A')))
+      );
+    }
+  }
+
+  @Test
+  public void rangePatternNotIntegral() {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class);
+    var pattern = new RangePattern(0, 10);
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> new RangePattern(1, 0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> pattern.toMatcher(lookup, double.class, carrierType, 1, false)),
+        () -> assertThrows(IllegalArgumentException.class, () -> pattern.toMatcher(lookup, Integer.class, carrierType, 1, false, Mode.SINGLE_ALLOCATION)),
+        () -> assertEquals("0..10", pattern.prefixErrorMessage(pattern))
+    );
+  }
+
+  enum Opcode {
+    NOP, LOAD, STORE, ADD, SUB { @Override public String toString() { return "sub"; } }, MUL, RET
+  }
+
+  @Test
+  public void enumConstantTable() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = cases(
+        new ConstantPattern(Opcode.RET),
+        new ConstantPattern(Opcode.LOAD),
+        new ConstantPattern(Opcode.SUB),
+        new ConstantPattern(Opcode.ADD),
+        new ConstantPattern(Opcode.RET),
+        new ConstantPattern(Thread.State.NEW));
+    var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    assertAll(
+        () -> assertEquals(0, (int) switchResult.invokeExact(op.invokeExact((Object) Opcode.RET))),
+        () -> assertEquals(1, (int) switchResult.invokeExact(op.invokeExact((Object) Opcode.LOAD))),
+        () -> assertEquals(2, (int) switchResult.invokeExact(op.invokeExact((Object) Opcode.SUB))),
+        () -> assertEquals(3, (int) switchResult.invokeExact(op.invokeExact((Object) Opcode.ADD))),
+        () -> assertEquals(5, (int) switchResult.invokeExact(op.invokeExact((Object) Thread.State.NEW))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact((Object) Opcode.NOP))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact((Object) Thread.State.BLOCKED))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact((Object) "RET"))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact((Object) null)))
+    );
+  }
+
+  @Test
+  public void inlineCache() throws Throwable {
+    record Point(int x, int y) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, int.class, CharSequence.class, Object.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = cases(
+        new RecordPattern(Point.class, new ConstantPattern(0), new TypePattern(int.class)),
+        new RecordPattern(Point.class, new TypePattern(int.class), new ConstantPattern(0)),
+        new TypePattern(CharSequence.class),
+        new ConstantPattern(42),
+        new TypePattern(Object.class));
+    var linear = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false));
+    var inlineCache = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false, Mode.INLINE_CACHE));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    // more classes than the inline cache can hold, so the call site goes megamorphic
+    var values = new Object[] {
+        new Point(0, 1), new Point(1, 0), "hello", new Point(2, 2), 42, 43, null,
+        new StringBuilder("builder"), 4.0, new Point(0, 0), "world", 42 };
+    for(var round = 0; round < 2; round++) {
+      for(var value: values) {
+        var carrier1 = linear.invokeExact(value);
+        var carrier2 = inlineCache.invokeExact(value);
+        assertEquals((int) switchResult.invokeExact(carrier1), (int) switchResult.invokeExact(carrier2), "" + value);
+        for(var i = 1; i < carrierType.parameterCount(); i++) {
+          assertEquals(carrierMetadata.accessor(i).invoke(carrier1), carrierMetadata.accessor(i).invoke(carrier2), "" + value);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void inlineCacheNullPointerException() throws Throwable {
+    record Box(Object o) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, String.class, Object.class);
+    var pattern = cases(
+        new RecordPattern(Box.class, new RecordPattern(Box.class, new TypePattern(String.class))),
+        new TypePattern(Object.class));
+    var op = Matcher.of(CarrierMetadata.fromCarrier(carrierType).empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, true, Mode.INLINE_CACHE));
+
+    assertNotNull(op.invokeExact((Object) new Box(new Box("hello"))));
+    assertThrows(NullPointerException.class, () -> op.invokeExact((Object) new Box(null)));
+    assertThrows(NullPointerException.class, () -> op.invokeExact((Object) null));
+  }
+
+  @Test
+  public void decisionTree() throws Throwable {
+    record Point(int x, int y) {}
+    record Rectangle(Point p1, Point p2) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class,
+        int.class, Point.class, Point.class, Point.class, int.class, int.class, int.class, Object.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = cases(
+        new RecordPattern(Rectangle.class, new RecordPattern(Point.class, new ConstantPattern(0), new TypePattern(int.class)), new TypePattern(Point.class)),
+        new RecordPattern(Rectangle.class, new TypePattern(Point.class), new NullPattern()),
+        new RecordPattern(Rectangle.class, new TypePattern(Point.class), new RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(int.class))),
+        new RecordPattern(Rectangle.class, new RecordPattern(Point.class, new ConstantPattern(1), new ConstantPattern(1)), new RecordPattern(Point.class, new TypePattern(int.class), new ConstantPattern(2))),
+        new TypePattern(Object.class));
+    var linear = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false));
+    var decisionTree = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false, Mode.DECISION_TREE));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    var values = new Object[] {
+        new Rectangle(new Point(0, 1), new Point(2, 3)), new Rectangle(new Point(4, 5), null),
+        new Rectangle(new Point(4, 5), new Point(6, 7)), new Rectangle(null, new Point(6, 7)),
+        new Rectangle(null, null), new Rectangle(new Point(0, 0), null), new Point(0, 0), "hello", null };
+    for(var value: values) {
+      var carrier1 = linear.invokeExact(value);
+      var carrier2 = decisionTree.invokeExact(value);
+      assertEquals((int) switchResult.invokeExact(carrier1), (int) switchResult.invokeExact(carrier2), "" + value);
+      for(var i = 1; i < carrierType.parameterCount(); i++) {
+        assertEquals(carrierMetadata.accessor(i).invoke(carrier1), carrierMetadata.accessor(i).invoke(carrier2), "" + value);
+      }
+    }
+  }
+
+  @Test
+  public void decisionTreeSharedAccessors() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, String.class, Object.class, int.class, Integer.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = cases(
+        new RecordPattern(Counted.class, new ConstantPattern(0), new TypePattern(String.class)),
+        new RecordPattern(Counted.class, new ConstantPattern(1), new TypePattern(Object.class)),
+        new RecordPattern(Counted.class, new TypePattern(int.class), new TypePattern(Integer.class)));
+    var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false, Mode.DECISION_TREE));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    xCalls = 0;
+    var carrier = op.invokeExact((Object) new Counted(5, 3));
+    assertAll(
+        () -> assertEquals(1, xCalls),
+        () -> assertEquals(2, (int) switchResult.invokeExact(carrier)),
+        () -> assertEquals(5, (int) carrierMetadata.accessor(3).invokeExact(carrier)),
+        () -> assertEquals(3, (Integer) carrierMetadata.accessor(4).invokeExact(carrier)),
+        () -> assertEquals(1, (int) switchResult.invokeExact(op.invokeExact((Object) new Counted(1, "a")))),
+        () -> assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact((Object) new Counted(0, 3.0))))
+    );
+  }
+
+  @Test
+  public void decisionTreeNullPointerException() throws Throwable {
+    record Box(Object o) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, String.class, Integer.class, Object.class);
+    var pattern = cases(
+        new RecordPattern(Box.class, new RecordPattern(Box.class, new TypePattern(String.class))),
+        new RecordPattern(Box.class, new RecordPattern(Box.class, new TypePattern(Integer.class))),
+        new TypePattern(Object.class));
+    var op = Matcher.of(CarrierMetadata.fromCarrier(carrierType).empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, true, Mode.DECISION_TREE));
+
+    assertNotNull(op.invokeExact((Object) new Box(new Box("hello"))));
+    assertNotNull(op.invokeExact((Object) new Box(new Box(42))));
+    assertThrows(NullPointerException.class, () -> op.invokeExact((Object) new Box(null)));
+    assertThrows(NullPointerException.class, () -> op.invokeExact((Object) null));
+  }
+
+  @Test
+  public void decisionTreeMemoizedAccessors() throws Throwable {
+    record Box(Object o) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class,
+        String.class, String.class, Box.class, Integer.class, int.class, Object.class, Object.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = cases(
+        new RecordPattern(Counted.class, new ConstantPattern(0), new TypePattern(String.class)),
+        new TypePattern(String.class),
+        new RecordPattern(Counted.class, new ConstantPattern(1), new TypePattern(Box.class)),
+        new TypePattern(Integer.class),
+        new RecordPattern(Counted.class, new TypePattern(int.class), new TypePattern(Object.class)),
+        new RecordPattern(Box.class, new NullPattern()),
+        new TypePattern(Object.class));
+    var linear = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false));
+    var decisionTree = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false, Mode.DECISION_TREE));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    xCalls = 0;
+    var carrier = decisionTree.invokeExact((Object) new Counted(5, 3));
+    assertEquals(1, xCalls);
+    assertEquals(4, (int) switchResult.invokeExact(carrier));
+
+    var values = new Object[] {
+        new Counted(0, "a"), new Counted(0, 3), new Counted(1, new Box(null)), new Counted(1, "b"), new Counted(2, null),
+        "hello", 42, new Box(null), new Box("c"), 4.0, null };
+    for(var value: values) {
+      var carrier1 = linear.invokeExact(value);
+      var carrier2 = decisionTree.invokeExact(value);
+      assertEquals((int) switchResult.invokeExact(carrier1), (int) switchResult.invokeExact(carrier2), "" + value);
+      for(var i = 1; i < carrierType.parameterCount(); i++) {
+        assertEquals(carrierMetadata.accessor(i).invoke(carrier1), carrierMetadata.accessor(i).invoke(carrier2), "" + value);
+      }
+    }
+  }
+
+  @Test
+  public void bytecode() throws Throwable {
+    record Point(int x, int y) {}
+    record Rectangle(Point p1, Point p2) {}
+    record Box(Object o) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class,
+        int.class, Point.class, Point.class, String.class, Integer.class, long.class, Object.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = cases(
+        new RecordPattern(Rectangle.class, new RecordPattern(Point.class, new ConstantPattern(0), new TypePattern(int.class)), new TypePattern(Point.class)),
+        new RecordPattern(Rectangle.class, new TypePattern(Point.class), new NullPattern()),
+        new RecordPattern(Box.class, new OrPattern(new TypePattern(String.class), new TypePattern(Integer.class))),
+        new RecordPattern(Box.class, new ConstantPattern(42L)),
+        new TypePattern(long.class),
+        new TypePattern(Object.class));
+    var linear = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false));
+    var bytecode = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false, Mode.BYTECODE));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    var values = new Object[] {
+        new Rectangle(new Point(0, 1), new Point(2, 3)), new Rectangle(new Point(4, 5), null),
+        new Rectangle(new Point(4, 5), new Point(6, 7)), new Rectangle(null, null),
+        new Box("hello"), new Box(3), new Box(42L), new Box(4.0), new Box(null), 42L, "hello", null };
+    for(var value: values) {
+      var carrier1 = linear.invokeExact(value);
+      var carrier2 = bytecode.invokeExact(value);
+      assertEquals((int) switchResult.invokeExact(carrier1), (int) switchResult.invokeExact(carrier2), "" + value);
+      for(var i = 1; i < carrierType.parameterCount(); i++) {
+        assertEquals(carrierMetadata.accessor(i).invoke(carrier1), carrierMetadata.accessor(i).invoke(carrier2), "" + value);
+      }
+    }
+  }
+
+  @Test
+  public void bytecodePrimitiveReceiver() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, long.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = cases(
+        new ConstantPattern(3L),
+        new RangePattern(-10, 10),
+        new TypePattern(long.class));
+    var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, long.class, carrierType, 1, false, Mode.BYTECODE));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+    assertAll(
+        () -> assertEquals(0, (int) switchResult.invokeExact(op.invokeExact(3L))),
+        () -> assertEquals(1, (int) switchResult.invokeExact(op.invokeExact(-10L))),
+        () -> assertEquals(2, (int) switchResult.invokeExact(op.invokeExact(11L))),
+        () -> assertEquals(11L, (long) carrierMetadata.accessor(1).invokeExact(op.invokeExact(11L)))
+    );
+  }
+
+  @Test
+  public void bytecodeNullPointerException() throws Throwable {
+    record Box(Object o) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, String.class, Object.class);
+    var pattern = cases(
+        new RecordPattern(Box.class, new RecordPattern(Box.class, new TypePattern(String.class))),
+        new TypePattern(Object.class));
+    var op = Matcher.of(CarrierMetadata.fromCarrier(carrierType).empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, true, Mode.BYTECODE));
+
+    assertNotNull(op.invokeExact((Object) new Box(new Box("hello"))));
+    var e = assertThrows(NullPointerException.class, () -> op.invokeExact((Object) new Box(null)));
+    assertTrue(e.getMessage().startsWith("null while matching pattern"));
+    assertThrows(NullPointerException.class, () -> op.invokeExact((Object) null));
+  }
+
+  @Test
+  public void bytecodeFallback() throws Throwable {
+    record Point(int x, int y) {}
+    var lookup = MethodHandles.lookup().dropLookupMode(MethodHandles.Lookup.PRIVATE);
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = cases(new RecordPattern(Point.class, new ConstantPattern(0), new TypePattern(int.class)));
+    var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false, Mode.BYTECODE));
+
+    assertEquals(3, (int) carrierMetadata.accessor(1).invokeExact(op.invokeExact((Object) new Point(0, 3))));
+    assertNull(op.invokeExact((Object) new Point(1, 3)));
+  }
+
+  @Test
+  public void tiered() throws Throwable {
+    record Point(int x, int y) {}
+    record Rectangle(Point p1, Point p2) {}
+    record Box(Object o) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class,
+        int.class, Point.class, Point.class, String.class, Integer.class, long.class, Object.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = cases(
+        new RecordPattern(Rectangle.class, new RecordPattern(Point.class, new ConstantPattern(0), new TypePattern(int.class)), new TypePattern(Point.class)),
+        new RecordPattern(Rectangle.class, new TypePattern(Point.class), new NullPattern()),
+        new RecordPattern(Box.class, new OrPattern(new TypePattern(String.class), new TypePattern(Integer.class))),
+        new RecordPattern(Box.class, new ConstantPattern(42L)),
+        new TypePattern(long.class),
+        new TypePattern(Object.class));
+    var values = new Object[] {
+        new Rectangle(new Point(0, 1), new Point(2, 3)), new Rectangle(new Point(4, 5), null),
+        new Rectangle(new Point(4, 5), new Point(6, 7)), new Rectangle(null, null),
+        new Box("hello"), new Box(3), new Box(42L), new Box(4.0), new Box(null), 42L, "hello", null };
+    var linear = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, false));
+    // interpreted for the first round, compiled for the second one
+    var tiered = Matcher.of(carrierMetadata.empty(), PatternInterpreter.toMatcher(pattern, lookup, Object.class, carrierMetadata, 1, null, values.length));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+
+    for(var round = 0; round < 2; round++) {
+      for(var value: values) {
+        var carrier1 = linear.invokeExact(value);
+        var carrier2 = tiered.invokeExact(value);
+        assertEquals((int) switchResult.invokeExact(carrier1), (int) switchResult.invokeExact(carrier2), "" + value);
+        for(var i = 1; i < carrierType.parameterCount(); i++) {
+          assertEquals(carrierMetadata.accessor(i).invoke(carrier1), carrierMetadata.accessor(i).invoke(carrier2), "" + value);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void tieredPrimitiveReceiver() throws Throwable {
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, long.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = cases(
+        new ConstantPattern(3L),
+        new RangePattern(-10, 10),
+        new TypePattern(long.class));
+    var op = Matcher.of(carrierMetadata.empty(), PatternInterpreter.toMatcher(pattern, lookup, long.class, carrierMetadata, 1, null, 2));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+    for(var round = 0; round < 2; round++) {
+      assertAll(
+          () -> assertEquals(0, (int) switchResult.invokeExact(op.invokeExact(3L))),
+          () -> assertEquals(1, (int) switchResult.invokeExact(op.invokeExact(-10L))),
+          () -> assertEquals(2, (int) switchResult.invokeExact(op.invokeExact(11L))),
+          () -> assertEquals(11L, (long) carrierMetadata.accessor(1).invokeExact(op.invokeExact(11L)))
+      );
+    }
+  }
+
+  @Test
+  public void tieredNullPointerException() throws Throwable {
+    record Box(Object o) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, String.class, Object.class);
+    var pattern = cases(
+        new RecordPattern(Box.class, new RecordPattern(Box.class, new TypePattern(String.class))),
+        new TypePattern(Object.class));
+    var op = Matcher.of(CarrierMetadata.fromCarrier(carrierType).empty(), pattern.toMatcher(lookup, Object.class, carrierType, 1, true, Mode.TIERED));
+
+    assertNotNull(op.invokeExact((Object) new Box(new Box("hello"))));
+    var e = assertThrows(NullPointerException.class, () -> op.invokeExact((Object) new Box(null)));
+    assertTrue(e.getMessage().startsWith("null while matching pattern"));
+    assertThrows(NullPointerException.class, () -> op.invokeExact((Object) null));
+  }
+
+  @Test
+  public void scratchCarrier() throws Throwable {
+    record Pair(Object o, int i) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, String.class, Object.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromScratchCarrier(carrierType);
+    var pattern = cases(
+        new RecordPattern(Pair.class, new TypePattern(String.class), new ConstantPattern(1)),
+        new RecordPattern(Pair.class, new TypePattern(Object.class), new TypePattern(int.class)));
+    var switchResult = Matcher.switchResult(carrierMetadata);
+    for(var mode: Mode.values()) {
+      var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierMetadata, 1, false, mode));
+
+      var carrier1 = op.invokeExact((Object) new Pair("a", 1));
+      assertEquals(0, (int) switchResult.invokeExact(carrier1), "" + mode);
+      assertEquals("a", (String) carrierMetadata.accessor(1).invokeExact(carrier1), "" + mode);
+
+      // the first case binds "b" then fails, only the bindings of the second case can be read
+      var carrier2 = op.invokeExact((Object) new Pair("b", 2));
+      assertEquals(1, (int) switchResult.invokeExact(carrier2), "" + mode);
+      assertEquals("b", (Object) carrierMetadata.accessor(2).invokeExact(carrier2), "" + mode);
+      assertEquals(2, (int) carrierMetadata.accessor(3).invokeExact(carrier2), "" + mode);
+
+      assertEquals(-1, (int) switchResult.invokeExact(op.invokeExact((Object) "c")), "" + mode);
+    }
+  }
+
+  @Test
+  public void scratchCarrierIsReused() throws Throwable {
+    record Point(int x, int y) {}
+    var lookup = MethodHandles.lookup();
+    var carrierType = MethodType.methodType(Object.class, int.class, int.class, int.class);
+    var carrierMetadata = CarrierMetadata.fromScratchCarrier(carrierType);
+    var pattern = cases(new RecordPattern(Point.class, new TypePattern(int.class), new TypePattern(int.class)));
+    var op = Matcher.of(carrierMetadata.empty(), pattern.toMatcher(lookup, Object.class, carrierMetadata, 1, false, Mode.COMBINATOR));
+
+    var carrier1 = op.invokeExact((Object) new Point(1, 2));
+    var carrier2 = op.invokeExact((Object) new Point(3, 4));
+    assertSame(carrier1, carrier2);
+    assertEquals(3, (int) carrierMetadata.accessor(1).invokeExact(carrier2));
+    assertEquals(4, (int) carrierMetadata.accessor(2).invokeExact(carrier2));
+  }
+}
@@ -0,0 +1,85 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+// Matching 1 000 nodes of a sealed hierarchy, an exhaustive switch with one case per leaf
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SealedDispatchBenchmark {
+  sealed interface Expr {}
+  record Const(int value) implements Expr {}
+  record Var(String name) implements Expr {}
+  record Neg(Expr expr) implements Expr {}
+  record Add(Expr left, Expr right) implements Expr {}
+  record Mul(Expr left, Expr right) implements Expr {}
+  record Let(String name, Expr init, Expr body) implements Expr {}
+
+  @Param({"COMBINATOR", "DISPATCH"})
+  public String mode;
+
+  private MethodHandle op;
+  private MethodHandle switchResult;
+  private Expr[] values;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    var carrierType = MethodType.methodType(Object.class, int.class,
+        int.class, String.class, Expr.class, Expr.class, Expr.class, Expr.class, Expr.class, String.class, Expr.class, Expr.class);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    var pattern = new OrPattern(
+        new ResultPattern(0, new RecordPattern(Const.class, new TypePattern(int.class))),
+        new OrPattern(
+            new ResultPattern(1, new RecordPattern(Var.class, new TypePattern(String.class))),
+            new OrPattern(
+                new ResultPattern(2, new RecordPattern(Neg.class, new TypePattern(Expr.class))),
+                new OrPattern(
+                    new ResultPattern(3, new RecordPattern(Add.class, new TypePattern(Expr.class), new TypePattern(Expr.class))),
+                    new OrPattern(
+                        new ResultPattern(4, new RecordPattern(Mul.class, new TypePattern(Expr.class), new TypePattern(Expr.class))),
+                        new ResultPattern(5, new RecordPattern(Let.class, new TypePattern(String.class), new TypePattern(Expr.class), new TypePattern(Expr.class))))))));
+    var matcher = pattern.toMatcher(MethodHandles.lookup(), Expr.class, carrierType, 1, false, Pattern.Mode.valueOf(mode));
+    op = Matcher.of(carrierMetadata.empty(), matcher);
+    switchResult = Matcher.switchResult(carrierMetadata).asType(MethodType.methodType(int.class, Object.class));
+    var one = new Const(1);
+    var x = new Var("x");
+    var leaves = new Expr[] { one, x, new Neg(one), new Add(one, x), new Mul(x, x), new Let("x", one, x) };
+    values = new Expr[1_000];
+    for(var i = 0; i < values.length; i++) {
+      values[i] = leaves[(i * 7919) % leaves.length];
+    }
+  }
+
+  @Benchmark
+  public int match() throws Throwable {
+    var sum = 0;
+    for(var value: values) {
+      sum += (int) switchResult.invokeExact((Object) op.invokeExact(value));
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,93 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+// Reads the first component of carriers of 200 different shapes from the same call site,
+// the number of carrier classes and the metaspace used are printed at the end of each fork
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ShapePolicyBenchmark {
+  @Param({"EXACT", "POWER_OF_TWO"})
+  public String policy;
+
+  private Object[] carriers;
+  private MethodHandle[] firstComponents;
+  private long metaspaceBefore;
+
+  private static long metaspaceUsed() {
+    return ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getName().equals("Metaspace"))
+        .mapToLong(pool -> pool.getUsage().getUsed())
+        .sum();
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws Throwable {
+    // must be set before the class Carrier is initialized, JMH forks a VM per parameter
+    System.setProperty("com.github.forax.carrier.shapePolicy", policy);
+    metaspaceBefore = metaspaceUsed();
+
+    var carriers = new ArrayList<>();
+    var firstComponents = new ArrayList<MethodHandle>();
+    for(var objectCount = 0; objectCount < 8; objectCount++) {
+      for(var intCount = 0; intCount < 5; intCount++) {
+        for(var longCount = 0; longCount < 5; longCount++) {
+          var ptypes = new ArrayList<Class<?>>();
+          ptypes.add(Object.class);  // the first component is always an object
+          ptypes.addAll(Collections.nCopies(objectCount, Object.class));
+          ptypes.addAll(Collections.nCopies(intCount, int.class));
+          ptypes.addAll(Collections.nCopies(longCount, long.class));
+          var methodType = MethodType.methodType(Object.class, ptypes);
+          var args = new ArrayList<>();
+          args.add("first");
+          args.addAll(Collections.nCopies(objectCount, "object"));
+          args.addAll(Collections.nCopies(intCount, 42));
+          args.addAll(Collections.nCopies(longCount, 42L));
+          carriers.add(Carrier.constructor(methodType).invokeWithArguments(args));
+          firstComponents.add(Carrier.component(methodType, 0).asType(MethodType.methodType(Object.class, Object.class)));
+        }
+      }
+    }
+    this.carriers = carriers.toArray();
+    this.firstComponents = firstComponents.toArray(MethodHandle[]::new);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    System.out.println();
+    System.out.println("policy " + policy + ": " + Carrier.carrierClassCount() + " carrier classes, " +
+        (metaspaceUsed() - metaspaceBefore) / 1024 + " KiB of metaspace");
+  }
+
+  @Benchmark
+  public int readFirstComponents() throws Throwable {
+    var sum = 0;
+    for(var i = 0; i < carriers.length; i++) {
+      sum += ((String) (Object) firstComponents[i].invokeExact(carriers[i])).length();
+    }
+    return sum;
+  }
+}
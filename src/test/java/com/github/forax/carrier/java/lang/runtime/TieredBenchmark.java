@@ -0,0 +1,116 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.DecisionTreeBenchmark.Coord;
+import com.github.forax.carrier.java.lang.runtime.DecisionTreeBenchmark.Point;
+import com.github.forax.carrier.java.lang.runtime.DecisionTreeBenchmark.Segment;
+import com.github.forax.carrier.java.lang.runtime.Matcher.CarrierMetadata;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ConstantPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.OrPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.RecordPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.ResultPattern;
+import com.github.forax.carrier.java.lang.runtime.Pattern.TypePattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// The method handle combinators (COMBINATOR) versus the interpreter relinked to the combinators (TIERED)
+// on the switch of DecisionTreeBenchmark,
+//   case Segment(Point(Coord(0), Coord y), Point end) -> 0
+//   ...
+//   case Object o -> n
+// link: the creation of the matcher,
+// linkAndFirstCalls: the creation of the matcher and its first 10 calls,
+// match: matching 1 000 values once the matcher is hot (compiled for TIERED)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TieredBenchmark {
+  @Param({"4", "16"})
+  public int cases;
+
+  @Param({"COMBINATOR", "TIERED"})
+  public String mode;
+
+  private Pattern pattern;
+  private MethodType carrierType;
+  private Pattern.Mode patternMode;
+  private MethodHandle op;
+  private MethodHandle switchResult;
+  private Object[] values;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    var pattern = (Pattern) new ResultPattern(cases, new TypePattern(Object.class));
+    for(var i = cases; --i >= 0;) {
+      pattern = new OrPattern(
+          new ResultPattern(i,
+              new RecordPattern(Segment.class,
+                  new RecordPattern(Point.class,
+                      new RecordPattern(Coord.class, new ConstantPattern(i)),
+                      new TypePattern(Coord.class)),
+                  new TypePattern(Point.class))),
+          pattern);
+    }
+    var bindingTypes = new ArrayList<Class<?>>();
+    bindingTypes.add(int.class);
+    for(var i = 0; i < cases; i++) {
+      bindingTypes.add(Coord.class);
+      bindingTypes.add(Point.class);
+    }
+    bindingTypes.add(Object.class);
+    this.pattern = pattern;
+    carrierType = MethodType.methodType(Object.class, bindingTypes);
+    patternMode = Pattern.Mode.valueOf(mode);
+    var carrierMetadata = CarrierMetadata.fromCarrier(carrierType);
+    op = Matcher.of(carrierMetadata.empty(), link()).asType(MethodType.methodType(Object.class, Object.class));
+    switchResult = Matcher.switchResult(carrierMetadata).asType(MethodType.methodType(int.class, Object.class));
+    values = new Object[1_000];
+    for(var i = 0; i < values.length; i++) {
+      var x = (i * 7919) % (cases + 1);
+      values[i] = new Segment(new Point(new Coord(x), new Coord(i)), new Point(new Coord(i), new Coord(x)));
+    }
+  }
+
+  @Benchmark
+  public MethodHandle link() {
+    return pattern.toMatcher(MethodHandles.lookup(), Object.class, carrierType, 1, false, patternMode);
+  }
+
+  @Benchmark
+  public Object linkAndFirstCalls() throws Throwable {
+    var matcher = link();
+    var empty = CarrierMetadata.fromCarrier(carrierType).empty();
+    var result = (Object) null;
+    for(var i = 0; i < 10; i++) {
+      result = (Object) matcher.invokeExact((Object) values[i], empty);
+    }
+    return result;
+  }
+
+  @Benchmark
+  public int match() throws Throwable {
+    var sum = 0;
+    for(var value: values) {
+      sum += (int) switchResult.invokeExact((Object) op.invokeExact(value));
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,97 @@
+package com.github.forax.carrier.java.lang.runtime;
+
+import com.github.forax.carrier.java.lang.runtime.Carrier.CarrierCache;
+import com.github.forax.carrier.java.lang.runtime.Carrier.ShapePolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+
+// Carrier handles adapted by combinators vs carrier handles generated in bytecode,
+// warm: steady state of creating a carrier and reading all its components,
+// cold: first creation and first reads in a fresh VM
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TypedCarrierBenchmark {
+  private static final MethodType CARRIER_TYPE =
+      methodType(Object.class, int.class, String.class, double.class, float.class, byte.class, long.class);
+
+  // in a holder class so the cold benchmarks do not initialize it
+  private static final class Warm {
+    private static final MethodHandle COMBINATOR_CONSTRUCTOR, TYPED_CONSTRUCTOR;
+    private static final MethodHandle[] COMBINATOR_COMPONENTS, TYPED_COMPONENTS;
+    static {
+      var combinators = new CarrierCache(true, ShapePolicy.EXACT, false).findCarrierHandles(CARRIER_TYPE, false);
+      var typed = new CarrierCache(true, ShapePolicy.EXACT, true).findCarrierHandles(CARRIER_TYPE, false);
+      COMBINATOR_CONSTRUCTOR = combinators.constructor();
+      COMBINATOR_COMPONENTS = combinators.components();
+      TYPED_CONSTRUCTOR = typed.constructor();
+      TYPED_COMPONENTS = typed.components();
+    }
+  }
+
+  private static double readAll(Object carrier, MethodHandle c0, MethodHandle c1, MethodHandle c2,
+                                MethodHandle c3, MethodHandle c4, MethodHandle c5) throws Throwable {
+    return (int) c0.invokeExact(carrier) + ((String) c1.invokeExact(carrier)).length() +
+        (double) c2.invokeExact(carrier) + (float) c3.invokeExact(carrier) +
+        (byte) c4.invokeExact(carrier) + (long) c5.invokeExact(carrier);
+  }
+
+  private static double cold(boolean typed) throws Throwable {
+    var handles = new CarrierCache(false, ShapePolicy.EXACT, typed).findCarrierHandles(CARRIER_TYPE, false);
+    var components = handles.components();
+    var carrier = (Object) handles.constructor().invokeExact(1, "foo", 2.0, 3f, (byte) 4, 5L);
+    return readAll(carrier, components[0], components[1], components[2], components[3], components[4], components[5]);
+  }
+
+  private int value = 1;
+
+  @Benchmark
+  public double warmCombinators() throws Throwable {
+    var carrier = (Object) Warm.COMBINATOR_CONSTRUCTOR.invokeExact(value, "foo", 2.0, 3f, (byte) 4, 5L);
+    return readAll(carrier, Warm.COMBINATOR_COMPONENTS[0], Warm.COMBINATOR_COMPONENTS[1], Warm.COMBINATOR_COMPONENTS[2],
+        Warm.COMBINATOR_COMPONENTS[3], Warm.COMBINATOR_COMPONENTS[4], Warm.COMBINATOR_COMPONENTS[5]);
+  }
+
+  @Benchmark
+  public double warmTyped() throws Throwable {
+    var carrier = (Object) Warm.TYPED_CONSTRUCTOR.invokeExact(value, "foo", 2.0, 3f, (byte) 4, 5L);
+    return readAll(carrier, Warm.TYPED_COMPONENTS[0], Warm.TYPED_COMPONENTS[1], Warm.TYPED_COMPONENTS[2],
+        Warm.TYPED_COMPONENTS[3], Warm.TYPED_COMPONENTS[4], Warm.TYPED_COMPONENTS[5]);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 0)
+  @Measurement(iterations = 1)
+  @Fork(value = 10, jvmArgs = "--enable-preview")
+  public double coldCombinators() throws Throwable {
+    return cold(false);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 0)
+  @Measurement(iterations = 1)
+  @Fork(value = 10, jvmArgs = "--enable-preview")
+  public double coldTyped() throws Throwable {
+    return cold(true);
+  }
+}